@@ -0,0 +1,124 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Graphics.AnimationClips;
+import Main.EntityStore;
+import timer.GameClock;
+import timer.stopWatchX;
+
+/**
+ * One tick of animating walk cycles (4 frames back and forth, 75 ms each) the way Player used to: a frame timer,
+ * a frame and a step per entity, stepped when the timer is up. Versus every entity keeping only which shared clip
+ * it's playing and since when, with EntityStore.animate working out all the frames in one pass.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnimationBenchmark {
+    private static final int FRAME_MILLIS = 75;
+    private static final int DIRECTIONS = 4;
+    private static final int FRAMES = 4;
+
+    @Param({"1000", "50000"})
+    public int entityCount;
+
+    @Param({"timers", "clips"})
+    public String playback;
+
+    /** An animated entity the timer way */
+    static final class TimerEntity {
+        stopWatchX animTimer;
+        int dir;
+        int frame;
+        int step;
+        int spriteId;
+    }
+
+    private int[][] walkSpriteIds;
+    private TimerEntity[] entities;
+    private EntityStore store;
+    private AnimationClips clips;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        walkSpriteIds = new int[DIRECTIONS][FRAMES];
+        clips = new AnimationClips();
+        int[] walkClips = new int[DIRECTIONS];
+        for (int d = 0; d < DIRECTIONS; d++) {
+            String[] tags = new String[FRAMES];
+            int[] millis = new int[FRAMES];
+            for (int f = 0; f < FRAMES; f++) {
+                walkSpriteIds[d][f] = d * FRAMES + f;
+                tags[f] = "walk" + d + "_" + f;
+                millis[f] = FRAME_MILLIS;
+            }
+            walkClips[d] = clips.add("walk" + d, AnimationClips.PING_PONG, tags, walkSpriteIds[d], millis);
+        }
+
+        entities = new TimerEntity[entityCount];
+        store = new EntityStore(entityCount);
+        int now = GameClock.millis();
+        for (int i = 0; i < entityCount; i++) {
+            int dir = rnd.nextInt(DIRECTIONS);
+            int phase = rnd.nextInt(FRAME_MILLIS);      // So they don't all change frame on the same tick
+            if ("timers".equals(playback)) {
+                TimerEntity e = new TimerEntity();
+                e.animTimer = new stopWatchX(FRAME_MILLIS, phase);
+                e.dir = dir;
+                e.step = 1;
+                e.spriteId = walkSpriteIds[dir][0];
+                entities[i] = e;
+            } else {
+                int id = store.create(rnd.nextInt(1280), rnd.nextInt(720));
+                store.playClip(id, walkClips[dir], now - phase);
+            }
+        }
+    }
+
+    @Benchmark
+    public int tick() {
+        int sum = 0;
+        if ("timers".equals(playback)) {
+            for (TimerEntity e : entities) {
+                if (e.animTimer.isTimeUp()) {
+                    e.animTimer.resetWatch();
+                    int frame = e.frame + e.step;
+                    if (frame >= FRAMES - 1) {
+                        frame = FRAMES - 1;
+                        e.step = -1;
+                    } else if (frame <= 0) {
+                        frame = 0;
+                        e.step = 1;
+                    }
+                    e.frame = frame;
+                    e.spriteId = walkSpriteIds[e.dir][frame];
+                }
+                sum += e.spriteId;
+            }
+        } else {
+            store.animate(clips, GameClock.millis());
+            for (int i = 0; i < store.size(); i++) {
+                sum += store.getSpriteId(store.getEntity(i));
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import FileIO.EZFileRead;
+import Graphics.AssetLoader;
+
+/**
+ * Decoding every image in Art.txt (8 times over, so there's enough work to spread out) on an AssetLoader
+ * with the given number of threads, and waiting for all of them. threads=1 is about what the old
+ * one-at-a-time loading cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssetLoadBenchmark {
+    private static final int COPIES = 8;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private List<String> files;
+    private AssetLoader loader;
+    private List<Future<BufferedImage>> pending;
+
+    @Setup
+    public void setup() {
+        files = new ArrayList<>();
+        EZFileRead ezr = new EZFileRead("Art.txt");
+        for (int i = 0; i < ezr.getNumLines(); i++) {
+            files.add(new StringTokenizer(ezr.getLine(i), "*").nextToken());
+        }
+        loader = new AssetLoader(threads);
+        pending = new ArrayList<>(files.size() * COPIES);
+    }
+
+    @TearDown
+    public void tearDown() {
+        loader.shutdown();
+    }
+
+    @Benchmark
+    public void loadAll(Blackhole bh) throws Exception {
+        pending.clear();
+        for (int c = 0; c < COPIES; c++) {
+            for (int i = 0; i < files.size(); i++) {
+                pending.add(loader.load(files.get(i)));
+            }
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            bh.consume(pending.get(i).get());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Data.Sprite;
+import Data.gameString;
+import Graphics.DrawBuffer;
+import Graphics.SpriteAtlas;
+import Graphics.Sprites;
+import gameloop.Renderer;
+
+/**
+ * A frame of 1000 sprite draws over spriteCount 64x64 sprites, each drawn from its own image ("atlas" false)
+ * or as a sub-rectangle of a SpriteAtlas page. Both sides use premultiplied ARGB, like the pages, so only
+ * the number of source surfaces differs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AtlasBenchmark {
+    @Param({"16", "256"})
+    public int spriteCount;
+
+    @Param({"false", "true"})
+    public boolean atlas;
+
+    private Sprites sprites;
+    private DrawBuffer draws;
+    private DrawBuffer overlays;
+    private List<gameString> strings;
+    private BufferedImage target;
+    private Graphics2D g;
+
+    @Setup
+    public void setup() {
+        sprites = BenchData.makeSprites(spriteCount, 64);
+        for (int i = 0; i < sprites.size(); i++) {
+            Sprite s = sprites.getSprite(i);
+            BufferedImage pre = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g2d = pre.createGraphics();
+            g2d.setComposite(AlphaComposite.Src);
+            g2d.drawImage(s.getSprite(), 0, 0, null);
+            g2d.dispose();
+            s.changeImage(pre);
+        }
+        if (atlas) {
+            new SpriteAtlas(SpriteAtlas.DEFAULT_PAGE_SIZE, SpriteAtlas.DEFAULT_MAX_SPRITE_SIZE).pack(sprites);
+        }
+        Random rnd = new Random(42);
+        draws = new DrawBuffer(1000);
+        for (int i = 0; i < 1000; i++) {
+            draws.add(rnd.nextInt(spriteCount), rnd.nextInt(BenchData.SCREEN_WIDTH), rnd.nextInt(BenchData.SCREEN_HEIGHT));
+        }
+        overlays = new DrawBuffer();
+        strings = new ArrayList<>();
+        target = new BufferedImage(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Setup(Level.Invocation)
+    public void openGraphics() {
+        g = target.createGraphics();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeGraphics() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        Renderer.render(g, BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT, strings, sprites, draws, overlays, null, 0.5f, 1.0f);
+        return target;
+    }
+}
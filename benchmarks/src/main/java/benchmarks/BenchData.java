@@ -0,0 +1,44 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import Data.Sprite;
+import Graphics.Sprites;
+
+/**
+ * Shared setup helpers so every benchmark builds its world the same way.
+ */
+final class BenchData {
+    static final int SCREEN_WIDTH = 1280;
+    static final int SCREEN_HEIGHT = 720;
+
+    private BenchData() {
+    }
+
+    /**
+     * @param count how many sprites to make
+     * @param size width and height of each sprite image
+     * @return a backbuffer of sprites tagged "SPR0", "SPR1", ... with small solid images
+     */
+    static Sprites makeSprites(int count, int size) {
+        Sprites sprites = new Sprites();
+        Random rnd = new Random(42);
+        for (int i = 0; i < count; i++) {
+            BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            int argb = 0xFF000000 | rnd.nextInt(0xFFFFFF);
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    img.setRGB(x, y, argb);
+                }
+            }
+            sprites.addSprite(new Sprite(0, 0, img, tag(i)));
+        }
+        sprites.buildIndex();
+        return sprites;
+    }
+
+    static String tag(int i) {
+        return "SPR" + i;
+    }
+}
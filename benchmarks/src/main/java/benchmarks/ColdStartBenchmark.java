@@ -0,0 +1,77 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import Graphics.AssetLoader;
+import Graphics.AssetPack;
+
+/**
+ * Loading all of Art.txt once in a fresh JVM, the way the game does at startup: from the PNGs, or from
+ * an asset pack built in setup. Single shot, no warmup, a new fork per sample, so class loading and
+ * cold code (ImageIO's decoders on one side, the mapping on the other) are part of the number.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class ColdStartBenchmark {
+    @Param({"png", "pack"})
+    public String source;
+
+    private List<String[]> list;
+    private File packFile;
+    private AssetLoader loader;
+
+    @Setup
+    public void setup() throws IOException {
+        list = AssetPack.readList("Art.txt");
+        if (source.equals("pack")) {
+            packFile = File.createTempFile("bench", ".pack");
+            AssetPack.write("Art.txt", packFile);
+        }
+        loader = AssetLoader.fromSystemProperties();
+    }
+
+    @TearDown
+    public void tearDown() {
+        loader.shutdown();
+        if (packFile != null) {
+            packFile.delete();
+        }
+    }
+
+    @Benchmark
+    public void loadArt(Blackhole bh) throws Exception {
+        AssetPack pack = packFile == null ? null : AssetPack.open(packFile);
+        List<Future<BufferedImage>> pending = new ArrayList<>(list.size());
+        for (String[] entry : list) {
+            int i = pack == null ? -1 : pack.indexOf(entry[0]);
+            pending.add(i >= 0 ? loader.load(pack, i) : loader.load(entry[0]));
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            bh.consume(pending.get(i).get());
+        }
+    }
+}
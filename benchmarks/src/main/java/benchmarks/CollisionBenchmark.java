@@ -0,0 +1,167 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Main.BoundingBox;
+import Main.CollisionManager;
+import Main.CollisionPairVisitor;
+import Main.CollisionVisitor;
+
+/**
+ * CollisionManager queries for a player-sized box against a room full of walls and props,
+ * with and without a broadphase.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int entityCount;
+
+    /** "none" = test every box, "grid" = spatial hash with 128px cells, "tree" = dynamic AABB tree */
+    @Param({"none", "grid", "tree"})
+    public String broadphase;
+
+    /** How many of every 100 boxes go in as static (the moving ones are always dynamic) */
+    @Param({"0", "90"})
+    public int staticPercent;
+
+    private CollisionManager collisionManager;
+    private BoundingBox[] queries;
+    private int next;
+    private BoundingBox[] boxes;
+    private int movers;
+    private int step;
+    private int pairs;
+    private int churn;
+    private final CollisionPairVisitor pairCounter = (a, b) -> pairs++;
+    private final ArrayList<BoundingBox> results = new ArrayList<>();
+    private int hits;
+    private final CollisionVisitor hitCounter = other -> {
+        hits++;
+        return true;
+    };
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        collisionManager = new CollisionManager();
+        if (broadphase.equals("grid")) {
+            collisionManager.enableSpatialHash(128);
+        } else if (broadphase.equals("tree")) {
+            collisionManager.enableAabbTree(8);
+        }
+        // Spread the boxes over a world that grows with the count so density stays about the same
+        int worldSize = (int) Math.max(BenchData.SCREEN_WIDTH, Math.sqrt(entityCount) * 100);
+        boxes = new BoundingBox[entityCount];
+        for (int i = 0; i < entityCount; i++) {
+            int w = 10 + rnd.nextInt(60);
+            int h = 10 + rnd.nextInt(60);
+            boxes[i] = new BoundingBox(rnd.nextInt(worldSize), rnd.nextInt(worldSize), w, h, "box_" + i);
+            if (i % 100 >= 100 - staticPercent) {
+                collisionManager.addStaticBoundingBox(boxes[i]);
+            } else {
+                collisionManager.addBoundingBox(boxes[i]);
+            }
+        }
+        movers = Math.max(1, entityCount / 100);
+        collisionManager.forEachMovingPair(pairCounter);
+        queries = new BoundingBox[256];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = new BoundingBox(rnd.nextInt(worldSize), rnd.nextInt(worldSize), 64, 64, "query_" + i);
+        }
+        next = 0;
+        churn = 0;
+    }
+
+    private BoundingBox nextQuery() {
+        BoundingBox q = queries[next];
+        next = (next + 1) & (queries.length - 1);
+        return q;
+    }
+
+    @Benchmark
+    public ArrayList<BoundingBox> getAllCollisions() {
+        return collisionManager.getAllCollisions(nextQuery());
+    }
+
+    /**
+     * Same query filling a list kept between calls; the GC profiler should show 0 B/op
+     */
+    @Benchmark
+    public int getAllCollisionsInto() {
+        return collisionManager.getAllCollisions(nextQuery(), results);
+    }
+
+    @Benchmark
+    public int forEachCollision() {
+        hits = 0;
+        collisionManager.forEachCollision(nextQuery(), hitCounter);
+        return hits;
+    }
+
+    @Benchmark
+    public boolean hasAnyCollision() {
+        return collisionManager.hasAnyCollision(nextQuery());
+    }
+
+    @Benchmark
+    public BoundingBox checkCollision() {
+        return collisionManager.checkCollision(nextQuery());
+    }
+
+    /**
+     * 1% of the boxes take a small step, then every overlapping pair involving a moved box is found
+     */
+    @Benchmark
+    public int movingPairs() {
+        step++;
+        int d = (step & 1) == 0 ? 3 : -3;
+        for (int i = 0; i < movers; i++) {
+            BoundingBox box = boxes[(int) ((long) i * entityCount / movers)];
+            box.updatePosition(box.getX() + d, box.getY() - d);
+        }
+        pairs = 0;
+        collisionManager.forEachMovingPair(pairCounter);
+        return pairs;
+    }
+
+    /**
+     * Every overlapping pair in the world; static pairs are skipped without being tested
+     */
+    @Benchmark
+    public int overlappingPairs() {
+        pairs = 0;
+        collisionManager.forEachOverlappingPair(pairCounter);
+        return pairs;
+    }
+
+    /**
+     * Take a box out and put it straight back, should cost the same at any entity count
+     */
+    @Benchmark
+    public int removeAndAdd() {
+        BoundingBox box = boxes[churn];
+        churn = churn + 1 == boxes.length ? 0 : churn + 1;
+        boolean isStatic = box.isStatic();
+        collisionManager.removeBoundingBox(box.getHandle());
+        return isStatic ? collisionManager.addStaticBoundingBox(box) : collisionManager.addBoundingBox(box);
+    }
+}
@@ -0,0 +1,106 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Data.Sprite;
+import Data.gameString;
+import Graphics.DrawBuffer;
+import Graphics.HeadlessGraphic;
+import Graphics.Sprites;
+import gameloop.gameLoop;
+
+/**
+ * A whole gameLoop.run() frame into a headless 1280x720 display: a full screen background, entityCount
+ * sprites that stay put, one 64x64 "player" that moves every frame, and the two lines of text the game draws.
+ * With dirtyRects on only the player's old and new spots get redrawn; the pixel counts are printed on teardown.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirtyRectBenchmark {
+    @Param({"10", "1000"})
+    public int entityCount;
+
+    @Param({"false", "true"})
+    public boolean dirtyRects;
+
+    private Sprites sprites;
+    private DrawBuffer draws;
+    private DrawBuffer overlays;
+    private List<gameString> strings;
+    private gameLoop loop;
+    private int[] xs;
+    private int[] ys;
+    private int backgroundId;
+    private int playerId;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        sprites = BenchData.makeSprites(16, 16);
+        BufferedImage bg = new BufferedImage(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        sprites.addSprite(new Sprite(0, 0, bg, "BG"));
+        sprites.addSprite(new Sprite(0, 0, new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB), "PLAYER"));
+        sprites.buildIndex();
+        backgroundId = sprites.getSpriteId("BG");
+        playerId = sprites.getSpriteId("PLAYER");
+        xs = new int[entityCount];
+        ys = new int[entityCount];
+        for (int i = 0; i < entityCount; i++) {
+            xs[i] = rnd.nextInt(BenchData.SCREEN_WIDTH);
+            ys[i] = rnd.nextInt(BenchData.SCREEN_HEIGHT);
+        }
+        draws = new DrawBuffer(entityCount + 2);
+        overlays = new DrawBuffer();
+        Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 32);
+        strings = new ArrayList<>();
+        strings.add(new gameString(Color.white, 30, 40, "Oh No! You have found yourself trapped in a cell!", font, 1.0f));
+        strings.add(new gameString(Color.white, 30, 60, "How will you escape?", font, 1.0f));
+        loop = new gameLoop(new HeadlessGraphic(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT), strings, sprites, draws, overlays);
+        loop.setDirtyRects(dirtyRects);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (loop.getDirtyRegions() != null) {
+            System.out.println();
+            System.out.println(loop.getDirtyRegions());
+        }
+    }
+
+    @Benchmark
+    public gameLoop frame() {
+        frame++;
+        draws.clear();
+        draws.add(backgroundId, 0, 0);
+        for (int i = 0; i < entityCount; i++) {
+            draws.add(i & 15, xs[i], ys[i]);
+        }
+        draws.add(playerId, 200 + (frame & 255) * 4, 300);
+        loop.run();
+        return loop;
+    }
+}
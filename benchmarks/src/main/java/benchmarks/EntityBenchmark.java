@@ -0,0 +1,122 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Data.Vector2D;
+import Data.spriteInfo;
+import Graphics.DrawBuffer;
+import Main.BoundingBox;
+import Main.EntityStore;
+import timer.stopWatchX;
+
+/**
+ * One tick of moving entities (move by velocity, bring the bounding box along, time out the text that's showing,
+ * submit a draw) with each entity as its own little object graph, the way Player and InteractibleObject used to
+ * keep their state and update themselves one at a time, versus the same state in an EntityStore's arrays run by
+ * its systems. A 60 Hz tick has about 16600 us for everything.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBenchmark {
+    @Param({"1000", "50000"})
+    public int entityCount;
+
+    @Param({"objects", "store"})
+    public String layout;
+
+    /** An entity the object way: every component is another object somewhere on the heap */
+    static final class ObjectEntity {
+        Vector2D position;
+        Vector2D velocity;
+        BoundingBox box;
+        spriteInfo sprite;
+        stopWatchX textTimer;
+        boolean isVisible;
+        boolean isShowingText;
+    }
+
+    private ObjectEntity[] objects;
+    private EntityStore store;
+    private DrawBuffer draws;
+
+    private static final int SHOWING_TEXT = EntityStore.FIRST_USER_FLAG;
+    private static final int TEXT_TIMER = 0;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        draws = new DrawBuffer(entityCount);
+        objects = new ObjectEntity[entityCount];
+        store = new EntityStore(entityCount);
+        for (int i = 0; i < entityCount; i++) {
+            int x = rnd.nextInt(1280);
+            int y = rnd.nextInt(720);
+            int vx = rnd.nextInt(5) - 2;
+            int vy = rnd.nextInt(5) - 2;
+            int spriteId = rnd.nextInt(20);
+            BoundingBox box = new BoundingBox(x, y, 20, 20, "e" + i);
+            boolean isShowingText = (i & 1) == 0;       // Half of them, for longer than the benchmark runs
+            if ("objects".equals(layout)) {
+                ObjectEntity e = new ObjectEntity();
+                e.position = new Vector2D(x, y);
+                e.velocity = new Vector2D(vx, vy);
+                e.box = box;
+                e.sprite = new spriteInfo(e.position, "e");
+                e.sprite.setSpriteId(spriteId);
+                e.textTimer = new stopWatchX(Integer.MAX_VALUE);
+                e.isVisible = true;
+                e.isShowingText = isShowingText;
+                objects[i] = e;
+            } else {
+                int id = store.create(x, y);
+                store.setVelocity(id, vx, vy);
+                store.setBounds(id, box, 0, 0);
+                store.setSpriteId(id, spriteId);
+                store.startTimer(id, TEXT_TIMER, Integer.MAX_VALUE);
+                store.setFlag(id, SHOWING_TEXT, isShowingText);
+            }
+        }
+    }
+
+    @Benchmark
+    public int tick() {
+        draws.clear();
+        if ("objects".equals(layout)) {
+            for (ObjectEntity e : objects) {
+                e.position.adjustX(e.velocity.getX());
+                e.position.adjustY(e.velocity.getY());
+                e.box.updatePosition(e.position.getX(), e.position.getY());
+                if (e.isShowingText && e.textTimer.isTimeUp()) {
+                    e.isShowingText = false;
+                }
+                if (e.isVisible) {
+                    draws.add(e.sprite.getSpriteId(), e.position.getX(), e.position.getY());
+                }
+            }
+        } else {
+            store.beginTick();
+            store.integrate();
+            store.syncBounds();
+            store.expireTimers(TEXT_TIMER, SHOWING_TEXT);
+            store.submitDraws(draws);
+        }
+        return draws.size();
+    }
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.awt.Canvas;
+import java.awt.event.KeyEvent;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Input.Keyb;
+
+/**
+ * Keyb.getInputCodeX polling. There are no entities or sprites involved here, so instead of those counts
+ * this is parameterized by which key is held: none (the whole if-chain runs), an early key and a late key.
+ * pollTick is what a tick costs now instead: four events through the ring (W and D pressed, then released)
+ * drained by poll(), plus reading the held keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeybBenchmark {
+    @Param({"NONE", "A", "SPACE"})
+    public String heldKey;
+
+    private Keyb kb;
+    private KeyEvent[] tickEvents;
+
+    @Setup
+    public void setup() {
+        kb = new Keyb();
+        int code = -1;
+        if (heldKey.equals("A")) {
+            code = KeyEvent.VK_A;
+        } else if (heldKey.equals("SPACE")) {
+            code = KeyEvent.VK_SPACE;
+        }
+        if (code != -1) {
+            kb.keyPressed(new KeyEvent(new Canvas(), KeyEvent.KEY_PRESSED, 0L, 0, code, KeyEvent.CHAR_UNDEFINED));
+        }
+        Canvas source = new Canvas();
+        tickEvents = new KeyEvent[] {
+            new KeyEvent(source, KeyEvent.KEY_PRESSED, 0L, 0, KeyEvent.VK_W, KeyEvent.CHAR_UNDEFINED),
+            new KeyEvent(source, KeyEvent.KEY_PRESSED, 0L, 0, KeyEvent.VK_D, KeyEvent.CHAR_UNDEFINED),
+            new KeyEvent(source, KeyEvent.KEY_RELEASED, 0L, 0, KeyEvent.VK_W, KeyEvent.CHAR_UNDEFINED),
+            new KeyEvent(source, KeyEvent.KEY_RELEASED, 0L, 0, KeyEvent.VK_D, KeyEvent.CHAR_UNDEFINED),
+        };
+    }
+
+    @Benchmark
+    public char getInputCodeX() {
+        return kb.getInputCodeX();
+    }
+
+    @Benchmark
+    public boolean pollTick() {
+        kb.keyPressed(tickEvents[0]);
+        kb.keyPressed(tickEvents[1]);
+        kb.keyReleased(tickEvents[2]);
+        kb.keyReleased(tickEvents[3]);
+        kb.poll();
+        return kb.wasPressed(KeyEvent.VK_W) && kb.isHeld(KeyEvent.VK_D);
+    }
+}
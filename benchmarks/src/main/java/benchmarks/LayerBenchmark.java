@@ -0,0 +1,106 @@
+package benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Data.Sprite;
+import Data.gameString;
+import Graphics.DrawBuffer;
+import Graphics.Sprites;
+import gameloop.Renderer;
+import gameloop.SceneLayer;
+import gameloop.SceneLayers;
+
+/**
+ * Renderer.render of a layered scene into an offscreen 1280x720 image: a full screen background, tileCount
+ * 16x16 world tiles resubmitted every frame, and one actor that moves. "dynamic" draws every layer straight
+ * onto the frame like before; "cached" uses the default static background and cached world layer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayerBenchmark {
+    @Param({"0", "2000"})
+    public int tileCount;
+
+    @Param({"dynamic", "cached"})
+    public String layers;
+
+    private Sprites sprites;
+    private SceneLayers scene;
+    private int[] tileXs;
+    private int[] tileYs;
+    private int backgroundId;
+    private int actorId;
+    private BufferedImage target;
+    private Graphics2D g;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        sprites = BenchData.makeSprites(16, 16);
+        BufferedImage bg = new BufferedImage(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        sprites.addSprite(new Sprite(0, 0, bg, "BG"));
+        sprites.addSprite(new Sprite(0, 0, new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB), "ACTOR"));
+        sprites.buildIndex();
+        backgroundId = sprites.getSpriteId("BG");
+        actorId = sprites.getSpriteId("ACTOR");
+        tileXs = new int[tileCount];
+        tileYs = new int[tileCount];
+        for (int i = 0; i < tileCount; i++) {
+            tileXs[i] = rnd.nextInt(BenchData.SCREEN_WIDTH);
+            tileYs[i] = rnd.nextInt(BenchData.SCREEN_HEIGHT);
+        }
+        scene = new SceneLayers(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT, new DrawBuffer(), new ArrayList<gameString>(), new DrawBuffer());
+        if (layers.equals("dynamic")) {
+            scene.get(SceneLayers.BACKGROUND).setMode(SceneLayer.DYNAMIC);
+            scene.get(SceneLayers.WORLD).setMode(SceneLayer.DYNAMIC);
+        }
+        target = new BufferedImage(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        g = target.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g.dispose();
+        System.out.println();
+        System.out.println(scene);
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        frame++;
+        scene.clearFrame();
+        SceneLayer background = scene.get(SceneLayers.BACKGROUND);
+        if (background.getMode() != SceneLayer.STATIC || background.isEmpty()) {
+            background.getDraws().add(backgroundId, 0, 0);      // A static background is only submitted once
+        }
+        DrawBuffer world = scene.get(SceneLayers.WORLD).getDraws();
+        for (int i = 0; i < tileCount; i++) {
+            world.add(i & 15, tileXs[i], tileYs[i]);
+        }
+        scene.get(SceneLayers.ACTORS).getDraws().add(actorId, (frame & 255) * 4, 300);
+        Renderer.render(g, scene, sprites, null, 0.0f, 1.0f);
+        return target;
+    }
+}
@@ -0,0 +1,226 @@
+package benchmarks;
+
+import java.awt.Canvas;
+import java.awt.event.KeyEvent;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import Data.gameString;
+import Graphics.DrawBuffer;
+import Input.Keyb;
+import Main.BoundingBox;
+import Main.CollisionPairVisitor;
+import Main.EntityStore;
+import Main.InteractibleObject;
+import Main.KeyProcessor;
+import Main.Main;
+import Main.ParallelUpdate;
+import gameloop.SceneLayers;
+import logic.Control;
+import timer.GameClock;
+
+/**
+ * Checks that the parallel update (-Dgame.updateThreads, see ParallelUpdate) gives exactly what the serial loop
+ * gives. Runs the same scripted scene once serially and then with several thread and chunk settings, each in its own
+ * JVM (Main reads the setting once), and compares a hash per tick of everything the update produces: the player,
+ * every draw command (with its previous position), every string with its position, every collision box and the
+ * order the collision manager reports moving pairs in.
+ * The scene has extra interactibles that move while showing their text, plain moving boxes, the player walking and
+ * pressing space, and a batch of destroys partway through.
+ * Run from the project root so Art.txt and Font/ load:
+ *   java -cp benchmarks/target/benchmarks.jar benchmarks.ParallelUpdateCheck
+ * Exits with 1 if any setting differs from the serial run.
+ */
+public class ParallelUpdateCheck {
+    private static final int TICKS = 300;
+    private static final long TICK_NANOS = 20000000L;
+    private static final long START_NANOS = 1000000000000L;     // A fixed clock, so every run sees the same times
+    private static final int OBJECTS = 3000;
+    private static final int MOVING_OBJECTS = 1000;             // The first this many objects move
+    private static final int MOVERS = 2000;
+    private static final int MOVER_LAYER = 8;
+
+    // { updateThreads, updateChunk }
+    private static final int[][] SETTINGS = { {2, 1}, {3, 100}, {4, 1024}, {8, 7} };
+
+    // { key, tick pressed, tick released }
+    private static final int[][] KEY_SCRIPT = {
+        {KeyEvent.VK_A, 0, 60}, {KeyEvent.VK_W, 60, 75}, {KeyEvent.VK_A, 75, 140},
+        {KeyEvent.VK_S, 140, 260}, {KeyEvent.VK_D, 200, 290}
+    };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("trace")) {
+            trace();
+            return;
+        }
+        List<String> serial = runTrace(1, ParallelUpdate.DEFAULT_CHUNK_SIZE);     // 1 thread = the serial loop
+        boolean isSame = true;
+        for (int[] setting : SETTINGS) {
+            List<String> parallel = runTrace(setting[0], setting[1]);
+            int tick = firstDifference(serial, parallel);
+            String name = setting[0] + " threads, chunks of " + setting[1];
+            if (tick < 0) {
+                System.out.println(name + ": same as serial for " + serial.size() + " ticks");
+            } else {
+                System.out.println(name + ": differs from serial at tick " + tick);
+                isSame = false;
+            }
+        }
+        System.exit(isSame ? 0 : 1);
+    }
+
+    private static int firstDifference(List<String> a, List<String> b) {
+        int n = Math.min(a.size(), b.size());
+        for (int i = 0; i < n; i++) {
+            if (!a.get(i).equals(b.get(i))) {
+                return i;
+            }
+        }
+        return a.size() == b.size() ? -1 : n;
+    }
+
+    /** Runs trace() in a new JVM with the given settings and returns its lines */
+    private static List<String> runTrace(int threads, int chunk) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder pb = new ProcessBuilder(java, "-Djava.awt.headless=true",
+                "-Dgame.updateThreads=" + threads, "-Dgame.updateChunk=" + chunk,
+                "-cp", System.getProperty("java.class.path"), ParallelUpdateCheck.class.getName(), "trace");
+        pb.redirectErrorStream(true);
+        Process p = pb.start();
+        List<String> lines = new ArrayList<String>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream(), "UTF-8"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("t")) {
+                    lines.add(line);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        if (p.waitFor() != 0) {
+            throw new IllegalStateException("The trace with " + threads + " threads failed");
+        }
+        return lines;
+    }
+
+    /** The scripted scene, printing one hash line per tick */
+    private static void trace() {
+        Control ctrl = new Control();
+        GameClock.startSimulation(START_NANOS);
+        Main.start();                               // Again, so its timers start on the fixed clock
+        EntityStore store = Main.getEntities();
+        Random rnd = new Random(7);
+
+        InteractibleObject[] objects = new InteractibleObject[OBJECTS];
+        for (int i = 0; i < OBJECTS; i++) {
+            int x = 60 + rnd.nextInt(1000);
+            int y = 20 + rnd.nextInt(500);
+            InteractibleObject obj = new InteractibleObject(x, y, 20, 20, "obj" + i, "Text " + i,
+                    (i & 1) == 0 ? "IN1" : "IN2", i % 3 == 0, 0, 0);
+            if (i < MOVING_OBJECTS) {
+                obj.boundingBox.setLayer(MOVER_LAYER);
+                obj.boundingBox.setMask(MOVER_LAYER);
+                Main.collisionManager.addBoundingBox(obj.boundingBox);
+                store.setVelocity(obj.getEntity(), rnd.nextInt(5) - 2, rnd.nextInt(5) - 2);
+                store.setFlag(obj.getEntity(), EntityStore.MOVING, true);
+            } else {
+                obj.boundingBox.setActive(false);   // Keep the player free to walk around
+                Main.collisionManager.addStaticBoundingBox(obj.boundingBox);
+            }
+            objects[i] = obj;
+            Main.interactibleObjects.add(obj);
+        }
+        int[] movers = new int[MOVERS];
+        for (int i = 0; i < MOVERS; i++) {
+            int x = rnd.nextInt(1200);
+            int y = rnd.nextInt(700);
+            int id = store.create(x, y);
+            BoundingBox box = new BoundingBox(x, y, 10, 10, "mover" + i);
+            box.setLayer(MOVER_LAYER);
+            box.setMask(MOVER_LAYER);
+            Main.collisionManager.addBoundingBox(box);
+            store.setBounds(id, box, 0, 0);
+            store.setVelocity(id, rnd.nextInt(5) - 2, rnd.nextInt(5) - 2);
+            store.setFlag(id, EntityStore.MOVING, true);
+            movers[i] = id;
+        }
+        Main.resolveSprites(ctrl);
+        for (int id : movers) {
+            store.setSpriteId(id, ctrl.getSpriteId("IN1"));
+        }
+
+        Keyb kb = ctrl.getKeyboard();
+        Canvas source = new Canvas();
+        for (int t = 0; t < TICKS; t++) {
+            for (int[] key : KEY_SCRIPT) {
+                if (t == key[1]) {
+                    kb.keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED, 0, 0, key[0], ' '));
+                }
+                if (t == key[2]) {
+                    kb.keyReleased(new KeyEvent(source, KeyEvent.KEY_RELEASED, 0, 0, key[0], ' '));
+                }
+            }
+            kb.poll();
+            KeyProcessor.processInput(kb);
+            if (t % 7 == 0) {
+                Main.trigger = "space is pressed";
+            }
+            for (int i = t % 53; i < MOVING_OBJECTS; i += 53) {
+                objects[i].interact();              // Moving objects showing text
+            }
+            if (t == TICKS / 2) {
+                for (int i = 0; i < MOVERS; i += 4) {
+                    store.destroy(movers[i]);
+                }
+            }
+            for (int l = 0; l < SceneLayers.COUNT; l++) {
+                if (l != SceneLayers.BACKGROUND) {
+                    ctrl.clearSceneLayer(l);
+                }
+            }
+            Main.update(ctrl);
+            System.out.println("t" + t + " " + Long.toHexString(hashTick(ctrl, store)));
+            GameClock.advance(TICK_NANOS);
+        }
+        System.exit(0);                             // Control's threads aren't daemons
+    }
+
+    private static long hashTick(Control ctrl, EntityStore store) {
+        long h = Main.player.getX() * 31L + Main.player.getY();
+        for (int l = 0; l < SceneLayers.COUNT; l++) {
+            DrawBuffer draws = ctrl.getScene().get(l).getDraws();
+            for (int i = 0; i < draws.size(); i++) {
+                h = h * 1000003L + draws.getSpriteId(i);
+                h = h * 31 + draws.getX(i, 0f) * 131L + draws.getY(i, 0f);
+                h = h * 31 + draws.getX(i) * 131L + draws.getY(i);
+                h = h * 31 + draws.getLayer(i);
+            }
+            for (gameString s : ctrl.getScene().get(l).getStrings()) {
+                h = h * 1000003L + s.toString().hashCode();
+                h = h * 31 + s.getX() * 131L + s.getY();
+            }
+        }
+        for (int i = 0; i < store.size(); i++) {
+            BoundingBox box = store.getBoundingBox(store.getEntity(i));
+            if (box != null) {
+                h = h * 31 + box.getX() * 131L + box.getY();
+            }
+        }
+        final long[] pairs = {Main.collisionManager.getMovedCount()};
+        Main.collisionManager.forEachMovingPair(new CollisionPairVisitor() {
+            @Override
+            public void visit(BoundingBox a, BoundingBox b) {
+                pairs[0] = pairs[0] * 31 + a.getId().hashCode() * 7L + b.getId().hashCode();
+            }
+        });
+        return h * 31 + pairs[0];
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import timer.FrameProfiler;
+
+/**
+ * What the frame profiler adds to a frame: a begin/end pair for every phase plus endFrame(), which
+ * records each phase into its histogram and the history ring. Off, every call is a single branch.
+ * gc.alloc.rate.norm should be 0 either way.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProfilerBenchmark {
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private FrameProfiler profiler;
+
+    @Setup
+    public void setup() {
+        profiler = new FrameProfiler(3600);
+        profiler.setEnabled(enabled);
+    }
+
+    @Benchmark
+    public long frame() {
+        for (int p = FrameProfiler.INPUT; p < FrameProfiler.PHASE_COUNT; p++) {
+            profiler.begin(p);
+            profiler.end(p);
+        }
+        profiler.endFrame();
+        return profiler.getFrameCount();
+    }
+}
@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Data.gameString;
+import Graphics.DrawBuffer;
+import Graphics.Sprites;
+import gameloop.Renderer;
+import gameloop.Transition;
+
+/**
+ * Renderer.render into an offscreen 1280x720 image: entityCount draw commands spread over spriteCount images,
+ * plus a couple of lines of text like the game draws every frame, and optionally a transition over the top.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int entityCount;
+
+    @Param({"10", "1000", "100000"})
+    public int spriteCount;
+
+    /** "none", or a screen transition half way through: "fade", "crossFade" or "wipe" */
+    @Param({"none", "fade", "crossFade", "wipe"})
+    public String transition;
+
+    private Sprites sprites;
+    private DrawBuffer draws;
+    private DrawBuffer overlays;
+    private List<gameString> strings;
+    private BufferedImage target;
+    private Graphics2D g;
+    private Transition fx;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        sprites = BenchData.makeSprites(spriteCount, 8);
+        draws = new DrawBuffer(entityCount);
+        for (int i = 0; i < entityCount; i++) {
+            draws.add(rnd.nextInt(spriteCount), rnd.nextInt(BenchData.SCREEN_WIDTH), rnd.nextInt(BenchData.SCREEN_HEIGHT));
+        }
+        overlays = new DrawBuffer();
+        Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 32);
+        strings = new ArrayList<>();
+        strings.add(new gameString(Color.white, 30, 40, "Oh No! You have found yourself trapped in a cell!", font, 1.0f));
+        strings.add(new gameString(Color.white, 30, 60, "How will you escape?", font, 1.0f));
+        target = new BufferedImage(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        fx = null;
+        if (transition.equals("fade")) {
+            fx = new Transition(Transition.FADE);
+        } else if (transition.equals("crossFade") || transition.equals("wipe")) {
+            fx = new Transition(transition.equals("wipe") ? Transition.WIPE : Transition.CROSS_FADE);
+            Graphics2D snap = fx.beginCapture(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT);
+            Renderer.renderScene(snap, strings, sprites, overlays, overlays, 1.0f);
+            snap.dispose();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void openGraphics() {
+        g = target.createGraphics();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeGraphics() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        Renderer.render(g, BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT, strings, sprites, draws, overlays, fx, 0.5f, 1.0f);
+        return target;
+    }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Data.gameString;
+import Graphics.DrawBuffer;
+import Graphics.HeadlessGraphic;
+import gameloop.RenderSnapshot;
+import gameloop.SceneLayers;
+import gameloop.TripleBuffer;
+import gameloop.gameLoop;
+
+/**
+ * What the two-thread mode adds per tick and per frame: the simulation thread copying a scene of entityCount
+ * draw commands and two strings into a RenderSnapshot and publishing it, while the render thread picks up the
+ * newest one. Neither side ever waits, so each is timed on its own.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+    @Param({"10", "1000"})
+    public int entityCount;
+
+    private SceneLayers scene;
+    private gameLoop loop;
+    private TripleBuffer<RenderSnapshot> snapshots;
+    private long tick;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        DrawBuffer draws = new DrawBuffer(entityCount);
+        for (int i = 0; i < entityCount; i++) {
+            draws.add(rnd.nextInt(16), rnd.nextInt(BenchData.SCREEN_WIDTH), rnd.nextInt(BenchData.SCREEN_HEIGHT));
+        }
+        Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 32);
+        List<gameString> strings = new ArrayList<>();
+        strings.add(new gameString(Color.white, 30, 40, "Oh No! You have found yourself trapped in a cell!", font, 1.0f));
+        strings.add(new gameString(Color.white, 30, 60, "How will you escape?", font, 1.0f));
+        scene = new SceneLayers(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT, draws, strings, new DrawBuffer());
+        loop = new gameLoop(new HeadlessGraphic(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT), scene,
+                BenchData.makeSprites(16, 16));
+        snapshots = new TripleBuffer<RenderSnapshot>(new RenderSnapshot(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT),
+                new RenderSnapshot(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT),
+                new RenderSnapshot(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT));
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public boolean publish() {
+        snapshots.getBack().capture(scene, loop, tick++, System.nanoTime());
+        boolean isSkipped = snapshots.publish();
+        snapshots.getBack().recycle(isSkipped);
+        return isSkipped;
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public long acquire() {
+        snapshots.acquire();
+        return snapshots.getFront().getTick();
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import Main.BoundingBox;
+import Main.CollisionManager;
+
+/**
+ * Checks that a box keeps being found by the spatial hash after it has been through another grid. That happens when
+ * the grid is swapped for a new one (enableSpatialHash again), when the box moves between the static and dynamic
+ * boxes (each has its own grid), or when it moves to a different CollisionManager. A grid marks the boxes a query
+ * has already reported, so a mark left over from the old grid mustn't make the new one skip the box.
+ * Each case queries over a wall a few times in one grid, moves it to a fresh grid, queries somewhere else n times,
+ * then once more over the wall, for every n up to twice the first count, and the wall has to be found every time.
+ *   java -cp benchmarks/target/benchmarks.jar benchmarks.SpatialHashCheck
+ * Exits with 1 if the wall is ever missed.
+ */
+public class SpatialHashCheck {
+    private static final int CELL_SIZE = 64;
+    private static final int WARM_QUERIES = 50;
+
+    private static final int ENABLED_AGAIN = 0;
+    private static final int OTHER_MANAGER = 1;
+    private static final int MADE_DYNAMIC = 2;
+    private static final String[] CASES = {"spatial hash enabled again", "wall moved to another manager",
+            "wall moved to the dynamic boxes"};
+
+    public static void main(String[] args) {
+        int failures = 0;
+        for (int c = 0; c < CASES.length; c++) {
+            int missed = 0;
+            for (int n = 0; n <= 2 * WARM_QUERIES; n++) {
+                if (!isWallFound(c, n)) {
+                    missed++;
+                }
+            }
+            if (missed > 0) {
+                System.out.println(CASES[c] + ": wall missed in " + missed + " of " + (2 * WARM_QUERIES + 1) + " runs");
+            }
+            failures += missed;
+        }
+        System.out.println(failures == 0 ? "spatial hash: every overlap found" : "spatial hash: " + failures + " overlaps missed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static boolean isWallFound(int which, int queriesElsewhere) {
+        BoundingBox wall = new BoundingBox(200, 200, 64, 64, "wall");
+        BoundingBox player = new BoundingBox(210, 210, 32, 32, "player");
+        CollisionManager manager = new CollisionManager();
+        manager.enableSpatialHash(CELL_SIZE);
+        manager.addStaticBoundingBox(wall);
+        manager.addBoundingBox(player);
+        for (int i = 0; i < WARM_QUERIES; i++) {
+            manager.checkCollision(player);
+        }
+
+        if (which == ENABLED_AGAIN) {
+            manager.enableSpatialHash(CELL_SIZE);
+        } else if (which == OTHER_MANAGER) {
+            manager.removeBoundingBox(wall);
+            manager = new CollisionManager();
+            manager.enableSpatialHash(CELL_SIZE);
+            player = new BoundingBox(210, 210, 32, 32, "other player");
+            manager.addBoundingBox(player);
+        }
+        player.updatePosition(900, 600);            // Nowhere near the wall
+        for (int i = 0; i < queriesElsewhere; i++) {
+            manager.checkCollision(player);
+        }
+        if (which == OTHER_MANAGER) {
+            manager.addStaticBoundingBox(wall);
+        } else if (which == MADE_DYNAMIC) {
+            manager.removeBoundingBox(wall);
+            manager.addBoundingBox(wall);
+        }
+
+        player.updatePosition(210, 210);
+        boolean isOverlapping = player.getX() < wall.getX() + wall.getWidth() && wall.getX() < player.getX() + player.getWidth()
+                && player.getY() < wall.getY() + wall.getHeight() && wall.getY() < player.getY() + player.getHeight();
+        return isOverlapping && manager.checkCollision(player) == wall;
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import Data.Sprite;
+import Graphics.AssetLoader;
+import Graphics.AssetPack;
+import Graphics.SpriteCache;
+
+/**
+ * What going through the SpriteCache costs a frame when everything is already in memory: 1000 draws'
+ * worth of getSprite() over the Art.txt sprites, plus endFrame(). "eager" is the same with sprites
+ * that hold their image themselves, like before the cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpriteCacheBenchmark {
+    private static final int DRAWS = 1000;
+
+    @Param({"eager", "cached"})
+    public String mode;
+
+    private AssetLoader loader;
+    private SpriteCache cache;
+    private Sprite[] sprites;
+
+    @Setup
+    public void setup() {
+        List<String[]> list = AssetPack.readList("Art.txt");
+        loader = new AssetLoader(1);
+        cache = new SpriteCache(loader, null, SpriteCache.UNLIMITED);
+        sprites = new Sprite[list.size()];
+        for (int i = 0; i < sprites.length; i++) {
+            String[] entry = list.get(i);
+            sprites[i] = mode.equals("cached")
+                    ? cache.add(entry[0], entry[1])
+                    : new Sprite(0, 0, loader.load(entry[0]), entry[0], entry[1]);
+            sprites[i].getSprite();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        loader.shutdown();
+    }
+
+    @Benchmark
+    public void frame(Blackhole bh) {
+        for (int i = 0; i < DRAWS; i++) {
+            bh.consume(sprites[i % sprites.length].getSprite());
+        }
+        cache.endFrame();
+    }
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Data.Sprite;
+import Graphics.Sprites;
+
+/**
+ * Sprites.getSpriteByTag (and the ID lookup it sits on) against backbuffers of different sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpriteLookupBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int spriteCount;
+
+    private Sprites sprites;
+    private String[] lookupTags;
+    private int next;
+
+    @Setup
+    public void setup() {
+        sprites = BenchData.makeSprites(spriteCount, 1);
+        // Mixed case on purpose: tags are case insensitive
+        lookupTags = new String[Math.min(spriteCount, 1024)];
+        for (int i = 0; i < lookupTags.length; i++) {
+            lookupTags[i] = BenchData.tag((int) ((long) i * spriteCount / lookupTags.length)).toLowerCase();
+        }
+        next = 0;
+    }
+
+    private String nextTag() {
+        String tag = lookupTags[next];
+        next = (next + 1) % lookupTags.length;
+        return tag;
+    }
+
+    @Benchmark
+    public Sprite getSpriteByTag() {
+        return sprites.getSpriteByTag(nextTag());
+    }
+
+    @Benchmark
+    public int getSpriteId() {
+        return sprites.getSpriteId(nextTag());
+    }
+
+    @Benchmark
+    public Sprite getSpriteById() {
+        int id = next;
+        next = (next + 1) % spriteCount;
+        return sprites.getSpriteById(id);
+    }
+}
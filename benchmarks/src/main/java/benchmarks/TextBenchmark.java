@@ -0,0 +1,70 @@
+package benchmarks;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Data.gameString;
+import Graphics.GlyphAtlas;
+
+/**
+ * gameString.wordWrapX over a block of dialogue wordCount words long, measured through a Graphics
+ * and through a GlyphAtlas.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextBenchmark {
+    private static final String[] WORDS = "Oh No! You have found yourself trapped in a cell! How will you escape?".split(" ");
+
+    @Param({"10", "1000", "100000"})
+    public int wordCount;
+
+    private String[] tokens;
+    private Font font;
+    private Graphics2D g;
+    private GlyphAtlas atlas;
+
+    @Setup
+    public void setup() {
+        tokens = new String[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            tokens[i] = WORDS[i % WORDS.length];
+        }
+        font = new Font(Font.SANS_SERIF, Font.PLAIN, 32);
+        g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+        atlas = new GlyphAtlas(font);
+    }
+
+    @TearDown
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public String[] wordWrapX() {
+        return gameString.wordWrapX(tokens, 1000, g, font);
+    }
+
+    @Benchmark
+    public String[] wordWrapXAtlas() {
+        return gameString.wordWrapX(tokens, 1000, atlas);
+    }
+}
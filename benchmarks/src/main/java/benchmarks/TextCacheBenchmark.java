@@ -0,0 +1,109 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Graphics.GlyphAtlas;
+import Graphics.TextCache;
+
+/**
+ * The two lines of text the game draws every frame, drawn the old way (deriveFont + drawString)
+ * and through the TextCache. The target is an unaccelerated image, so "auto" draws glyphs with the cached font;
+ * "images" forces the cached-image blit to show what it costs in software.
+ * The dynamic pair draws a mouse-coordinate readout that is different every call, directly and through
+ * drawDynamicString ("images" makes that a glyph atlas blit per character).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextCacheBenchmark {
+    private static final String[] LINES = {
+        "Oh No! You have found yourself trapped in a cell!",
+        "How will you escape?"
+    };
+
+    private static final String[] COORDS = new String[64];
+
+    static {
+        for (int i = 0; i < COORDS.length; i++) {
+            COORDS[i] = "X: " + (i * 97 % 1280) + " , Y: " + (i * 41 % 720);
+        }
+    }
+
+    @Param({"auto", "images"})
+    public String mode;
+
+    private Font font;
+    private TextCache cache;
+    private BufferedImage target;
+    private Graphics2D g;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        font = new Font(Font.SANS_SERIF, Font.PLAIN, 32);
+        cache = new TextCache();
+        cache.setMode(mode.equals("images") ? TextCache.IMAGES : TextCache.AUTO);
+        cache.setGlyphAtlas(font, Font.BOLD, new GlyphAtlas(cache.getFont(font, Font.BOLD)));
+        target = new BufferedImage(BenchData.SCREEN_WIDTH, BenchData.SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        g = target.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g.dispose();
+        System.out.println();
+        System.out.println(cache);
+    }
+
+    @Benchmark
+    public BufferedImage drawDirect() {
+        for (int i = 0; i < LINES.length; i++) {
+            g.setFont(font.deriveFont(Font.BOLD));
+            g.setColor(Color.white);
+            g.drawString(LINES[i], 30, 40 + i * 20);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public BufferedImage drawCached() {
+        for (int i = 0; i < LINES.length; i++) {
+            cache.drawString(g, LINES[i], font, Font.BOLD, Color.white, 30, 40 + i * 20);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public BufferedImage drawDynamicDirect() {
+        g.setFont(font.deriveFont(Font.BOLD));
+        g.setColor(Color.white);
+        g.drawString(COORDS[frame++ & (COORDS.length - 1)], 1110, 20);
+        return target;
+    }
+
+    @Benchmark
+    public BufferedImage drawDynamic() {
+        cache.drawDynamicString(g, COORDS[frame++ & (COORDS.length - 1)], font, Font.BOLD, Color.white, 1110, 20);
+        return target;
+    }
+}
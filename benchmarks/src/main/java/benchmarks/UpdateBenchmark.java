@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Main.BoundingBox;
+import Main.InteractibleObject;
+import Main.Main;
+import logic.Control;
+
+/**
+ * One full game tick (input, Main.update, draw submission) on a headless Control, with entityCount extra
+ * interactible objects in the room, updated on updateThreads threads (1 = the serial loop, see ParallelUpdate).
+ * Needs to run from the project root so Art.txt and Font/ load.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class UpdateBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int entityCount;
+
+    @Param({"1", "4"})
+    public String updateThreads;
+
+    private Control ctrl;
+
+    @Setup
+    public void setup() {
+        System.setProperty("game.updateThreads", updateThreads);     // Read when Main is first loaded
+        ctrl = new Control();                       // Calls Main.start()
+        Random rnd = new Random(42);
+        for (int i = 0; i < entityCount; i++) {
+            int x = 60 + rnd.nextInt(Main.SCREEN_WIDTH - 260);
+            int y = 20 + rnd.nextInt(Main.SCREEN_HEIGHT - 200);
+            String tag = (i & 1) == 0 ? "IN1" : "IN2";
+            InteractibleObject obj = new InteractibleObject(x, y, 20, 20, "bench_" + i, "Bench " + i, tag, false, 0, 0);
+            BoundingBox box = obj.boundingBox;
+            box.setActive(false);                   // Keep the player free to walk around
+            Main.collisionManager.addStaticBoundingBox(box);
+            Main.interactibleObjects.add(obj);
+        }
+        Main.resolveSprites(ctrl);
+    }
+
+    @Benchmark
+    public long tick() {
+        ctrl.tick();
+        return ctrl.getTickCount();
+    }
+}
@@ -5,9 +5,12 @@ import java.awt.image.ColorModel;
 import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 
+import Graphics.AssetLoader;
+import Graphics.SpriteCache;
 import gameloop.Renderer;
 
 /* This will work in tandem with the Sprites.java file in the graphics package. This is a single object of
@@ -18,6 +21,10 @@ public class Sprite implements Runnable{
 	private int _x, _y;
 	private String _file;
 	private String _tag;			// Used to find the sprite
+	private Future<BufferedImage> _pending;		// Still being loaded in the background (see AssetLoader)
+	private SpriteCache.Entry _cached;			// Image lives in a SpriteCache instead (see SpriteCache.add)
+	private BufferedImage _atlasPage;			// Shared page the image was copied onto (see SpriteAtlas), null if it wasn't
+	private int _atlasX, _atlasY;
 	public Sprite(int x, int y, String spriteFileName, String tag){
 		try {
 			_image = ImageIO.read(new File(spriteFileName));
@@ -40,6 +47,26 @@ public class Sprite implements Runnable{
 		t.start();
 	}*/
 	
+	/* The image is still loading; the first getSprite() waits for it if it isn't done by then */
+	public Sprite(int x, int y, Future<BufferedImage> pending, String spriteFileName, String tag){
+		if(pending == null)		throw new NullPointerException();
+		_pending = pending;
+		_x = x;
+		_y = y;
+		_file = spriteFileName;
+		_tag = tag;
+	}
+	
+	/* The image is loaded (and maybe dropped again) by a SpriteCache */
+	public Sprite(int x, int y, SpriteCache.Entry cached, String spriteFileName, String tag){
+		if(cached == null)		throw new NullPointerException();
+		_cached = cached;
+		_x = x;
+		_y = y;
+		_file = spriteFileName;
+		_tag = tag;
+	}
+	
 	public Sprite(int x, int y, BufferedImage image, String tag){
 		_image = image;
 		_x = x;
@@ -67,9 +94,45 @@ public class Sprite implements Runnable{
 	}
 	
 	public BufferedImage getSprite(){
+		if(_cached != null)
+			return _cached.getImage();
+		if(_image == null && _pending != null)
+			finishLoading();
 		return _image;
 	}
 	
+	/* Size without waiting for the image to load (the cache can tell from the pack or the file's header); -1 if
+	 * that isn't known yet */
+	public int getWidth(){
+		if(_image == null && _cached != null)		return _cached.getWidth();
+		BufferedImage image = isLoaded() ? getSprite() : null;
+		return image == null ? -1 : image.getWidth();
+	}
+	
+	public int getHeight(){
+		if(_image == null && _cached != null)		return _cached.getHeight();
+		BufferedImage image = isLoaded() ? getSprite() : null;
+		return image == null ? -1 : image.getHeight();
+	}
+	
+	/* False while the image is still loading in the background, or not in memory at all (getSprite() would wait) */
+	public boolean isLoaded(){
+		if(_cached != null)
+			return _cached.isLoaded();
+		return _image != null || _pending == null || _pending.isDone();
+	}
+	
+	/* Hint that this sprite will be drawn soon, so a cached sprite that isn't in memory starts loading now */
+	public void prefetch(){
+		if(_cached != null)
+			_cached.prefetch();
+	}
+	
+	private void finishLoading(){
+		_image = AssetLoader.await(_pending, _file);
+		_pending = null;
+	}
+	
 	public int getX(){
 		return _x;
 	}
@@ -96,6 +159,37 @@ public class Sprite implements Runnable{
 	
 	public void changeImage(BufferedImage newImage){
 		_image = newImage;
+		_pending = null;
+		_cached = null;
+		_atlasPage = null;
+	}
+	
+	/* The image now lives on page at (x, y), so it's drawn from there. getSprite() still returns just this sprite's
+	 * pixels (a view into the page), and the cache lets go of the separate copy. */
+	public void setAtlasRegion(BufferedImage page, int x, int y){
+		BufferedImage image = getSprite();
+		_image = page.getSubimage(x, y, image.getWidth(), image.getHeight());
+		_pending = null;
+		if(_cached != null){
+			_cached.release();
+			_cached = null;
+		}
+		_atlasPage = page;
+		_atlasX = x;
+		_atlasY = y;
+	}
+	
+	/* null if the sprite is drawn from its own image */
+	public BufferedImage getAtlasPage(){
+		return _atlasPage;
+	}
+	
+	public int getAtlasX(){
+		return _atlasX;
+	}
+	
+	public int getAtlasY(){
+		return _atlasY;
 	}
 	
 	public String toString(){
@@ -6,11 +6,14 @@ import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.util.ArrayList;
 
+import Graphics.GlyphAtlas;
+
 public class gameString{
 	private String _str;
 	private Color _color;
 	private int _x, _y;
 	private Font cFont;
+	private boolean _isDynamic;		// Changes (nearly) every frame, so not worth caching as a whole
 	
 	public gameString(Color color,
 			int x, int y, String str, Font font, float scaleFactor){
@@ -45,6 +48,14 @@ public class gameString{
 		_str = newStr;
 	}
 	
+	public void setDynamic(boolean isDynamic){
+		_isDynamic = isDynamic;
+	}
+	
+	public boolean isDynamic(){
+		return _isDynamic;
+	}
+	
 	/* Get width of a string in pixels */
 	private static int getStringWidth(Graphics g, Font f, String s) {	
 	    FontMetrics fm   = g.getFontMetrics(f);
@@ -52,6 +63,11 @@ public class gameString{
 	    return (int)(rect.getWidth() + (s.length() * 2));
 	}
 	
+	/* Same as above from the atlas metrics, no Graphics needed */
+	private static int getStringWidth(GlyphAtlas atlas, CharSequence s){
+		return atlas.stringWidth(s) + (s.length() * 2);
+	}
+	
 	/* Try to center text between two x points */
 	public static int getCenteredXPosition(Graphics g, Font f, 
 			String s, int x1, int x2, float scaleFactor){
@@ -65,6 +81,15 @@ public class gameString{
 		return centerX;
 	}
 	
+	/* Same as above, measured with the atlas */
+	public static int getCenteredXPosition(GlyphAtlas atlas, String s, int x1, int x2, float scaleFactor){
+		int normalizedWidth = (int) (getStringWidth(atlas, s) / scaleFactor);
+		normalizedWidth /= 2;
+		int rectWidth = x2 - x1;
+		rectWidth /= 2;
+		return x1 + (rectWidth - normalizedWidth);
+	}
+	
 	/* Find out which token to stop at...*/
 	public static String[] wordWrapX(String[] tokens, int max, Graphics g, Font f){
 		ArrayList<String> lines = new ArrayList<String>();
@@ -86,4 +111,23 @@ public class gameString{
 			linesArray[i] = lines.get(i);
 		return linesArray;
 	}
+	
+	/* Same lines as above, measured with the atlas (and without building a new string for every token) */
+	public static String[] wordWrapX(String[] tokens, int max, GlyphAtlas atlas){
+		ArrayList<String> lines = new ArrayList<String>();
+		StringBuilder test = new StringBuilder();
+		String line = "";
+		for(int i = 0; i < tokens.length; i++){
+			test.append(tokens[i]);
+			if(getStringWidth(atlas, test) > max){
+				lines.add(line);
+				test.setLength(0);
+				test.append(tokens[i]);
+			}
+			test.append(' ');
+			line = test.toString();
+		}
+		lines.add(line);		// Add the remainder of line at the end
+		return lines.toArray(new String[lines.size()]);
+	}
 }
\ No newline at end of file
@@ -7,11 +7,13 @@ public class spriteInfo {
 		// TODO: Add private class fields to store x, y (use Vector2D for this) and tag (String) values given in class constructor
 	private Vector2D v2d;
 	private String tag;
+	private int spriteId;			// Resolved backbuffer ID for tag (-1 until resolved)
 	// Constructor
 	public spriteInfo(Vector2D v2d, String tag){
 		// TODO: Save the constructor parameters into class fields
 		this.v2d = v2d;
 		this.tag = tag;
+		this.spriteId = -1;
 	}
 	
 	// Methods
@@ -20,6 +22,10 @@ public class spriteInfo {
 		return tag;
 	}
 	
+	public int getSpriteId(){
+		return spriteId;
+	}
+	
 	public Vector2D getCoords(){
 		// TODO: Remove my placeholder code below (which is there to prevent an error) and replace it with returning the value of your private field v2d
 		return v2d;
@@ -28,6 +34,16 @@ public class spriteInfo {
 	public void setTag(String newTag){
 		// TODO: Update the value of tag to be the value in newTag (Absolute assignment)
 		this.tag = newTag;
+		this.spriteId = -1;			// Old ID belongs to the old tag
+	}
+	
+	public void setTag(String newTag, int newSpriteId){
+		this.tag = newTag;
+		this.spriteId = newSpriteId;
+	}
+	
+	public void setSpriteId(int newSpriteId){
+		this.spriteId = newSpriteId;
 	}
 	
 	public void setCoords(Vector2D newV2D){
@@ -0,0 +1,225 @@
+package Graphics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import FileIO.EZFileRead;
+
+/* Every animation the game has, shared by everything that plays them. A clip is a list of sprites, each shown for
+ * its own number of milliseconds, played once, on a loop, or ping-ponging back and forth. They come from a file
+ * next to Art.txt (Anim.txt), one clip per line:
+ *		walkDown*pingpong*1F:75*2F:75*3F:75*4F:75
+ * (name, once/loop/pingpong, then tag:milliseconds for each frame; blank lines and lines starting with # are skipped).
+ * Something playing a clip only keeps which clip and when it started; frameAt works out the frame from how long ago
+ * that was, so there's no timer or frame counter per entity. A ping-pong clip is stored unrolled into a loop
+ * (1 2 3 4 3 2), and a clip whose frames are all as long as each other is a single division, otherwise a binary
+ * search through when each frame ends. */
+
+public class AnimationClips{
+	public static final int NO_CLIP = -1;
+	public static final int ONCE = 0;
+	public static final int LOOP = 1;
+	public static final int PING_PONG = 2;
+
+	// Per clip
+	private final List<String> names;
+	private final HashMap<String, Integer> byName;
+	private int[] modes;
+	private int[] firstFrames;				// Into the frame arrays
+	private int[] frameCounts;				// After unrolling
+	private int[] lengths;					// Milliseconds for one time through (after unrolling)
+	private int[] uniformMillis;			// How long every frame is if they're all the same, otherwise 0
+	private int clipCount;
+	// Per frame, every clip's one after the other
+	private int[] spriteIds;
+	private String[] tags;
+	private int[] ends;						// Milliseconds into its clip that the frame ends
+	private int frameCount;
+
+	public AnimationClips(){
+		names = new ArrayList<String>();
+		byName = new HashMap<String, Integer>();
+		modes = new int[8];
+		firstFrames = new int[8];
+		frameCounts = new int[8];
+		lengths = new int[8];
+		uniformMillis = new int[8];
+		spriteIds = new int[32];
+		tags = new String[32];
+		ends = new int[32];
+	}
+
+	/* Every clip in file, with the tags looked up in sprites. A missing file is no clips. */
+	public static AnimationClips read(String file, Sprites sprites){
+		AnimationClips clips = new AnimationClips();
+		EZFileRead ezr = new EZFileRead(file);
+		for(int i = 0; i < ezr.getNumLines(); i++){
+			String line = ezr.getLine(i).trim();
+			if(line.length() == 0 || line.startsWith("#"))		continue;
+			try {
+				clips.parse(line, sprites);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(file + " line " + (i + 1) + ": " + e.getMessage());
+			}
+		}
+		return clips;
+	}
+
+	private void parse(String line, Sprites sprites){
+		StringTokenizer st = new StringTokenizer(line, "*");
+		if(st.countTokens() < 3)
+			throw new IllegalArgumentException("should be name*mode*tag:ms*tag:ms...");
+		String name = st.nextToken().trim();
+		int mode = parseMode(st.nextToken().trim());
+		int n = st.countTokens();
+		int[] ids = new int[n];
+		String[] frameTags = new String[n];
+		int[] millis = new int[n];
+		for(int f = 0; f < n; f++){
+			String frame = st.nextToken().trim();
+			int colon = frame.lastIndexOf(':');
+			if(colon <= 0)
+				throw new IllegalArgumentException("frame \"" + frame + "\" should be tag:ms");
+			frameTags[f] = frame.substring(0, colon).trim();
+			ids[f] = sprites.getSpriteId(frameTags[f]);
+			if(ids[f] == Sprites.NO_SPRITE)
+				throw new IllegalArgumentException("no sprite tagged " + frameTags[f] + " in the art list");
+			try {
+				millis[f] = Integer.parseInt(frame.substring(colon + 1).trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("bad duration in \"" + frame + "\"");
+			}
+			if(millis[f] < 1)
+				throw new IllegalArgumentException("frames have to last at least 1 ms: " + frame);
+		}
+		add(name, mode, frameTags, ids, millis);
+	}
+
+	private static int parseMode(String mode){
+		if(mode.equalsIgnoreCase("once"))			return ONCE;
+		if(mode.equalsIgnoreCase("loop"))			return LOOP;
+		if(mode.equalsIgnoreCase("pingpong"))		return PING_PONG;
+		throw new IllegalArgumentException("mode \"" + mode + "\" should be once, loop or pingpong");
+	}
+
+	/* Adds a clip (replacing one with the same name for lookups by name) and returns its ID */
+	public int add(String name, int mode, String[] frameTags, int[] frameSpriteIds, int[] frameMillis){
+		int n = frameSpriteIds.length;
+		if(n == 0 || frameTags.length != n || frameMillis.length != n)
+			throw new IllegalArgumentException("Clip " + name + " needs one tag, sprite and duration per frame, and at least one frame");
+		if(mode < ONCE || mode > PING_PONG)
+			throw new IllegalArgumentException("Unknown mode " + mode);
+		// Unroll ping-pong into a loop: forwards, then back without repeating either end
+		int[] order = new int[mode == PING_PONG && n > 2 ? 2 * n - 2 : n];
+		for(int f = 0; f < order.length; f++)
+			order[f] = f < n ? f : 2 * n - 2 - f;
+
+		if(clipCount == modes.length){
+			modes = copyOf(modes, clipCount * 2);
+			firstFrames = copyOf(firstFrames, clipCount * 2);
+			frameCounts = copyOf(frameCounts, clipCount * 2);
+			lengths = copyOf(lengths, clipCount * 2);
+			uniformMillis = copyOf(uniformMillis, clipCount * 2);
+		}
+		while(frameCount + order.length > spriteIds.length){
+			spriteIds = copyOf(spriteIds, spriteIds.length * 2);
+			ends = copyOf(ends, ends.length * 2);
+			String[] t = new String[tags.length * 2];
+			System.arraycopy(tags, 0, t, 0, frameCount);
+			tags = t;
+		}
+		int clip = clipCount++;
+		int first = frameCount;
+		int time = 0;
+		int uniform = frameMillis[order[0]];
+		for(int f = 0; f < order.length; f++){
+			int source = order[f];
+			time += frameMillis[source];
+			if(frameMillis[source] != uniform)		uniform = 0;
+			spriteIds[first + f] = frameSpriteIds[source];
+			tags[first + f] = frameTags[source];
+			ends[first + f] = time;
+		}
+		frameCount += order.length;
+		modes[clip] = mode;
+		firstFrames[clip] = first;
+		frameCounts[clip] = order.length;
+		lengths[clip] = time;
+		uniformMillis[clip] = uniform;
+		names.add(name);
+		byName.put(name, clip);
+		return clip;
+	}
+
+	private static int[] copyOf(int[] src, int newLength){
+		int[] dst = new int[newLength];
+		System.arraycopy(src, 0, dst, 0, Math.min(src.length, newLength));
+		return dst;
+	}
+
+	/* Returns NO_CLIP if there's no clip called name */
+	public int getClipId(String name){
+		Integer clip = byName.get(name);
+		return clip == null ? NO_CLIP : clip;
+	}
+
+	/* The frame (for getSpriteId/getTag) clip shows elapsedMillis after it started. A clip that plays once stays on
+	 * its last frame when it's over; before it starts it's on its first. */
+	public int frameAt(int clip, int elapsedMillis){
+		int first = firstFrames[clip];
+		int length = lengths[clip];
+		if(elapsedMillis < 0)		elapsedMillis = 0;
+		if(elapsedMillis >= length){
+			if(modes[clip] == ONCE)		return first + frameCounts[clip] - 1;
+			elapsedMillis %= length;
+		}
+		int step = uniformMillis[clip];
+		if(step > 0)		return first + elapsedMillis / step;
+		// First frame that ends after elapsedMillis
+		int lo = first, hi = first + frameCounts[clip] - 1;
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(ends[mid] > elapsedMillis)		hi = mid;
+			else								lo = mid + 1;
+		}
+		return lo;
+	}
+
+	/* The sprite ID clip shows elapsedMillis after it started, NO_SPRITE for NO_CLIP */
+	public int spriteAt(int clip, int elapsedMillis){
+		if(clip == NO_CLIP)		return Sprites.NO_SPRITE;
+		return spriteIds[frameAt(clip, elapsedMillis)];
+	}
+
+	/* True once a clip that plays once has shown its last frame for as long as it lasts (never for the others) */
+	public boolean isFinished(int clip, int elapsedMillis){
+		return modes[clip] == ONCE && elapsedMillis >= lengths[clip];
+	}
+
+	public int getSpriteId(int frame){
+		return spriteIds[frame];
+	}
+
+	public String getTag(int frame){
+		return tags[frame];
+	}
+
+	public int size(){
+		return clipCount;
+	}
+
+	public String getName(int clip){
+		return names.get(clip);
+	}
+
+	public int getMode(int clip){
+		return modes[clip];
+	}
+
+	/* Milliseconds for one time through (a ping-pong clip's there and back) */
+	public int getLength(int clip){
+		return lengths[clip];
+	}
+}
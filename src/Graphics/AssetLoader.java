@@ -0,0 +1,208 @@
+package Graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import gameloop.Renderer;
+
+/* Decodes images on a fixed pool of worker threads (one per core by default) and converts them to the screen's
+ * format (Renderer.toCompatibleImage) while it's at it, so drawing them later doesn't need a conversion every blit.
+ * load() returns right away with a Future; nothing waits until something actually needs the pixels (see
+ * Sprite.getSprite). Images baked into an AssetPack skip the decode and are only copied out of the pack.
+ * The counters are there so a loading screen can draw a progress bar. */
+
+public class AssetLoader{
+	private final ExecutorService pool;
+	private final int threads;
+	private final AtomicInteger submitted = new AtomicInteger();
+	private final AtomicInteger finished = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicLong decodeNanos = new AtomicLong();		// Summed over all workers
+
+	public AssetLoader(int threads){
+		if(threads < 1)		throw new IllegalArgumentException("Need at least 1 loader thread");
+		this.threads = threads;
+		pool = Executors.newFixedThreadPool(threads, new ThreadFactory(){
+			private final AtomicInteger count = new AtomicInteger();
+			public Thread newThread(Runnable r){
+				Thread t = new Thread(r, "asset-loader-" + count.incrementAndGet());
+				t.setDaemon(true);			// Never keeps the game from exiting
+				return t;
+			}
+		});
+	}
+
+	/* -Dgame.loaderThreads=N, one per core by default */
+	public static AssetLoader fromSystemProperties(){
+		return new AssetLoader(Integer.getInteger("game.loaderThreads", Runtime.getRuntime().availableProcessors()));
+	}
+
+	/* Starts decoding file in the background */
+	public Load load(final String file){
+		return submit(new Callable<BufferedImage>(){
+			public BufferedImage call() throws IOException{
+				BufferedImage image = ImageIO.read(new File(file));
+				if(image == null)		throw new IOException("Not an image: " + file);
+				return Renderer.toCompatibleImage(image);
+			}
+		});
+	}
+
+	/* Copies image i out of a pack in the background: no decoding, just the copy and the conversion */
+	public Load load(final AssetPack pack, final int i){
+		return submit(new Callable<BufferedImage>(){
+			public BufferedImage call(){
+				return Renderer.toCompatibleImage(pack.getImage(i));
+			}
+		});
+	}
+
+	private Load submit(Callable<BufferedImage> work){
+		submitted.incrementAndGet();
+		Load load = new Load(work);
+		pool.execute(load);
+		return load;
+	}
+
+	/* { width, height } of file from its header, without decoding the pixels; null if it can't be read */
+	public static int[] readSize(String file){
+		ImageInputStream in = null;
+		try {
+			in = ImageIO.createImageInputStream(new File(file));
+			if(in == null)		return null;
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if(!readers.hasNext())		return null;
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(in, true, true);
+				return new int[]{ reader.getWidth(0), reader.getHeight(0) };
+			} finally {
+				reader.dispose();
+			}
+		} catch (IOException e) {
+			return null;
+		} finally {
+			if(in != null){
+				try {
+					in.close();
+				} catch (IOException e) {
+					// Only read from, nothing to lose
+				}
+			}
+		}
+	}
+
+	/* Waits for a load to finish, even through interrupts (the interrupt is passed on after). Failures come out as
+	 * IllegalArgumentException, same as the Sprite constructor that reads the file itself. */
+	public static BufferedImage await(Future<BufferedImage> pending, String file){
+		boolean isInterrupted = false;
+		try {
+			while(true){
+				try {
+					return pending.get();
+				} catch (InterruptedException e) {
+					isInterrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalArgumentException("Couldn't load " + file, e.getCause());
+		} finally {
+			if(isInterrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	public int getThreadCount(){
+		return threads;
+	}
+
+	public int getSubmittedCount(){
+		return submitted.get();
+	}
+
+	/* Loaded or failed */
+	public int getFinishedCount(){
+		return finished.get();
+	}
+
+	public int getFailedCount(){
+		return failed.get();
+	}
+
+	/* 0 to 1, for a loading bar. 1 when nothing has been asked for. */
+	public float getProgress(){
+		int total = submitted.get();
+		return total == 0 ? 1.0f : finished.get() / (float) total;
+	}
+
+	public boolean isDone(){
+		return finished.get() == submitted.get();
+	}
+
+	/* Worker time spent decoding and converting, added up over all threads */
+	public long getDecodeNanos(){
+		return decodeNanos.get();
+	}
+
+	/* Lets queued loads finish, then stops the workers */
+	public void shutdown(){
+		pool.shutdown();
+	}
+
+	public String toString(){
+		return String.format("asset loader: %d/%d loaded (%d failed) on %d threads, %.1f ms decoding",
+				finished.get() - failed.get(), submitted.get(), failed.get(), threads, decodeNanos.get() / 1e6);
+	}
+
+	/* One image being loaded, and how long the worker took over it */
+	public final class Load extends FutureTask<BufferedImage>{
+		private long start, nanos;
+
+		private Load(Callable<BufferedImage> work){
+			super(work);
+		}
+
+		public void run(){
+			start = System.nanoTime();
+			super.run();
+		}
+
+		// Counted before the result is published, so whoever sees it done sees the counters too
+		protected void set(BufferedImage image){
+			finish();
+			super.set(image);
+		}
+
+		protected void setException(Throwable t){
+			failed.incrementAndGet();
+			finish();
+			super.setException(t);
+		}
+
+		private void finish(){
+			nanos = System.nanoTime() - start;
+			decodeNanos.addAndGet(nanos);
+			finished.incrementAndGet();
+		}
+
+		/* Worker time spent on this image, 0 until it's done */
+		public long getNanos(){
+			return isDone() ? nanos : 0;
+		}
+	}
+}
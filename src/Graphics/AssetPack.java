@@ -0,0 +1,324 @@
+package Graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import javax.imageio.ImageIO;
+
+import FileIO.EZFileRead;
+
+/* Every image in an art list (Art.txt) baked into one file as raw premultiplied ARGB pixels, so loading the art is
+ * a memory map and a copy instead of a PNG decode per file. Build it offline with main() whenever the art changes:
+ *		java -cp target/classes Graphics.AssetPack [Art.txt] [Art.pack]
+ * Control uses the pack when it's at least as new as the list and every image in it, and the PNGs otherwise.
+ * A file listed more than once (a sprite sheet cut into several sprites) is baked once, under its first tag.
+ * Layout (header big endian, pixels little endian, each image starting on an 8 byte boundary):
+ *		int magic, int version, int count
+ *		count x { short length + UTF-8 file, short length + UTF-8 tag, int width, int height, long pixel offset }
+ *		width * height ints of INT_ARGB_PRE per image */
+
+public class AssetPack{
+	private static final int MAGIC = 0x4A325044;		// "J2PD"
+	private static final int VERSION = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final DirectColorModel COLOR_MODEL = new DirectColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), 32,
+			0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000, true, DataBuffer.TYPE_INT);		// Same as TYPE_INT_ARGB_PRE
+
+	private final File file;
+	private final MappedByteBuffer map;
+	private final String[] files, tags;
+	private final int[] widths, heights;
+	private final long[] offsets;
+	private final Map<String, Integer> byFile;
+
+	private AssetPack(File file, MappedByteBuffer map, int count){
+		this.file = file;
+		this.map = map;
+		files = new String[count];
+		tags = new String[count];
+		widths = new int[count];
+		heights = new int[count];
+		offsets = new long[count];
+		byFile = new HashMap<String, Integer>(count * 2);
+	}
+
+	/* Maps the pack and reads its index (the pixels stay on disk until something touches them) */
+	public static AssetPack open(File file) throws IOException{
+		MappedByteBuffer map;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			map = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());		// Stays valid after the file is closed
+		} finally {
+			raf.close();
+		}
+		try {
+			if(map.getInt() != MAGIC)		throw new IOException("Not an asset pack: " + file);
+			int version = map.getInt();
+			if(version != VERSION)			throw new IOException(file + " is version " + version + ", expected " + VERSION);
+			int count = map.getInt();
+			if(count < 0)					throw new IOException("Corrupt asset pack: " + file);
+			AssetPack pack = new AssetPack(file, map, count);
+			for(int i = 0; i < count; i++){
+				pack.files[i] = readString(map);
+				pack.tags[i] = readString(map);
+				pack.widths[i] = map.getInt();
+				pack.heights[i] = map.getInt();
+				pack.offsets[i] = map.getLong();
+				if(pack.widths[i] <= 0 || pack.heights[i] <= 0 || pack.offsets[i] < 0
+						|| pack.offsets[i] + (long) pack.widths[i] * pack.heights[i] * 4 > map.capacity())
+					throw new IOException("Corrupt asset pack: " + file + " (" + pack.files[i] + ")");
+				pack.byFile.put(pack.files[i], i);
+			}
+			return pack;
+		} catch (java.nio.BufferUnderflowException e) {
+			throw new IOException("Truncated asset pack: " + file);
+		}
+	}
+
+	/* True if pack exists and nothing in listFile (or the list itself) was changed after it was built */
+	public static boolean isUpToDate(File pack, String listFile){
+		long built = pack.lastModified();		// 0 if it doesn't exist
+		if(built == 0 || built < new File(listFile).lastModified())
+			return false;
+		for(String[] entry : readList(listFile)){
+			File source = new File(entry[0]);
+			if(!source.exists() || source.lastModified() > built)
+				return false;
+		}
+		return true;
+	}
+
+	/* { file, tag } for every line of an art list ("Art/Background.png*BG"), or { file, tag, x, y, width, height } for a
+	 * sprite that's one piece of a sprite sheet ("Art/Sheet.png*Walk1*0*0*32*48", see cropOf) */
+	public static List<String[]> readList(String listFile){
+		List<String[]> list = new ArrayList<String[]>();
+		EZFileRead ezr = new EZFileRead(listFile);
+		for(int i = 0; i < ezr.getNumLines(); i++){
+			StringTokenizer st = new StringTokenizer(ezr.getLine(i), "*");
+			int n = st.countTokens();
+			if(n != 2 && n != 6)
+				throw new IllegalArgumentException(listFile + " line " + (i + 1) + " should be file*tag or file*tag*x*y*width*height");
+			String[] entry = new String[n];
+			for(int t = 0; t < n; t++)
+				entry[t] = st.nextToken().trim();
+			cropOf(entry);			// Bad numbers show up now rather than when the sprite is first drawn
+			list.add(entry);
+		}
+		return list;
+	}
+
+	/* The piece of the file a list entry uses, null for the whole file */
+	public static Rectangle cropOf(String[] entry){
+		if(entry.length < 6)		return null;
+		try {
+			Rectangle crop = new Rectangle(Integer.parseInt(entry[2]), Integer.parseInt(entry[3]),
+					Integer.parseInt(entry[4]), Integer.parseInt(entry[5]));
+			if(crop.x < 0 || crop.y < 0 || crop.width < 1 || crop.height < 1)
+				throw new IllegalArgumentException("Bad sprite sheet piece for " + entry[1] + ": " + crop);
+			return crop;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad sprite sheet piece for " + entry[1] + ": " + e.getMessage());
+		}
+	}
+
+	public File getFile(){
+		return file;
+	}
+
+	public int size(){
+		return files.length;
+	}
+
+	/* Index of the image that was baked from file, -1 if it isn't in the pack */
+	public int indexOf(String file){
+		Integer i = byFile.get(file);
+		return i == null ? -1 : i;
+	}
+
+	public String getSourceFile(int i){
+		return files[i];
+	}
+
+	public String getTag(int i){
+		return tags[i];
+	}
+
+	public int getWidth(int i){
+		return widths[i];
+	}
+
+	public int getHeight(int i){
+		return heights[i];
+	}
+
+	/* Image i copied onto the heap as a TYPE_INT_ARGB_PRE BufferedImage: one bulk copy out of the mapping, no decoding.
+	 * Safe to call from several threads at once. */
+	public BufferedImage getImage(int i){
+		int w = widths[i], h = heights[i];
+		int[] pixels = new int[w * h];
+		pixels(i).get(pixels);
+		BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+		image.getRaster().setDataElements(0, 0, w, h, pixels);		// Not getData(), that would stop Java2D from caching it on the card
+		return image;
+	}
+
+	/* Image i straight over the mapped pixels, nothing copied. Good for reading pixels (masks, tools), but Java2D can
+	 * only draw it the slow generic way, so sprites use getImage. Writing to it throws. */
+	public BufferedImage getMappedImage(int i){
+		int w = widths[i], h = heights[i];
+		SinglePixelPackedSampleModel sm = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, w, h, COLOR_MODEL.getMasks());
+		WritableRaster raster = Raster.createWritableRaster(sm, new MappedDataBuffer(pixels(i)), null);
+		return new BufferedImage(COLOR_MODEL, raster, true, null);
+	}
+
+	/* The pixels of image i as their own view of the mapping (views have their own position, so threads don't collide) */
+	private IntBuffer pixels(int i){
+		ByteBuffer view = map.duplicate();
+		view.position((int) offsets[i]);
+		view.limit((int) (offsets[i] + (long) widths[i] * heights[i] * 4));
+		return view.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+	}
+
+	public String toString(){
+		return String.format("asset pack %s: %d images, %d KB", file, files.length, map.capacity() / 1024);
+	}
+
+	private static String readString(ByteBuffer in){
+		byte[] bytes = new byte[in.getShort() & 0xffff];
+		in.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/* Decodes every image in listFile and writes them all to packFile (through a temp file, so a half written pack is never picked up) */
+	public static void write(String listFile, File packFile) throws IOException{
+		if(!new File(listFile).exists())		throw new IOException("No art list " + listFile);
+		Map<String, String[]> byFile = new LinkedHashMap<String, String[]>();
+		for(String[] entry : readList(listFile)){
+			if(!byFile.containsKey(entry[0]))
+				byFile.put(entry[0], entry);
+		}
+		List<String[]> list = new ArrayList<String[]>(byFile.values());
+		List<BufferedImage> images = new ArrayList<BufferedImage>(list.size());
+		for(String[] entry : list){
+			BufferedImage src = ImageIO.read(new File(entry[0]));
+			if(src == null)		throw new IOException("Not an image: " + entry[0]);
+			BufferedImage pre = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+			Graphics2D g2d = pre.createGraphics();
+			g2d.setComposite(AlphaComposite.Src);
+			g2d.drawImage(src, 0, 0, null);
+			g2d.dispose();
+			images.add(pre);
+		}
+
+		// Index first, so the pixel offsets are known before anything is written
+		long headerBytes = 12;
+		for(String[] entry : list)
+			headerBytes += 2 + entry[0].getBytes(UTF8).length + 2 + entry[1].getBytes(UTF8).length + 16;
+		long offset = align(headerBytes);
+		ByteArrayOutputStream header = new ByteArrayOutputStream((int) offset);
+		DataOutputStream out = new DataOutputStream(header);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(list.size());
+		for(int i = 0; i < list.size(); i++){
+			BufferedImage image = images.get(i);
+			writeString(out, list.get(i)[0]);
+			writeString(out, list.get(i)[1]);
+			out.writeInt(image.getWidth());
+			out.writeInt(image.getHeight());
+			out.writeLong(offset);
+			offset = align(offset + (long) image.getWidth() * image.getHeight() * 4);
+		}
+		while(header.size() < align(headerBytes))
+			out.writeByte(0);
+
+		File temp = new File(packFile.getAbsoluteFile().getParentFile(), packFile.getName() + ".tmp");
+		RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+		try {
+			raf.setLength(0);
+			FileChannel ch = raf.getChannel();
+			writeFully(ch, ByteBuffer.wrap(header.toByteArray()));
+			for(BufferedImage image : images){
+				int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+				ByteBuffer buf = ByteBuffer.allocate((int) align(pixels.length * 4L)).order(ByteOrder.LITTLE_ENDIAN);
+				buf.asIntBuffer().put(pixels);
+				writeFully(ch, buf);
+			}
+		} finally {
+			raf.close();
+		}
+		Files.move(temp.toPath(), packFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException{
+		byte[] bytes = s.getBytes(UTF8);
+		if(bytes.length > 0xffff)		throw new IOException("Name too long for an asset pack: " + s);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException{
+		while(buf.hasRemaining())
+			ch.write(buf);
+	}
+
+	private static long align(long n){
+		return (n + 7) & ~7L;
+	}
+
+	/* The packer: java Graphics.AssetPack [list file] [pack file], defaults Art.txt and Art.pack */
+	public static void main(String[] args) throws IOException{
+		String listFile = args.length > 0 ? args[0] : "Art.txt";
+		File packFile = new File(args.length > 1 ? args[1] : "Art.pack");
+		long start = System.nanoTime();
+		write(listFile, packFile);
+		AssetPack pack = open(packFile);
+		System.out.printf("%s (%.1f ms)%n", pack, (System.nanoTime() - start) / 1e6);
+	}
+
+	/* Read only DataBuffer over part of the mapping */
+	private static final class MappedDataBuffer extends DataBuffer{
+		private final IntBuffer pixels;
+
+		MappedDataBuffer(IntBuffer pixels){
+			super(TYPE_INT, pixels.capacity());
+			this.pixels = pixels;
+		}
+
+		public int getElem(int bank, int i){
+			return pixels.get(i);
+		}
+
+		public void setElem(int bank, int i, int val){
+			throw new UnsupportedOperationException("Asset pack images are read only");
+		}
+	}
+}
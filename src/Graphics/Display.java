@@ -0,0 +1,21 @@
+package Graphics;
+
+import java.awt.Graphics;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseListener;
+import java.awt.image.BufferStrategy;
+
+/* Everything the game loop needs from a screen. Graphic is the real full screen one; HeadlessGraphic draws into
+ * an offscreen image so the game can run where there is no display at all (build agents, benchmarks). */
+
+public interface Display{
+	public int getWidth();
+	public int getHeight();
+	public Graphics getGraph();
+	public BufferStrategy getBufferStrategy();
+	public void setMouseListener(MouseListener m);
+	public void setKeyListener(KeyListener k);
+	public void hideCursor();
+	public void errorClose(String msg);
+	public void normalClose();
+}
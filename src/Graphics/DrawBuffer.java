@@ -0,0 +1,187 @@
+package Graphics;
+
+/* A list of "draw sprite N at (x, y) on layer L" commands for one frame. Moving sprites can also carry where they
+ * were last tick so the renderer can interpolate between ticks. The commands are kept in plain int
+ * arrays that get reused every frame, so filling the buffer doesn't allocate anything (unless it has to grow)
+ * and the same backbuffer image can be drawn as many times as you want per frame. The sprites in the backbuffer
+ * are never moved, they are just looked up by ID when the renderer walks this buffer. */
+
+public class DrawBuffer{
+	private static final int DEFAULT_CAPACITY = 256;
+
+	private int[] spriteIds;
+	private int[] xs;
+	private int[] ys;
+	private int[] prevXs;
+	private int[] prevYs;
+	private int[] layers;
+	private int[] order;			// Command indexes sorted by layer (stable), filled in by sortByLayer()
+	private int count;
+	private boolean isInLayerOrder;	// True while every command was submitted at a layer >= the one before it
+	private boolean isOrderBuilt;
+
+	public DrawBuffer(){
+		this(DEFAULT_CAPACITY);
+	}
+
+	public DrawBuffer(int capacity){
+		if(capacity < 1)		capacity = 1;
+		spriteIds = new int[capacity];
+		xs = new int[capacity];
+		ys = new int[capacity];
+		prevXs = new int[capacity];
+		prevYs = new int[capacity];
+		layers = new int[capacity];
+		order = new int[capacity];
+		count = 0;
+		isInLayerOrder = true;
+		isOrderBuilt = false;
+	}
+
+	public void add(int spriteId, int x, int y){
+		add(spriteId, x, y, 0);
+	}
+
+	public void add(int spriteId, int x, int y, int layer){
+		add(spriteId, x, y, x, y, layer);
+	}
+
+	/* (prevX, prevY) is where the sprite was drawn last tick */
+	public void add(int spriteId, int x, int y, int prevX, int prevY, int layer){
+		if(count == spriteIds.length)		grow();
+		spriteIds[count] = spriteId;
+		xs[count] = x;
+		ys[count] = y;
+		prevXs[count] = prevX;
+		prevYs[count] = prevY;
+		layers[count] = layer;
+		if(count > 0 && layer < layers[count - 1])
+			isInLayerOrder = false;
+		isOrderBuilt = false;
+		count++;
+	}
+
+	public int size(){
+		return count;
+	}
+
+	public int getSpriteId(int index){
+		return spriteIds[index];
+	}
+
+	public int getX(int index){
+		return xs[index];
+	}
+
+	public int getY(int index){
+		return ys[index];
+	}
+
+	/* Position blended between last tick (alpha = 0) and this tick (alpha = 1) */
+	public int getX(int index, float alpha){
+		return lerp(prevXs[index], xs[index], alpha);
+	}
+
+	public int getY(int index, float alpha){
+		return lerp(prevYs[index], ys[index], alpha);
+	}
+
+	private static int lerp(int from, int to, float alpha){
+		if(from == to)			return to;
+		return from + Math.round((to - from) * alpha);
+	}
+
+	public int getLayer(int index){
+		return layers[index];
+	}
+
+	/* Index of the n-th command in draw order (lowest layer first, submission order within a layer) */
+	public int getDrawIndex(int n){
+		if(isInLayerOrder)		return n;
+		if(!isOrderBuilt)		sortByLayer();
+		return order[n];
+	}
+
+	/* Only does work if something was submitted out of layer order. Insertion sort keeps equal layers in
+	 * submission order and doesn't allocate. */
+	public void sortByLayer(){
+		if(isInLayerOrder || isOrderBuilt)		return;
+		for(int i = 0; i < count; i++){
+			int cmd = i;
+			int j = i - 1;
+			while(j >= 0 && layers[order[j]] > layers[cmd]){
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = cmd;
+		}
+		isOrderBuilt = true;
+	}
+
+	/* Same sprites at the same (latest) positions and layers, in the same order */
+	public boolean isSameAs(DrawBuffer other){
+		if(count != other.count)		return false;
+		for(int i = 0; i < count; i++){
+			if(spriteIds[i] != other.spriteIds[i] || xs[i] != other.xs[i] || ys[i] != other.ys[i] || layers[i] != other.layers[i])
+				return false;
+		}
+		return true;
+	}
+
+	/* Make this buffer hold the same commands as other (only allocates if it has to grow) */
+	public void copyFrom(DrawBuffer other){
+		while(spriteIds.length < other.count)
+			grow();
+		int n = other.count;
+		System.arraycopy(other.spriteIds, 0, spriteIds, 0, n);
+		System.arraycopy(other.xs, 0, xs, 0, n);
+		System.arraycopy(other.ys, 0, ys, 0, n);
+		System.arraycopy(other.prevXs, 0, prevXs, 0, n);
+		System.arraycopy(other.prevYs, 0, prevYs, 0, n);
+		System.arraycopy(other.layers, 0, layers, 0, n);
+		count = n;
+		isInLayerOrder = other.isInLayerOrder;
+		isOrderBuilt = false;
+	}
+
+	/* Adds other's commands after this buffer's own, in their order (e.g. merging buffers filled on other threads) */
+	public void addAll(DrawBuffer other){
+		int n = other.count;
+		if(n == 0)		return;
+		while(spriteIds.length < count + n)
+			grow();
+		System.arraycopy(other.spriteIds, 0, spriteIds, count, n);
+		System.arraycopy(other.xs, 0, xs, count, n);
+		System.arraycopy(other.ys, 0, ys, count, n);
+		System.arraycopy(other.prevXs, 0, prevXs, count, n);
+		System.arraycopy(other.prevYs, 0, prevYs, count, n);
+		System.arraycopy(other.layers, 0, layers, count, n);
+		if(!other.isInLayerOrder || (count > 0 && other.layers[0] < layers[count - 1]))
+			isInLayerOrder = false;
+		count += n;
+		isOrderBuilt = false;
+	}
+
+	public void clear(){
+		count = 0;
+		isInLayerOrder = true;
+		isOrderBuilt = false;
+	}
+
+	private void grow(){
+		int newCapacity = spriteIds.length * 2;
+		spriteIds = copyOf(spriteIds, newCapacity);
+		xs = copyOf(xs, newCapacity);
+		ys = copyOf(ys, newCapacity);
+		prevXs = copyOf(prevXs, newCapacity);
+		prevYs = copyOf(prevYs, newCapacity);
+		layers = copyOf(layers, newCapacity);
+		order = new int[newCapacity];
+	}
+
+	private static int[] copyOf(int[] src, int newLength){
+		int[] dst = new int[newLength];
+		System.arraycopy(src, 0, dst, 0, src.length);
+		return dst;
+	}
+}
@@ -0,0 +1,277 @@
+package Graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextAttribute;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/* Every printable Latin-1 character of one font (one size, one style) rasterized once into a single image, plus the
+ * metrics needed to lay text out: advance and pixel bounds per glyph, and kerning between printable ASCII pairs.
+ * Drawing a string is then one small blit per character with no layout objects, which is what text that changes
+ * every frame (counters, the mouse readout) needs, since a whole-string cache would miss on it every time.
+ * Glyphs are rasterized with the default hints (no antialiasing, whole pixel advances), so with kerning off (the
+ * default, since drawString doesn't kern either) the result is pixel for pixel what drawString draws, and the widths
+ * match FontMetrics. Measuring doesn't need a Graphics at all.
+ * The atlas itself is white; a tinted copy is made the first time each color is used. Only the MAX_PAGES most
+ * recently used colors keep their copy, so text that fades or cycles through colors doesn't keep an atlas per color. */
+
+public class GlyphAtlas{
+	public static final char FIRST_CHAR = 32;
+	public static final char LAST_CHAR = 255;
+	private static final char LAST_KERNED_CHAR = 126;
+	private static final int GLYPH_COUNT = LAST_CHAR - FIRST_CHAR + 1;
+	private static final int KERNED_COUNT = LAST_KERNED_CHAR - FIRST_CHAR + 1;
+	private static final int ATLAS_WIDTH = 512;
+	private static final int PADDING = 1;
+	private static final int MAX_PAGES = 8;
+
+	private final Font font;
+	private final int ascent, descent, leading;
+	private final boolean[] hasGlyph;
+	private final int[] advances;
+	private final int[] atlasXs, atlasYs;		// Where each glyph is in the atlas
+	private final int[] widths, heights;
+	private final int[] offsetXs, offsetYs;		// Top left of the glyph relative to the pen position on the baseline
+	private byte[] kerning;						// [left * KERNED_COUNT + right] pixel adjustment, null if the font has none
+	private boolean isKerningOn;
+	private final BufferedImage atlas;
+	private final Color[] pageColors;			// Tinted copies of the atlas, most recently used first
+	private final BufferedImage[] pages;
+	private int pageCount;
+
+	public GlyphAtlas(Font font){
+		this.font = font;
+		FontRenderContext frc = new FontRenderContext(null, false, false);
+		java.awt.font.LineMetrics lm = font.getLineMetrics("Hg", frc);
+		ascent = Math.round(lm.getAscent());
+		descent = Math.round(lm.getDescent());
+		leading = Math.round(lm.getLeading());
+		hasGlyph = new boolean[GLYPH_COUNT];
+		advances = new int[GLYPH_COUNT];
+		atlasXs = new int[GLYPH_COUNT];
+		atlasYs = new int[GLYPH_COUNT];
+		widths = new int[GLYPH_COUNT];
+		heights = new int[GLYPH_COUNT];
+		offsetXs = new int[GLYPH_COUNT];
+		offsetYs = new int[GLYPH_COUNT];
+
+		// Measure every glyph and shelf-pack them into rows
+		GlyphVector[] glyphs = new GlyphVector[GLYPH_COUNT];
+		int penX = 0, penY = 0, rowHeight = 0;
+		for(int i = 0; i < GLYPH_COUNT; i++){
+			char c = (char) (FIRST_CHAR + i);
+			if(Character.isISOControl(c) || !font.canDisplay(c))		continue;
+			GlyphVector gv = font.createGlyphVector(frc, String.valueOf(c));
+			Rectangle r = gv.getPixelBounds(frc, 0, 0);
+			hasGlyph[i] = true;
+			advances[i] = Math.round(gv.getGlyphMetrics(0).getAdvanceX());
+			offsetXs[i] = r.x;
+			offsetYs[i] = r.y;
+			widths[i] = Math.max(r.width, 0);
+			heights[i] = Math.max(r.height, 0);
+			if(widths[i] == 0 || heights[i] == 0)		continue;		// Spaces only need an advance
+			if(penX + widths[i] > ATLAS_WIDTH){
+				penX = 0;
+				penY += rowHeight + PADDING;
+				rowHeight = 0;
+			}
+			atlasXs[i] = penX;
+			atlasYs[i] = penY;
+			penX += widths[i] + PADDING;
+			rowHeight = Math.max(rowHeight, heights[i]);
+			glyphs[i] = gv;
+		}
+
+		atlas = new BufferedImage(ATLAS_WIDTH, Math.max(penY + rowHeight, 1), BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D g2d = atlas.createGraphics();
+		g2d.setColor(Color.WHITE);
+		for(int i = 0; i < GLYPH_COUNT; i++){
+			if(glyphs[i] != null)
+				g2d.drawGlyphVector(glyphs[i], atlasXs[i] - offsetXs[i], atlasYs[i] - offsetYs[i]);
+		}
+		g2d.dispose();
+
+		buildKerning(frc);
+		isKerningOn = false;
+		pageColors = new Color[MAX_PAGES];
+		pages = new BufferedImage[MAX_PAGES];
+		pageCount = 0;
+	}
+
+	/* How far the font wants each printable ASCII pair moved, compared to just adding up the advances */
+	private void buildKerning(FontRenderContext frc){
+		Map<TextAttribute, Object> attrs = new HashMap<TextAttribute, Object>();
+		attrs.put(TextAttribute.KERNING, TextAttribute.KERNING_ON);
+		Font kerned = font.deriveFont(attrs);
+		char[] pair = new char[2];
+		byte[] table = new byte[KERNED_COUNT * KERNED_COUNT];
+		boolean isAnyKerned = false;
+		for(int l = 0; l < KERNED_COUNT; l++){
+			if(!hasGlyph[l])		continue;
+			pair[0] = (char) (FIRST_CHAR + l);
+			for(int r = 0; r < KERNED_COUNT; r++){
+				if(!hasGlyph[r])	continue;
+				pair[1] = (char) (FIRST_CHAR + r);
+				GlyphVector gv = kerned.layoutGlyphVector(frc, pair, 0, 2, Font.LAYOUT_LEFT_TO_RIGHT);
+				int k = (int) Math.round(gv.getGlyphPosition(1).getX()) - advances[l];
+				if(k != 0){
+					table[l * KERNED_COUNT + r] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, k));
+					isAnyKerned = true;
+				}
+			}
+		}
+		kerning = isAnyKerned ? table : null;
+	}
+
+	/* Off = lay text out exactly like drawString. Does nothing if the font has no kerning. */
+	public void setKerning(boolean isOn){
+		isKerningOn = isOn && kerning != null;
+	}
+
+	public boolean isKerningOn(){
+		return isKerningOn;
+	}
+
+	public boolean hasKerning(){
+		return kerning != null;
+	}
+
+	public Font getFont(){
+		return font;
+	}
+
+	public int getAscent(){
+		return ascent;
+	}
+
+	public int getDescent(){
+		return descent;
+	}
+
+	public int getHeight(){
+		return ascent + descent + leading;
+	}
+
+	/* True if every character is in the atlas */
+	public boolean canDraw(String s){
+		for(int i = 0; i < s.length(); i++){
+			int gi = s.charAt(i) - FIRST_CHAR;
+			if(gi < 0 || gi >= GLYPH_COUNT || !hasGlyph[gi])
+				return false;
+		}
+		return true;
+	}
+
+	public int charWidth(char c){
+		int gi = c - FIRST_CHAR;
+		if(gi < 0 || gi >= GLYPH_COUNT)		return 0;
+		return advances[gi];
+	}
+
+	/* Width in pixels, same as FontMetrics.stringWidth when kerning is off. Characters not in the atlas count as 0. */
+	public int stringWidth(CharSequence s){
+		int width = 0;
+		int prev = -1;
+		for(int i = 0; i < s.length(); i++){
+			int gi = s.charAt(i) - FIRST_CHAR;
+			if(gi < 0 || gi >= GLYPH_COUNT || !hasGlyph[gi]){
+				prev = -1;
+				continue;
+			}
+			width += kern(prev, gi) + advances[gi];
+			prev = gi;
+		}
+		return width;
+	}
+
+	/* Draws s with its baseline starting at (x, y), like g.drawString. Characters not in the atlas are skipped. */
+	public void drawString(Graphics g, String s, Color color, int x, int y){
+		BufferedImage page = getPage(color);
+		int penX = x;
+		int prev = -1;
+		for(int i = 0; i < s.length(); i++){
+			int gi = s.charAt(i) - FIRST_CHAR;
+			if(gi < 0 || gi >= GLYPH_COUNT || !hasGlyph[gi]){
+				prev = -1;
+				continue;
+			}
+			penX += kern(prev, gi);
+			int w = widths[gi];
+			if(w > 0){
+				int dx = penX + offsetXs[gi];
+				int dy = y + offsetYs[gi];
+				int sx = atlasXs[gi];
+				int sy = atlasYs[gi];
+				int h = heights[gi];
+				g.drawImage(page, dx, dy, dx + w, dy + h, sx, sy, sx + w, sy + h, null);
+			}
+			penX += advances[gi];
+			prev = gi;
+		}
+	}
+
+	private int kern(int left, int right){
+		if(!isKerningOn || left < 0 || left >= KERNED_COUNT || right >= KERNED_COUNT)
+			return 0;
+		return kerning[left * KERNED_COUNT + right];
+	}
+
+	/* The atlas in this color. Games only use a handful of text colors, so a short list beats a map here. A color
+	 * that's found moves to the front; a new one goes in front too, and once the list is full it takes over the page
+	 * of the least recently used color at the back. */
+	private BufferedImage getPage(Color color){
+		int found = -1;
+		for(int i = 0; i < pageCount; i++){
+			if(pageColors[i].equals(color)){
+				found = i;
+				break;
+			}
+		}
+		if(found >= 0){
+			BufferedImage page = pages[found];
+			moveToFront(found, color, page);
+			return page;
+		}
+		BufferedImage page;
+		if(pageCount == MAX_PAGES){
+			page = pages[MAX_PAGES - 1];
+		}else{
+			page = createImage(atlas.getWidth(), atlas.getHeight());
+			pageCount++;
+		}
+		moveToFront(pageCount - 1, color, page);
+		Graphics2D g2d = page.createGraphics();
+		g2d.setComposite(AlphaComposite.Src);
+		g2d.drawImage(atlas, 0, 0, null);
+		g2d.setComposite(AlphaComposite.SrcIn);		// Keep the glyph shapes, swap white for the color
+		g2d.setColor(color);
+		g2d.fillRect(0, 0, page.getWidth(), page.getHeight());
+		g2d.dispose();
+		return page;
+	}
+
+	/* Shifts the pages before index back one and puts this one first */
+	private void moveToFront(int index, Color color, BufferedImage page){
+		System.arraycopy(pageColors, 0, pageColors, 1, index);
+		System.arraycopy(pages, 0, pages, 1, index);
+		pageColors[0] = color;
+		pages[0] = page;
+	}
+
+	private static BufferedImage createImage(int width, int height){
+		if(GraphicsEnvironment.isHeadless())
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+				.getDefaultConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+	}
+}
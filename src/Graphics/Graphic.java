@@ -24,7 +24,7 @@ import javax.swing.JOptionPane;
 import FileIO.EZFileWrite;
 
 @SuppressWarnings("serial")
-public class Graphic extends JFrame{
+public class Graphic extends JFrame implements Display{
 	// Fields
 	private GraphicsDevice gd;
 	private DisplayMode _dm;
@@ -0,0 +1,187 @@
+/* An offscreen stand-in for Graphic. Frames are drawn into a BufferedImage instead of a full screen window, so
+ * this works with -Djava.awt.headless=true. Frames can be saved out as PNGs, and the game can be told to quit
+ * after a set number of frames so whole sessions can run unattended. */
+
+package Graphics;
+
+import java.awt.BufferCapabilities;
+import java.awt.Graphics;
+import java.awt.ImageCapabilities;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseListener;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import javax.imageio.ImageIO;
+
+public class HeadlessGraphic implements Display{
+	// Fields
+	private int _x, _y;
+	private BufferedImage frame;
+	private OffscreenStrategy strategy;
+	private KeyListener keyListener;
+	private MouseListener mouseListener;
+	private long framesShown;
+	private long frameLimit;			// Quit after this many frames (0 = never)
+	private Set<Long> framesToDump;
+	private int dumpEvery;				// Also dump every n-th frame (0 = off)
+	private String dumpDir;
+	
+	// Constructor
+	public HeadlessGraphic(int width, int height){
+		_x = width;
+		_y = height;
+		frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		strategy = new OffscreenStrategy();
+		framesShown = 0;
+		frameLimit = 0;
+		framesToDump = new HashSet<Long>();
+		dumpEvery = 0;
+		dumpDir = "frames";
+	}
+	
+	/* Reads the settings from -Dgame.headlessFrames, -Dgame.dumpFrames (comma separated frame numbers),
+	 * -Dgame.dumpEvery and -Dgame.dumpDir */
+	public static HeadlessGraphic fromSystemProperties(int width, int height){
+		HeadlessGraphic hg = new HeadlessGraphic(width, height);
+		hg.setFrameLimit(Long.getLong("game.headlessFrames", 0));
+		hg.setDumpEvery(Integer.getInteger("game.dumpEvery", 0));
+		hg.setDumpDir(System.getProperty("game.dumpDir", "frames"));
+		String frames = System.getProperty("game.dumpFrames");
+		if(frames != null){
+			StringTokenizer st = new StringTokenizer(frames, ",");
+			while(st.hasMoreTokens())
+				hg.dumpFrame(Long.parseLong(st.nextToken().trim()));
+		}
+		return hg;
+	}
+	
+	// Methods
+	public int getHeight(){
+		return _y;
+	}
+	
+	public int getWidth(){
+		return _x;
+	}
+	
+	public Graphics getGraph(){
+		return strategy.getDrawGraphics();
+	}
+	
+	public BufferStrategy getBufferStrategy(){
+		return strategy;
+	}
+	
+	/* The last presented frame */
+	public BufferedImage getFrame(){
+		return frame;
+	}
+	
+	public long getFramesShown(){
+		return framesShown;
+	}
+	
+	public void setFrameLimit(long frames){
+		frameLimit = frames;
+	}
+	
+	/* Save frame number n (counting from 1) as a PNG once it has been shown */
+	public void dumpFrame(long n){
+		framesToDump.add(n);
+	}
+	
+	public void setDumpEvery(int n){
+		dumpEvery = n;
+	}
+	
+	public void setDumpDir(String dir){
+		dumpDir = dir;
+	}
+	
+	/* Nothing sends real input here; whoever is driving the session can feed events to these */
+	public KeyListener getKeyListener(){
+		return keyListener;
+	}
+	
+	public MouseListener getMouseListener(){
+		return mouseListener;
+	}
+	
+	public void setMouseListener(MouseListener m){
+		if(m == null)	errorClose("Null pointer in Mouse Listener...exiting"); //$NON-NLS-1$
+		mouseListener = m;
+	}
+	
+	public void setKeyListener(KeyListener k){
+		if(k == null)	errorClose("Null pointer in Key Listener...exiting"); //$NON-NLS-1$
+		keyListener = k;
+	}
+	
+	public void hideCursor(){
+		// No cursor to hide
+	}
+	
+	public void errorClose(String msg){
+		System.err.println(msg);
+		System.exit(1);
+	}
+	
+	public void normalClose(){
+		System.exit(0);
+	}
+	
+	private void frameShown(){
+		framesShown++;
+		if(framesToDump.contains(framesShown) || (dumpEvery > 0 && framesShown % dumpEvery == 0))
+			saveFrame();
+		if(frameLimit > 0 && framesShown >= frameLimit)
+			normalClose();
+	}
+	
+	private void saveFrame(){
+		File dir = new File(dumpDir);
+		dir.mkdirs();
+		try {
+			ImageIO.write(frame, "png", new File(dir, "frame" + framesShown + ".png"));
+		} catch (IOException e) {
+			System.err.println("Couldn't save frame " + framesShown + ": " + e.getMessage());
+		}
+	}
+	
+	/* There is only the one image, so "showing" it just means the frame is done */
+	private class OffscreenStrategy extends BufferStrategy{
+		private final BufferCapabilities caps = new BufferCapabilities(
+				new ImageCapabilities(false), new ImageCapabilities(false), null);
+		
+		@Override
+		public BufferCapabilities getCapabilities(){
+			return caps;
+		}
+		
+		@Override
+		public Graphics getDrawGraphics(){
+			return frame.createGraphics();
+		}
+		
+		@Override
+		public boolean contentsLost(){
+			return false;
+		}
+		
+		@Override
+		public boolean contentsRestored(){
+			return false;
+		}
+		
+		@Override
+		public void show(){
+			frameShown();
+		}
+	}
+}
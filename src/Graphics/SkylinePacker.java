@@ -0,0 +1,138 @@
+package Graphics;
+
+import java.util.Arrays;
+
+/* Places rectangles on a fixed size page with the skyline bottom-left rule. The page's filled area is kept as its top
+ * outline, a list of horizontal segments left to right; each rectangle goes wherever along the outline its bottom
+ * edge would end up nearest the top of the page (smallest y + height), leftmost on a tie. Whatever is left under a placed
+ * rectangle is wasted, which is the price for insert() being a walk over a handful of segments.
+ * Works best with rectangles fed tallest first (see SpriteAtlas). */
+
+public class SkylinePacker{
+	private final int width, height;
+	private int[] xs, ys, ws;			// Outline segments: left edge, top (the y the next thing would sit at), width
+	private int count;
+	private long usedArea;
+	private int usedWidth, usedHeight;	// Bounding box of everything placed
+	private int lastX, lastY;
+
+	public SkylinePacker(int width, int height){
+		if(width < 1 || height < 1)		throw new IllegalArgumentException("Page must be at least 1x1");
+		this.width = width;
+		this.height = height;
+		xs = new int[16];
+		ys = new int[16];
+		ws = new int[16];
+		ws[0] = width;
+		count = 1;
+	}
+
+	/* Finds room for a w x h rectangle, readable through getX/getY; false if it doesn't fit anywhere on the page */
+	public boolean insert(int w, int h){
+		if(w < 1 || h < 1)		throw new IllegalArgumentException("Size must be at least 1x1");
+		int best = -1, bestY = 0, bestBottom = Integer.MAX_VALUE;
+		for(int i = 0; i < count && xs[i] + w <= width; i++){
+			int y = restingY(i, w);
+			if(y + h <= height && y + h < bestBottom){
+				best = i;
+				bestY = y;
+				bestBottom = y + h;
+			}
+		}
+		if(best < 0)		return false;
+		lastX = xs[best];
+		lastY = bestY;
+		raise(best, lastX, bestY + h, w);
+		usedArea += (long) w * h;
+		usedWidth = Math.max(usedWidth, lastX + w);
+		usedHeight = Math.max(usedHeight, bestBottom);
+		return true;
+	}
+
+	/* How low a rectangle w wide can sit starting at segment i: the highest top of the segments it spans */
+	private int restingY(int i, int w){
+		int y = 0;
+		int left = w;
+		for(int j = i; left > 0; j++){
+			y = Math.max(y, ys[j]);
+			left -= ws[j];
+		}
+		return y;
+	}
+
+	/* A new segment at [x, x + w) with top y replaces segment i and whatever part of the ones after it it covers */
+	private void raise(int i, int x, int y, int w){
+		if(count == xs.length)		grow();
+		System.arraycopy(xs, i, xs, i + 1, count - i);
+		System.arraycopy(ys, i, ys, i + 1, count - i);
+		System.arraycopy(ws, i, ws, i + 1, count - i);
+		xs[i] = x;
+		ys[i] = y;
+		ws[i] = w;
+		count++;
+		int right = x + w;
+		int j = i + 1;
+		while(j < count && xs[j] < right){
+			int covered = right - xs[j];
+			if(covered >= ws[j]){
+				remove(j);
+				continue;
+			}
+			xs[j] += covered;
+			ws[j] -= covered;
+			break;
+		}
+		// Neighbours at the same height are one segment
+		for(j = Math.max(i - 1, 0); j < count - 1; ){
+			if(ys[j] == ys[j + 1]){
+				ws[j] += ws[j + 1];
+				remove(j + 1);
+			}else{
+				j++;
+			}
+		}
+	}
+
+	private void remove(int i){
+		System.arraycopy(xs, i + 1, xs, i, count - i - 1);
+		System.arraycopy(ys, i + 1, ys, i, count - i - 1);
+		System.arraycopy(ws, i + 1, ws, i, count - i - 1);
+		count--;
+	}
+
+	private void grow(){
+		xs = Arrays.copyOf(xs, count * 2);
+		ys = Arrays.copyOf(ys, count * 2);
+		ws = Arrays.copyOf(ws, count * 2);
+	}
+
+	/* Top left corner of what the last successful insert() placed */
+	public int getX(){
+		return lastX;
+	}
+
+	public int getY(){
+		return lastY;
+	}
+
+	public int getWidth(){
+		return width;
+	}
+
+	public int getHeight(){
+		return height;
+	}
+
+	/* Area covered by placed rectangles, and the smallest box (from 0, 0) that holds them all */
+	public long getUsedArea(){
+		return usedArea;
+	}
+
+	public int getUsedWidth(){
+		return usedWidth;
+	}
+
+	public int getUsedHeight(){
+		return usedHeight;
+	}
+}
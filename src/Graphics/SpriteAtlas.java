@@ -0,0 +1,193 @@
+package Graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import Data.Sprite;
+
+/* Copies the small sprites onto a few big pages so drawing them is a sub-rectangle blit out of one shared surface
+ * instead of a switch to a different little image every draw. place() gives every sprite up to maxSpriteSize on a
+ * side a spot (tallest first, with a SkylinePacker per page, opening a new page when nothing fits). It goes by the
+ * sizes known before loading (Sprite.getWidth: the crop, the pack's index or the file's header), so it never waits
+ * for an image. update() then draws each sprite that has finished loading onto its spot and points the Sprite at its
+ * page (Sprite.setAtlasRegion); the Renderer draws from there. Until then a sprite is drawn from its own image.
+ * Sprites bigger than that (the background) stay on their own, they gain nothing from sharing a surface.
+ * Pages are cut down to the area actually used. No padding between sprites: they're only ever drawn 1:1, so
+ * nothing samples outside its own rectangle. */
+
+public class SpriteAtlas{
+	public static final int DEFAULT_PAGE_SIZE = 1024;
+	public static final int DEFAULT_MAX_SPRITE_SIZE = 256;
+
+	private final int pageSize;
+	private final int maxSpriteSize;
+	private final List<BufferedImage> pages;
+	private long usedPixels;
+	private int packedCount, unpackedCount;
+	private Sprite[] waiting;				// Placed but not loaded yet, with the page and spot each one goes to
+	private int[] waitingPages, waitingXs, waitingYs;
+	private int waitingCount;
+
+	public SpriteAtlas(int pageSize, int maxSpriteSize){
+		if(pageSize < 1)							throw new IllegalArgumentException("Page size must be at least 1");
+		if(maxSpriteSize < 0 || maxSpriteSize > pageSize)	throw new IllegalArgumentException("Sprites up to " + maxSpriteSize + " won't fit a " + pageSize + " page");
+		this.pageSize = pageSize;
+		this.maxSpriteSize = maxSpriteSize;
+		pages = new ArrayList<BufferedImage>();
+	}
+
+	/* -Dgame.atlas=false turns it off (null), -Dgame.atlasPage=pixels a side, -Dgame.atlasMaxSprite=pixels a side */
+	public static SpriteAtlas fromSystemProperties(){
+		if("false".equalsIgnoreCase(System.getProperty("game.atlas")))		return null;
+		int page = Integer.getInteger("game.atlasPage", DEFAULT_PAGE_SIZE);
+		return new SpriteAtlas(page, Math.min(Integer.getInteger("game.atlasMaxSprite", DEFAULT_MAX_SPRITE_SIZE), page));
+	}
+
+	/* Places every sprite in sprites that's small enough and makes the pages, without waiting for any image to load.
+	 * Nothing is on the pages yet: update() copies sprites over as they finish loading. Call once. */
+	public void place(Sprites sprites){
+		List<Sprite> small = new ArrayList<Sprite>();
+		for(int i = 0; i < sprites.size(); i++){
+			Sprite s = sprites.getSprite(i);
+			int w = s.getWidth(), h = s.getHeight();
+			if(w > 0 && h > 0 && w <= maxSpriteSize && h <= maxSpriteSize)
+				small.add(s);
+			else
+				unpackedCount++;			// Too big, or its size can't be told without loading it
+		}
+		Sprite[] order = small.toArray(new Sprite[small.size()]);
+		Arrays.sort(order, new Comparator<Sprite>(){
+			public int compare(Sprite a, Sprite b){
+				int byHeight = b.getHeight() - a.getHeight();
+				return byHeight != 0 ? byHeight : b.getWidth() - a.getWidth();
+			}
+		});
+
+		// Place everything first so each page can be made only as big as it needs to be
+		List<SkylinePacker> packers = new ArrayList<SkylinePacker>();
+		waiting = order;
+		waitingPages = new int[order.length];
+		waitingXs = new int[order.length];
+		waitingYs = new int[order.length];
+		waitingCount = order.length;
+		for(int i = 0; i < order.length; i++){
+			int w = order[i].getWidth(), h = order[i].getHeight();
+			int p = 0;
+			while(p < packers.size() && !packers.get(p).insert(w, h))
+				p++;
+			if(p == packers.size()){
+				SkylinePacker packer = new SkylinePacker(pageSize, pageSize);
+				packer.insert(w, h);
+				packers.add(packer);
+			}
+			waitingPages[i] = pages.size() + p;
+			waitingXs[i] = packers.get(p).getX();
+			waitingYs[i] = packers.get(p).getY();
+		}
+		for(SkylinePacker packer : packers){
+			pages.add(createPage(packer.getUsedWidth(), packer.getUsedHeight()));
+			usedPixels += packer.getUsedArea();
+		}
+	}
+
+	/* Copies the placed sprites that have finished loading onto their pages. Call between frames, on the thread that
+	 * draws, so no frame sees a sprite half moved. Returns how many are still loading. */
+	public int update(){
+		if(waitingCount > 0)
+			copy(false);
+		return waitingCount;
+	}
+
+	/* place() and then copies everything over, waiting for whatever's still loading */
+	public void pack(Sprites sprites){
+		place(sprites);
+		copy(true);
+	}
+
+	private void copy(boolean isWaitingForLoads){
+		int left = 0;
+		for(int i = 0; i < waitingCount; i++){
+			Sprite s = waiting[i];
+			if(!isWaitingForLoads && !s.isLoaded()){
+				waiting[left] = s;
+				waitingPages[left] = waitingPages[i];
+				waitingXs[left] = waitingXs[i];
+				waitingYs[left] = waitingYs[i];
+				left++;
+				continue;
+			}
+			BufferedImage image = s.getSprite();
+			if(image.getWidth() != s.getWidth() || image.getHeight() != s.getHeight()){
+				unpackedCount++;			// Not the size it was placed at (the file changed?), it keeps its own image
+				continue;
+			}
+			BufferedImage page = pages.get(waitingPages[i]);
+			Graphics2D g2d = page.createGraphics();
+			g2d.setComposite(AlphaComposite.Src);
+			g2d.drawImage(image, waitingXs[i], waitingYs[i], null);
+			g2d.dispose();
+			s.setAtlasRegion(page, waitingXs[i], waitingYs[i]);
+			packedCount++;
+		}
+		for(int i = left; i < waitingCount; i++)
+			waiting[i] = null;
+		waitingCount = left;
+	}
+
+	private static BufferedImage createPage(int width, int height){
+		if(GraphicsEnvironment.isHeadless())
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+				.getDefaultConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+	}
+
+	public int getPageCount(){
+		return pages.size();
+	}
+
+	public BufferedImage getPage(int i){
+		return pages.get(i);
+	}
+
+	/* Sprites drawn from a page, sprites left as images of their own, and sprites with a spot that are still loading */
+	public int getPackedCount(){
+		return packedCount;
+	}
+
+	public int getUnpackedCount(){
+		return unpackedCount;
+	}
+
+	public int getWaitingCount(){
+		return waitingCount;
+	}
+
+	/* Distinct images the renderer draws sprites from: every page plus every sprite left out or still loading */
+	public int getSurfaceCount(){
+		return pages.size() + unpackedCount + waitingCount;
+	}
+
+	/* Share of the page pixels that sprites cover, 0 to 1 */
+	public double getOccupancy(){
+		long total = 0;
+		for(BufferedImage page : pages)
+			total += (long) page.getWidth() * page.getHeight();
+		return total == 0 ? 0.0 : (double) usedPixels / total;
+	}
+
+	public String toString(){
+		StringBuilder sb = new StringBuilder();
+		for(BufferedImage page : pages)
+			sb.append(sb.length() == 0 ? "" : ", ").append(page.getWidth()).append('x').append(page.getHeight());
+		return String.format("sprite atlas: %d sprites on %d page%s (%s), %.1f%% occupied, %d left out, %d still loading, %d surface%s instead of %d",
+				packedCount, pages.size(), pages.size() == 1 ? "" : "s", sb, getOccupancy() * 100, unpackedCount, waitingCount,
+				getSurfaceCount(), getSurfaceCount() == 1 ? "" : "s", packedCount + unpackedCount + waitingCount);
+	}
+}
@@ -0,0 +1,349 @@
+package Graphics;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.RasterFormatException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import Data.Sprite;
+
+/* Keeps only some of the art in memory. Every sprite in Art.txt gets a lightweight Sprite up front (its ID and tag work
+ * straight away), but the image is only loaded the first time something draws it, or earlier if it was prefetched.
+ * Once the images in memory add up to more than the byte budget, the least recently drawn ones are dropped and get
+ * loaded again if they're needed later.
+ * Dropping only happens in endFrame(), after the frame is on screen, and never to a sprite that frame drew, so
+ * nothing in use disappears mid-frame. A frame that draws more than the budget simply goes over it until things
+ * stop being drawn.
+ * A sprite can be one piece of a bigger sprite sheet (like Graphic.getCroppedImage): its piece is copied out into an
+ * image of its own, so only the piece counts against the budget, and pieces of one sheet that start loading in the
+ * same frame share one decode of it.
+ * Everything but the loading itself happens on the game thread: a draw that hits an image in memory is a couple of
+ * field writes, no locks and no allocation. */
+
+public class SpriteCache{
+	public static final long UNLIMITED = Long.MAX_VALUE;
+
+	private final AssetLoader loader;
+	private final AssetPack pack;			// Where images come from if they're in it, can be null
+	private long budget;
+	private long bytes;
+	private Entry oldest, newest;			// In memory, least recently drawn first
+	private final ArrayList<Entry> loading;	// Prefetched and not picked up yet
+	private final HashMap<String, AssetLoader.Load> started;	// Loads started this frame by file, so sheet pieces share them
+	private long frame;
+	private long hits, misses, prefetches, evictions;
+	private long loads, loadNanos, maxLoadNanos;		// Worker time per image (decoding or copying out of the pack)
+	private long stallNanos;							// Time draws spent waiting for images that weren't ready
+
+	public SpriteCache(AssetLoader loader, AssetPack pack, long budgetBytes){
+		if(loader == null)		throw new NullPointerException();
+		this.loader = loader;
+		this.pack = pack;
+		loading = new ArrayList<Entry>();
+		started = new HashMap<String, AssetLoader.Load>();
+		setBudget(budgetBytes);
+	}
+
+	/* -Dgame.spriteBudget=bytes, unlimited by default */
+	public static long budgetFromSystemProperties(){
+		return Long.getLong("game.spriteBudget", UNLIMITED);
+	}
+
+	public void setBudget(long budgetBytes){
+		if(budgetBytes < 0)		throw new IllegalArgumentException("Budget can't be negative");
+		budget = budgetBytes;
+	}
+
+	public long getBudget(){
+		return budget;
+	}
+
+	public boolean isUnlimited(){
+		return budget == UNLIMITED;
+	}
+
+	/* A sprite for file that loads through this cache. Nothing is read until it's drawn or prefetched. */
+	public Sprite add(String file, String tag){
+		return add(file, tag, null);
+	}
+	
+	/* Same, for the piece of file inside crop (the whole file if crop is null) */
+	public Sprite add(String file, String tag, Rectangle crop){
+		return new Sprite(0, 0, new Entry(file, crop == null ? null : new Rectangle(crop)), file, tag);
+	}
+
+	/* Called once the frame is on screen: picks up finished prefetches, then drops images until the budget fits */
+	public void endFrame(){
+		for(int i = loading.size() - 1; i >= 0; i--){
+			Entry e = loading.get(i);
+			if(e.pending.isDone()){
+				loading.remove(i);
+				finish(e);
+			}
+		}
+		for(Iterator<AssetLoader.Load> it = started.values().iterator(); it.hasNext(); ){
+			if(it.next().isDone())
+				it.remove();
+		}
+		Entry e = oldest;
+		while(bytes > budget && e != null){
+			Entry next = e.newer;
+			if(e.lastFrame != frame)		// Drawn this frame, keep it
+				evict(e);
+			e = next;
+		}
+		frame++;
+	}
+
+	/* Drops every image not being loaded right now (they come back as they're drawn) */
+	public void clear(){
+		while(oldest != null)
+			evict(oldest);
+	}
+
+	private BufferedImage get(Entry e){
+		if(e.image == null){
+			if(e.pending == null){
+				start(e);
+				misses++;
+			}else if(e.pending.isDone()){
+				hits++;							// Prefetched in time
+			}else{
+				misses++;
+			}
+			long waitStart = System.nanoTime();
+			loading.remove(e);
+			finish(e);
+			stallNanos += System.nanoTime() - waitStart;
+		}else{
+			hits++;
+		}
+		if(e.lastFrame != frame){		// Only the first draw in a frame moves it, eviction doesn't need finer order than that
+			e.lastFrame = frame;
+			if(e != newest){
+				unlink(e);
+				link(e);
+			}
+		}
+		return e.image;
+	}
+
+	private void prefetch(Entry e){
+		if(e.image != null || e.pending != null)		return;
+		start(e);
+		e.lastFrame = frame;			// Not dropped before the frame that asked for it is over
+		loading.add(e);
+		prefetches++;
+	}
+
+	private void start(Entry e){
+		AssetLoader.Load load = started.get(e.file);
+		if(load == null){
+			int i = pack == null ? -1 : pack.indexOf(e.file);
+			load = i >= 0 ? loader.load(pack, i) : loader.load(e.file);
+			started.put(e.file, load);
+		}
+		e.pending = load;
+	}
+
+	/* Waits for e's load if it isn't done, and puts the image in memory as the newest */
+	private void finish(Entry e){
+		AssetLoader.Load pending = e.pending;
+		e.pending = null;
+		e.image = AssetLoader.await(pending, e.file);
+		if(e.crop != null)
+			e.image = copyOut(e.image, e.crop, e.file);
+		e.bytes = sizeOf(e.image);
+		bytes += e.bytes;
+		long nanos = pending.getNanos();
+		loads++;
+		loadNanos += nanos;
+		maxLoadNanos = Math.max(maxLoadNanos, nanos);
+		link(e);
+	}
+
+	/* The piece of sheet inside crop, as an image that doesn't hold on to the rest of the sheet */
+	private static BufferedImage copyOut(BufferedImage sheet, Rectangle crop, String file){
+		BufferedImage piece;
+		try {
+			piece = Graphic.getCroppedImage(sheet, crop.x, crop.y, crop.width, crop.height);
+		} catch (RasterFormatException e) {
+			throw new IllegalArgumentException(crop.x + "," + crop.y + " " + crop.width + "x" + crop.height
+					+ " isn't inside " + file + " (" + sheet.getWidth() + "x" + sheet.getHeight() + ")");
+		}
+		BufferedImage copy = new BufferedImage(piece.getColorModel(),
+				piece.getRaster().createCompatibleWritableRaster(crop.width, crop.height), piece.isAlphaPremultiplied(), null);
+		piece.copyData(copy.getRaster());
+		return copy;
+	}
+	
+	/* Forgets e for good: its image is dropped and a load in progress is ignored (it isn't drawn through here any more) */
+	private void release(Entry e){
+		loading.remove(e);
+		e.pending = null;
+		if(e.image != null){
+			unlink(e);
+			e.image = null;
+			bytes -= e.bytes;
+			e.bytes = 0;
+		}
+	}
+	
+	private void evict(Entry e){
+		unlink(e);
+		e.image = null;
+		bytes -= e.bytes;
+		e.bytes = 0;
+		evictions++;
+	}
+
+	private void link(Entry e){
+		e.older = newest;
+		e.newer = null;
+		if(newest != null)		newest.newer = e;
+		else					oldest = e;
+		newest = e;
+	}
+
+	private void unlink(Entry e){
+		if(e.older != null)		e.older.newer = e.newer;
+		else					oldest = e.newer;
+		if(e.newer != null)		e.newer.older = e.older;
+		else					newest = e.older;
+		e.older = null;
+		e.newer = null;
+	}
+
+	private static long sizeOf(BufferedImage image){
+		DataBuffer db = image.getRaster().getDataBuffer();
+		return (long) db.getSize() * db.getNumBanks() * DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+	}
+
+	/* Bytes of image data in memory right now */
+	public long getBytes(){
+		return bytes;
+	}
+
+	/* Draws that found the image in memory (or prefetched and ready) */
+	public long getHits(){
+		return hits;
+	}
+
+	/* Draws that had to wait for a load */
+	public long getMisses(){
+		return misses;
+	}
+
+	public long getPrefetches(){
+		return prefetches;
+	}
+
+	public long getEvictions(){
+		return evictions;
+	}
+
+	public long getLoadCount(){
+		return loads;
+	}
+
+	/* Average and worst worker time to load one image, in milliseconds */
+	public double getAverageLoadMillis(){
+		return loads == 0 ? 0.0 : loadNanos / 1e6 / loads;
+	}
+
+	public double getMaxLoadMillis(){
+		return maxLoadNanos / 1e6;
+	}
+
+	/* Total time draws were held up waiting for images */
+	public double getStallMillis(){
+		return stallNanos / 1e6;
+	}
+
+	public void resetStats(){
+		hits = 0;
+		misses = 0;
+		prefetches = 0;
+		evictions = 0;
+		loads = 0;
+		loadNanos = 0;
+		maxLoadNanos = 0;
+		stallNanos = 0;
+	}
+
+	public String toString(){
+		String budgetText = isUnlimited() ? "" : " of " + budget / 1024 + " KB";
+		return String.format("sprite cache: %d KB%s, %d hits, %d misses, %d prefetches, %d evictions, %d loads (%.2f ms avg, %.2f ms max), %.1f ms stalled",
+				bytes / 1024, budgetText, hits, misses, prefetches, evictions, loads, getAverageLoadMillis(), getMaxLoadMillis(), getStallMillis());
+	}
+
+	/* One sprite's image: in memory, loading, or neither. Sprite goes through this for sprites made by add(). */
+	public final class Entry{
+		private final String file;
+		private final Rectangle crop;		// Piece of the file, null for all of it
+		private BufferedImage image;
+		private AssetLoader.Load pending;
+		private long bytes;
+		private long lastFrame = -1;
+		private Entry older, newer;
+		private int width, height;			// 0 until measured, -1 if they couldn't be
+
+		private Entry(String file, Rectangle crop){
+			this.file = file;
+			this.crop = crop;
+		}
+
+		/* The image, loading it first (and waiting) if it isn't in memory */
+		public BufferedImage getImage(){
+			return get(this);
+		}
+
+		/* Start loading now so the first draw doesn't wait */
+		public void prefetch(){
+			SpriteCache.this.prefetch(this);
+		}
+
+		/* Let go of the image for good, the sprite has a copy somewhere else now (see Sprite.setAtlasRegion) */
+		public void release(){
+			SpriteCache.this.release(this);
+		}
+		
+		/* Size of the image without loading it: the crop, the pack's index or the file's header; -1 if none of them say */
+		public int getWidth(){
+			measure();
+			return width;
+		}
+
+		public int getHeight(){
+			measure();
+			return height;
+		}
+
+		private void measure(){
+			if(width != 0)		return;
+			int[] size = null;
+			if(image != null)
+				size = new int[]{ image.getWidth(), image.getHeight() };
+			else if(crop != null)
+				size = new int[]{ crop.width, crop.height };
+			else if(pack != null && pack.indexOf(file) >= 0)
+				size = new int[]{ pack.getWidth(pack.indexOf(file)), pack.getHeight(pack.indexOf(file)) };
+			else
+				size = AssetLoader.readSize(file);
+			width = size != null && size[0] > 0 ? size[0] : -1;
+			height = size != null && size[1] > 0 ? size[1] : -1;
+		}
+		
+		public boolean isResident(){
+			return image != null;
+		}
+
+		/* In memory, or loaded and waiting to be picked up */
+		public boolean isLoaded(){
+			return image != null || (pending != null && pending.isDone());
+		}
+	}
+}
@@ -1,8 +1,12 @@
 package Graphics;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
 import Data.Sprite;
 
 /* This class will handle the details concerning image files. It won't render them as that is the job of the
@@ -10,51 +14,78 @@ import Data.Sprite;
  * engine! */
 
 public class Sprites{
+	public static final int NO_SPRITE = -1;
+	
 	private List<Sprite> sprites;
+	private Map<String, Integer> tagIndex;		// Normalized tag -> sprite ID (index into the list)
+	private boolean isIndexDirty;
+	
 	public Sprites(){
 		sprites = new ArrayList<Sprite>();
+		tagIndex = new HashMap<String, Integer>();
+		isIndexDirty = false;
+	}
+	
+	/* Tags are ALWAYS case insensitive! Every tag goes through here exactly once so lookups can be a hash hit. */
+	public static String normalizeTag(String tag){
+		if(tag == null)			return null;
+		return tag.toLowerCase(Locale.ROOT).intern();
 	}
 	
 	public void addSprite(int x, int y, String fileName, String tag){
 		Sprite temp = new Sprite(x, y, fileName, tag);
 		if(temp != null)
-			sprites.add(temp);
+			addSprite(temp);
 	}
 	
 	public void addSprite(Sprite s){
 		sprites.add(s);
+		isIndexDirty = true;
 	}
 	
 	public Sprite getSprite(int index){
-		if(sprites.size() <= index)		return null;
+		if(index < 0 || sprites.size() <= index)		return null;
 		return sprites.get(index);
 	}
 	
+	/* IDs are the position of the sprite in this buffer, so they stay valid until a sprite is deleted */
+	public Sprite getSpriteById(int id){
+		return getSprite(id);
+	}
+	
+	/* Resolve a tag to its sprite ID once, then draw by ID. Returns NO_SPRITE if the tag isn't loaded. */
+	public int getSpriteId(String tag){
+		if(tag == null)			return NO_SPRITE;
+		if(isIndexDirty)		buildIndex();
+		Integer id = tagIndex.get(tag.toLowerCase(Locale.ROOT));	// No interning needed just to probe the map
+		if(id == null)			return NO_SPRITE;
+		return id;
+	}
+	
 	public Sprite getSpriteByTag(String tag){
-		// Tags are ALWAYS case insensitive!
-		for(Sprite s : sprites){
-			if(s == null)			return null;
-			String sTag = s.getTag().toLowerCase();
-			tag = tag.toLowerCase();
-			if(sTag.equals(tag))
-				return s;
-		}
-		return null;
+		return getSpriteById(getSpriteId(tag));
 	}
 	
 	public boolean isTagInBuffer(String tag){
-		// Tags are ALWAYS case insensitive!
-		for(Sprite s : sprites){
-			String sTag = s.getTag().toLowerCase();
-			tag = tag.toLowerCase();
-			if(sTag.equals(tag))
-				return true;
+		return getSpriteId(tag) != NO_SPRITE;
+	}
+	
+	/* Rebuild the tag -> ID hash index. The first sprite with a given tag wins (same as the old linear search). */
+	public void buildIndex(){
+		tagIndex.clear();
+		for(int i = 0; i < sprites.size(); i++){
+			Sprite s = sprites.get(i);
+			if(s == null)			break;
+			String key = normalizeTag(s.getTag());
+			if(key != null && tagIndex.containsKey(key) == false)
+				tagIndex.put(key, i);
 		}
-		return false;
+		isIndexDirty = false;
 	}
 	
 	public void delSprite(int index){
 		sprites.remove(index);
+		isIndexDirty = true;
 	}
 	
 	public void changeSprite(int index, String fileName){
@@ -68,10 +99,13 @@ public class Sprites{
 	
 	public void changeSprite(int index, Sprite newSprite){
 		sprites.set(index, newSprite);
+		isIndexDirty = true;
 	}
 	
 	public void clearSprites(){
 		sprites.clear();
+		tagIndex.clear();
+		isIndexDirty = false;
 	}
 	
 	public int size(){
@@ -0,0 +1,293 @@
+package Graphics;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* Strings that are drawn every frame (and almost never change) get drawn once into an image, and after that each
+ * frame is a single blit. Images are keyed by (text, font, style, color) and the least recently drawn ones are thrown
+ * out once the total goes over the byte budget. Looking up a string that is already cached doesn't allocate.
+ * Text is rendered with the default hints, so a cached string looks exactly like drawString would have drawn it.
+ * A blit only beats drawString when images live on the graphics card. In software (headless, or no acceleration)
+ * blending the whole text rectangle costs more than drawing just the glyphs, so in AUTO mode those targets get a
+ * plain drawString with the cached font instead. Either way the derived font is only made once per style.
+ * Strings that change every frame (drawDynamicString) would only churn the cache, so they skip it: on targets where
+ * blits are faster they're drawn glyph by glyph from a GlyphAtlas, if one was set up for their font. */
+
+public class TextCache{
+	public static final long DEFAULT_BUDGET = 4L * 1024 * 1024;
+	public static final int AUTO = 0;			// Images when the target is accelerated, glyphs otherwise
+	public static final int IMAGES = 1;			// Always blit cached images
+	public static final int GLYPHS = 2;			// Always drawString (with the cached font)
+
+	private final LinkedHashMap<Key, Entry> entries;		// Access order, so the eldest entry is the least recently drawn
+	private final Map<Font, Font[]> styledFonts;			// Base font -> derived font for each style (PLAIN, BOLD, ITALIC, BOLD|ITALIC)
+	private final Key probe;								// Reused for lookups
+	private final FontRenderContext frc;
+	private int mode;
+	private GlyphAtlas atlas;								// For dynamic strings in atlasFont/atlasStyle, can be null
+	private Font atlasFont;
+	private int atlasStyle;
+	private GraphicsConfiguration lastConfig;				// Target AUTO mode looked at last, and what it decided
+	private boolean isLastConfigAccelerated;
+	private long budget;
+	private long bytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public TextCache(){
+		this(DEFAULT_BUDGET);
+	}
+
+	public TextCache(long budgetBytes){
+		entries = new LinkedHashMap<Key, Entry>(64, 0.75f, true);
+		styledFonts = new HashMap<Font, Font[]>();
+		probe = new Key();
+		frc = new FontRenderContext(null, false, false);		// Same as a Graphics2D with default hints
+		mode = AUTO;
+		setBudget(budgetBytes);
+	}
+
+	/* -Dgame.textCacheBytes sets the budget (0 turns image caching off), -Dgame.textCache=auto|images|glyphs the mode */
+	public static TextCache fromSystemProperties(){
+		TextCache tc = new TextCache(Long.getLong("game.textCacheBytes", DEFAULT_BUDGET));
+		String mode = System.getProperty("game.textCache", "auto");
+		if(mode.equalsIgnoreCase("images"))			tc.setMode(IMAGES);
+		else if(mode.equalsIgnoreCase("glyphs"))	tc.setMode(GLYPHS);
+		return tc;
+	}
+
+	public void setMode(int mode){
+		if(mode < AUTO || mode > GLYPHS)		throw new IllegalArgumentException("Unknown text cache mode " + mode);
+		this.mode = mode;
+	}
+
+	public int getMode(){
+		return mode;
+	}
+
+	public void setBudget(long budgetBytes){
+		if(budgetBytes < 0)		throw new IllegalArgumentException("Budget can't be negative");
+		budget = budgetBytes;
+		evictToBudget();
+	}
+
+	/* Dynamic strings in base + style get drawn from this atlas (null = no atlas) */
+	public void setGlyphAtlas(Font base, int style, GlyphAtlas atlas){
+		this.atlas = atlas;
+		atlasFont = base;
+		atlasStyle = style;
+	}
+
+	public GlyphAtlas getGlyphAtlas(){
+		return atlas;
+	}
+
+	/* The font in the given style, derived once and then reused */
+	public Font getFont(Font base, int style){
+		if(base.getStyle() == style)		return base;
+		Font[] byStyle = styledFonts.get(base);
+		if(byStyle == null){
+			byStyle = new Font[4];
+			styledFonts.put(base, byStyle);
+		}
+		Font f = byStyle[style & 3];
+		if(f == null){
+			f = base.deriveFont(style);
+			byStyle[style & 3] = f;
+		}
+		return f;
+	}
+
+	/* Draws text with its baseline at (x, y), same as g.drawString with the styled font */
+	public void drawString(Graphics g, String text, Font base, int style, Color color, int x, int y){
+		if(text == null || text.isEmpty())		return;
+		Entry e = isBlitFaster(g) ? lookup(text, base, style, color) : null;
+		if(e == null){
+			// Drawing glyphs is faster here, or it's too big for the budget (or the cache is off), just draw it
+			g.setFont(getFont(base, style));
+			g.setColor(color);
+			g.drawString(text, x, y);
+			return;
+		}
+		if(e.image != null)
+			g.drawImage(e.image, x + e.offsetX, y + e.offsetY, null);
+	}
+
+	/* For text that changes every frame (counters, coordinates): never cached as a whole, see above */
+	public void drawDynamicString(Graphics g, String text, Font base, int style, Color color, int x, int y){
+		if(text == null || text.isEmpty())		return;
+		if(atlas != null && style == atlasStyle && base.equals(atlasFont) && isBlitFaster(g) && atlas.canDraw(text)){
+			atlas.drawString(g, text, color, x, y);
+			return;
+		}
+		g.setFont(getFont(base, style));
+		g.setColor(color);
+		g.drawString(text, x, y);
+	}
+
+	/* Pixels drawString (or drawDynamicString) touches with the baseline at (x, y). This allocates, so measure when the text changes, not every frame. */
+	public void getPixelBounds(String text, Font base, int style, int x, int y, Rectangle out){
+		Font font = getFont(base, style);
+		out.setBounds(font.createGlyphVector(frc, text).getPixelBounds(frc, x, y));
+		if(atlas != null && atlas.isKerningOn() && style == atlasStyle && base.equals(atlasFont))
+			out.add(new Rectangle(x, y - atlas.getAscent(), atlas.stringWidth(text) + 1, atlas.getAscent() + atlas.getDescent()));		// Kerning moves glyphs around a bit
+	}
+
+	private boolean isBlitFaster(Graphics g){
+		if(mode != AUTO)		return mode == IMAGES;
+		if(!(g instanceof Graphics2D))			return false;
+		GraphicsConfiguration gc = ((Graphics2D) g).getDeviceConfiguration();
+		if(gc != lastConfig){
+			lastConfig = gc;
+			isLastConfigAccelerated = gc != null && gc.getImageCapabilities().isAccelerated();
+		}
+		return isLastConfigAccelerated;
+	}
+
+	private Entry lookup(String text, Font base, int style, Color color){
+		probe.set(text, base, style, color.getRGB());
+		Entry e = entries.get(probe);
+		if(e != null){
+			hits++;
+			return e;
+		}
+		misses++;
+		if(budget == 0)			return null;
+		e = rasterize(text, getFont(base, style), color);
+		if(e.bytes > budget)	return null;
+		Key key = new Key();
+		key.set(text, base, style, color.getRGB());
+		entries.put(key, e);
+		bytes += e.bytes;
+		evictToBudget();
+		return e;
+	}
+
+	private Entry rasterize(String text, Font font, Color color){
+		Entry e = new Entry();
+		GlyphVector gv = font.createGlyphVector(frc, text);
+		Rectangle r = gv.getPixelBounds(frc, 0, 0);			// Exact pixels the text touches, relative to the baseline start
+		e.offsetX = r.x;
+		e.offsetY = r.y;
+		if(r.width <= 0 || r.height <= 0)		return e;	// Only spaces, nothing to draw
+		e.image = createImage(r.width, r.height);
+		Graphics2D g2d = e.image.createGraphics();
+		g2d.setFont(font);
+		g2d.setColor(color);
+		g2d.drawString(text, -r.x, -r.y);
+		g2d.dispose();
+		e.bytes = (long) r.width * r.height * 4;
+		return e;
+	}
+
+	private void evictToBudget(){
+		if(bytes <= budget)		return;
+		Iterator<Entry> it = entries.values().iterator();
+		while(bytes > budget && it.hasNext()){
+			Entry e = it.next();
+			bytes -= e.bytes;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	public void clear(){
+		entries.clear();
+		bytes = 0;
+	}
+
+	public long getHits(){
+		return hits;
+	}
+
+	public long getMisses(){
+		return misses;
+	}
+
+	public long getEvictions(){
+		return evictions;
+	}
+
+	/* Fraction of image lookups that were already cached, 0 if nothing has been looked up yet */
+	public double getHitRate(){
+		long total = hits + misses;
+		return total == 0 ? 0.0 : (double) hits / total;
+	}
+
+	public long getBytes(){
+		return bytes;
+	}
+
+	public long getBudget(){
+		return budget;
+	}
+
+	public int size(){
+		return entries.size();
+	}
+
+	public void resetStats(){
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	public String toString(){
+		return String.format("text cache: %d strings, %d/%d KB, %.1f%% hits, %d evictions",
+				entries.size(), bytes / 1024, budget / 1024, getHitRate() * 100.0, evictions);
+	}
+
+	private static BufferedImage createImage(int width, int height){
+		if(GraphicsEnvironment.isHeadless())
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+				.getDefaultConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+	}
+
+	private static final class Key{
+		String text;
+		Font font;
+		int style;
+		int rgb;
+		int hash;
+
+		void set(String text, Font font, int style, int rgb){
+			this.text = text;
+			this.font = font;
+			this.style = style;
+			this.rgb = rgb;
+			this.hash = ((text.hashCode() * 31 + font.hashCode()) * 31 + style) * 31 + rgb;
+		}
+
+		public int hashCode(){
+			return hash;
+		}
+
+		public boolean equals(Object o){
+			if(this == o)					return true;
+			if(!(o instanceof Key))			return false;
+			Key k = (Key) o;
+			return hash == k.hash && style == k.style && rgb == k.rgb && text.equals(k.text) && font.equals(k.font);
+		}
+	}
+
+	private static final class Entry{
+		BufferedImage image;		// null if the text has no visible pixels
+		int offsetX, offsetY;		// Where the image goes relative to the baseline start
+		long bytes;
+	}
+}
@@ -0,0 +1,87 @@
+package Input;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Fixed size queue of key events from exactly one producer thread (the AWT event thread) to exactly one consumer
+ * (the game thread), with no locks: each side only writes its own counter, and the counters are published with
+ * ordered writes so the consumer never sees an event before its fields. Neither side ever waits; when the queue is
+ * full the event is dropped and counted, and the consumer is expected to resync from somewhere else (see Keyb).
+ * An event is a key code, pressed or released, and the System.nanoTime() it happened at. */
+
+public class KeyRing{
+	private final int mask;
+	private final int[] codes;			// Key code << 1 | 1 if pressed
+	private final long[] times;
+	private final AtomicLong head = new AtomicLong();		// Next slot to read, only the consumer writes it
+	private final AtomicLong tail = new AtomicLong();		// Next slot to write, only the producer writes it
+	private long cachedHead;			// Producer's last look at head, so it doesn't read the shared counter every event
+	private final AtomicLong dropped = new AtomicLong();
+	private int lastCode;				// What the last poll() returned
+	private boolean wasLastPressed;
+	private long lastNanos;
+
+	/* capacity is rounded up to a power of two */
+	public KeyRing(int capacity){
+		if(capacity < 1)		throw new IllegalArgumentException("Capacity must be at least 1");
+		int size = Integer.highestOneBit(capacity);
+		if(size < capacity)		size <<= 1;
+		mask = size - 1;
+		codes = new int[size];
+		times = new long[size];
+	}
+
+	/* Producer only. False (and counted) if the queue was full. */
+	public boolean offer(int keyCode, boolean isPressed, long nanos){
+		long t = tail.get();
+		if(t - cachedHead > mask){
+			cachedHead = head.get();
+			if(t - cachedHead > mask){
+				dropped.incrementAndGet();
+				return false;
+			}
+		}
+		int slot = (int) t & mask;
+		codes[slot] = keyCode << 1 | (isPressed ? 1 : 0);
+		times[slot] = nanos;
+		tail.lazySet(t + 1);			// Publishes the slot
+		return true;
+	}
+
+	/* Consumer only. Takes the oldest event, readable through getCode/isPressed/getNanos; false if there was none. */
+	public boolean poll(){
+		long h = head.get();
+		if(h == tail.get())		return false;
+		int slot = (int) h & mask;
+		lastCode = codes[slot] >>> 1;
+		wasLastPressed = (codes[slot] & 1) != 0;
+		lastNanos = times[slot];
+		head.lazySet(h + 1);			// Hands the slot back to the producer
+		return true;
+	}
+
+	public int getCode(){
+		return lastCode;
+	}
+
+	public boolean isPressed(){
+		return wasLastPressed;
+	}
+
+	public long getNanos(){
+		return lastNanos;
+	}
+
+	public int capacity(){
+		return mask + 1;
+	}
+
+	/* Events waiting (approximate while the producer is running) */
+	public int size(){
+		return (int) (tail.get() - head.get());
+	}
+
+	/* Events lost to a full queue so far */
+	public long getDroppedCount(){
+		return dropped.get();
+	}
+}
@@ -3,17 +3,37 @@ package Input;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
+/* Key events come in on the AWT event thread and go straight into a KeyRing, timestamped. Once per tick the game
+ * thread calls poll(), which drains them into the set of held keys plus what was pressed and released since the
+ * last poll. So any number of keys can be held at once, and a tap that starts and ends between two ticks still
+ * shows up as pressed (and released) on the next one. The event thread never blocks on the game. */
 
 public class Keyb implements KeyListener{
-	private boolean[] keys;
+	public static final int KEY_COUNT = 1024;	// Key codes past this are ignored
+	private static final int WORDS = KEY_COUNT / 64;
+	
+	private boolean[] keys;					// Event thread's view, also used to resync if the ring ever overflows
 	private int _inputCode;
+	private final KeyRing ring;
+	private final long[] held, pressed, released;		// Game thread's view as of the last poll()
+	private long droppedSeen;
+	private int eventCount;
+	private long lastEventNanos;
+	private final long[] pressNanos;		// When each press the last poll() took in happened (for InputLatency)
+	private int pressCount;
 	
 	public Keyb(){
-		keys = new boolean[1024]; // Increased from 256 to handle larger key codes
+		keys = new boolean[KEY_COUNT];
 		for(int i = 0; i < keys.length; i++)	keys[i] = false;
 		_inputCode = -1;
+		ring = new KeyRing(256);
+		held = new long[WORDS];
+		pressed = new long[WORDS];
+		released = new long[WORDS];
+		pressNanos = new long[64];
 	}
 	
+	/* Down right now as far as the event thread knows (any thread; poll() and isHeld are what the game should use) */
 	public boolean isKeyDown(int keyCode){
 		boolean temp = keys[keyCode];
 		return temp;
@@ -21,13 +41,18 @@ public class Keyb implements KeyListener{
 
 	@Override
 	public void keyPressed(KeyEvent e) {
-		keys[e.getKeyCode()] = true;	
-		return;
+		int code = e.getKeyCode();
+		if(code < 0 || code >= KEY_COUNT || keys[code])		return;		// Already down, so this is just auto-repeat
+		keys[code] = true;
+		ring.offer(code, true, System.nanoTime());
 	}
 
 	@Override
 	public void keyReleased(KeyEvent e) {
-		keys[e.getKeyCode()] = false;
+		int code = e.getKeyCode();
+		if(code < 0 || code >= KEY_COUNT || !keys[code])	return;
+		keys[code] = false;
+		ring.offer(code, false, System.nanoTime());
 	}
 
 	@Override
@@ -35,6 +60,97 @@ public class Keyb implements KeyListener{
 		//keys[e.getKeyCode()] = true;
 	}
 	
+	/* Game thread, once per tick: applies every event since the last call and works out this tick's edges */
+	public void poll(){
+		for(int i = 0; i < WORDS; i++){
+			pressed[i] = 0;
+			released[i] = 0;
+		}
+		eventCount = 0;
+		pressCount = 0;
+		while(ring.poll()){
+			int code = ring.getCode();
+			long bit = 1L << code;
+			if(ring.isPressed()){
+				held[code >>> 6] |= bit;
+				pressed[code >>> 6] |= bit;
+				if(pressCount < pressNanos.length)
+					pressNanos[pressCount++] = ring.getNanos();
+			}else{
+				held[code >>> 6] &= ~bit;
+				released[code >>> 6] |= bit;
+			}
+			lastEventNanos = ring.getNanos();
+			eventCount++;
+		}
+		long dropped = ring.getDroppedCount();
+		if(dropped != droppedSeen){
+			droppedSeen = dropped;
+			resync();
+		}
+	}
+	
+	/* Events were lost, so take the held keys from the event thread's array and make edges out of the differences */
+	private void resync(){
+		for(int code = 0; code < KEY_COUNT; code++){
+			long bit = 1L << code;
+			boolean isDown = keys[code];
+			boolean wasDown = (held[code >>> 6] & bit) != 0;
+			if(isDown && !wasDown){
+				held[code >>> 6] |= bit;
+				pressed[code >>> 6] |= bit;
+			}else if(!isDown && wasDown){
+				held[code >>> 6] &= ~bit;
+				released[code >>> 6] |= bit;
+			}
+		}
+	}
+	
+	/* Held as of the last poll() */
+	public boolean isHeld(int keyCode){
+		return keyCode >= 0 && keyCode < KEY_COUNT && (held[keyCode >>> 6] & 1L << keyCode) != 0;
+	}
+	
+	/* Went down between the last two polls (even if it's already back up) */
+	public boolean wasPressed(int keyCode){
+		return keyCode >= 0 && keyCode < KEY_COUNT && (pressed[keyCode >>> 6] & 1L << keyCode) != 0;
+	}
+	
+	/* Came up between the last two polls */
+	public boolean wasReleased(int keyCode){
+		return keyCode >= 0 && keyCode < KEY_COUNT && (released[keyCode >>> 6] & 1L << keyCode) != 0;
+	}
+	
+	public boolean isAnyHeld(){
+		for(int i = 0; i < WORDS; i++){
+			if(held[i] != 0)		return true;
+		}
+		return false;
+	}
+	
+	/* Events the last poll() took in, and when the newest of all of them happened (System.nanoTime) */
+	public int getEventCount(){
+		return eventCount;
+	}
+	
+	public long getLastEventNanos(){
+		return lastEventNanos;
+	}
+	
+	/* Presses the last poll() took in (up to 64 of them), and the System.nanoTime() each one arrived at */
+	public int getPressCount(){
+		return pressCount;
+	}
+	
+	public long getPressNanos(int i){
+		return pressNanos[i];
+	}
+	
+	/* Events lost because the game thread didn't poll for a long time (held keys were resynced after) */
+	public long getDroppedCount(){
+		return ring.getDroppedCount();
+	}
+	
 	/* Return input code */
 	public int getInputCode(){
 		keybPoll();
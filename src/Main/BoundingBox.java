@@ -3,12 +3,26 @@ package Main;
 
 
 public class BoundingBox {
+    // Layer every box starts on, and a mask that accepts every layer
+    public static final int DEFAULT_LAYER = 1;
+    public static final int ALL_LAYERS = -1;
     // Position and dimensions
     private int x, y, width, height;
     // Identifier for this bounding box
     private String id;
     // Whether this bounding box is active (can be collided with)
     private boolean active;
+    // Which layer bits this box is on, and which layers it is willing to collide with
+    private int layer;
+    private int mask;
+    // Bookkeeping for the CollisionManager this box is registered with
+    CollisionManager owner;
+    int slot;
+    int handle = CollisionManager.NO_HANDLE;
+    boolean isStatic;
+    int queryStamp;
+    int proxy = -1;
+    boolean inMoveBuffer;
     
     /**
      * @param x top left
@@ -24,6 +38,17 @@ public class BoundingBox {
         this.height = height;
         this.id = id;
         this.active = true;
+        this.layer = DEFAULT_LAYER;
+        this.mask = ALL_LAYERS;
+    }
+
+    /**
+     * Layer filter only, doesn't look at positions. Both boxes have to accept each other's layer.
+     * @param other The other bounding box
+     * @return true if the two are allowed to collide at all
+     */
+    public boolean canCollideWith(BoundingBox other) {
+        return (this.layer & other.mask) != 0 && (other.layer & this.mask) != 0;
     }
     
     /**
@@ -49,9 +74,63 @@ public class BoundingBox {
                pointY >= this.y && pointY <= this.y + this.height;
     }
 
+    /**
+     * Where a line segment first touches this box
+     * @return Fraction along the segment (0 = start, 1 = end) of the first point inside the box, or -1 if it misses
+     */
+    public double intersectSegment(int x1, int y1, int x2, int y2) {
+        if (!this.active) {
+            return -1;
+        }
+        return segmentEntry(this.x, this.y, this.x + this.width, this.y + this.height, x1, y1, x2, y2);
+    }
+
+    /**
+     * Slab test of a segment against inclusive bounds (the same edges containsPoint uses)
+     */
+    static double segmentEntry(int minX, int minY, int maxX, int maxY, int x1, int y1, int x2, int y2) {
+        double tMin = 0.0;
+        double tMax = 1.0;
+        double dx = x2 - x1;
+        if (dx == 0) {
+            if (x1 < minX || x1 > maxX) {
+                return -1;
+            }
+        } else {
+            double t1 = (minX - x1) / dx;
+            double t2 = (maxX - x1) / dx;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            if (tMin > tMax) {
+                return -1;
+            }
+        }
+        double dy = y2 - y1;
+        if (dy == 0) {
+            if (y1 < minY || y1 > maxY) {
+                return -1;
+            }
+        } else {
+            double t1 = (minY - y1) / dy;
+            double t2 = (maxY - y1) / dy;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            if (tMin > tMax) {
+                return -1;
+            }
+        }
+        return tMin;
+    }
+
     public void updatePosition(int x, int y) {
+        int oldX = this.x;
+        int oldY = this.y;
         this.x = x;
         this.y = y;
+        // Let the collision manager re-bucket us if it's using a broadphase
+        if (owner != null && (oldX != x || oldY != y)) {
+            owner.boxMoved(this, oldX, oldY);
+        }
     }
 
     public void setActive(boolean active) {
@@ -81,4 +160,40 @@ public class BoundingBox {
     public boolean isActive() {
         return this.active;
     }
+
+    /**
+     * @param layer Bit(s) for the categories this box belongs to
+     */
+    public void setLayer(int layer) {
+        this.layer = layer;
+    }
+
+    /**
+     * @param mask Bits of the layers this box collides with
+     */
+    public void setMask(int mask) {
+        this.mask = mask;
+    }
+
+    public int getLayer() {
+        return this.layer;
+    }
+
+    public int getMask() {
+        return this.mask;
+    }
+
+    /**
+     * @return The handle CollisionManager gave this box, or CollisionManager.NO_HANDLE if it isn't registered
+     */
+    public int getHandle() {
+        return this.handle;
+    }
+
+    /**
+     * @return true if this box was added with addStaticBoundingBox
+     */
+    public boolean isStatic() {
+        return this.owner != null && this.isStatic;
+    }
 }
@@ -0,0 +1,44 @@
+package Main;
+
+import java.util.ArrayList;
+
+/**
+ * A way for CollisionManager to narrow down which boxes are worth running collidesWith on.
+ * A broadphase may return extra candidates, but never leaves out a box that could touch the query area.
+ */
+interface Broadphase {
+    /**
+     * @param box The box that was just registered
+     */
+    void add(BoundingBox box);
+
+    /**
+     * @param box The box that is being unregistered
+     */
+    void remove(BoundingBox box);
+
+    /**
+     * @param box The box that just moved (its new position is already set)
+     * @param oldX Where it was before
+     * @param oldY Where it was before
+     */
+    void moved(BoundingBox box, int oldX, int oldY);
+
+    /**
+     * Collects every box that might touch the area, each one once, in no particular order
+     * @param minX left edge (inclusive)
+     * @param minY top edge (inclusive)
+     * @param maxX right edge (inclusive)
+     * @param maxY bottom edge (inclusive)
+     * @param out cleared, then filled with the candidates
+     */
+    void query(int minX, int minY, int maxX, int maxY, ArrayList<BoundingBox> out);
+
+    /**
+     * Collects every box that might touch the line segment, each one once, in no particular order
+     * @param out cleared, then filled with the candidates
+     */
+    void queryRay(int x1, int y1, int x2, int y2, ArrayList<BoundingBox> out);
+
+    void clear();
+}
@@ -1,55 +1,179 @@
 package Main;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 public class CollisionManager {
-    // Collection of bounding boxes
-    private ArrayList<BoundingBox> boundingBoxes;
-    // Whether to draw debug visuals for bounding boxes
+    // Returned by BoundingBox.getHandle when the box isn't registered
+    public static final int NO_HANDLE = -1;
+    // A handle is (generation << HANDLE_INDEX_BITS) | index into the handle table. The generation goes up every
+    // time a table entry is reused, so a handle to a removed box never finds the box that took its place.
+    private static final int HANDLE_INDEX_BITS = 20;
+    private static final int HANDLE_INDEX_MASK = (1 << HANDLE_INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = 0x7FF;
+    private static final int MAX_HANDLES = 1 << HANDLE_INDEX_BITS;
+
+    // Boxes that never move (walls, props) and boxes that do. Static boxes are never tested against each other.
+    // Queries walk the static partition first, then the dynamic one.
+    private Partition staticBoxes;
+    private Partition dynamicBoxes;
+    // Handle table: handle index -> box, plus the generation each entry is on and a stack of free entries
+    private BoundingBox[] handleBoxes;
+    private int[] handleGenerations;
+    private int[] freeHandles;
+    private int freeHandleCount;
+    private int handleCount;
+    // id -> first registered box with that id
+    private HashMap<String, BoundingBox> idIndex;
+    private boolean hasDuplicateIds;
+    private boolean isBroadphaseEnabled;
+    // Reused for broadphase candidates so queries don't allocate. One list per nesting level, so a visitor
+    // can run another query on this manager without clobbering the one it was called from.
+    private ArrayList<ArrayList<BoundingBox>> candidatePool;
+    private int queryDepth;
+    // Reused by checkCollision and getAllCollisions so they don't allocate a visitor per call
+    private final FirstHit firstHit = new FirstHit();
+    private final Collector collector = new Collector();
+    // Boxes that have moved since the last forEachMovingPair call
+    private ArrayList<BoundingBox> movedBoxes;
 
     public CollisionManager() {
-        this.boundingBoxes = new ArrayList<>();
+        this.staticBoxes = new Partition(true);
+        this.dynamicBoxes = new Partition(false);
+        this.handleBoxes = new BoundingBox[16];
+        this.handleGenerations = new int[16];
+        this.freeHandles = new int[16];
+        this.idIndex = new HashMap<>();
+        this.candidatePool = new ArrayList<>();
+        this.movedBoxes = new ArrayList<>();
     }
-    
+
     /**
+     * Buckets boxes into a uniform grid so queries only test boxes in the cells they touch.
+     * Results are exactly the same as without it, just faster when there are lots of boxes.
+     * @param cellSize width and height of each grid cell in pixels
+     */
+    public void enableSpatialHash(int cellSize) {
+        setBroadphase(new SpatialHashGrid(cellSize), new SpatialHashGrid(cellSize));
+    }
+
+    /**
+     * Keeps boxes in a dynamic AABB tree. Better than the grid when box sizes vary a lot or lots of boxes move.
+     * Static boxes go in their own tree with no margin, since they aren't expected to move.
+     * @param fatMargin Pixels of slack around each box, so moves smaller than this don't touch the tree
+     */
+    public void enableAabbTree(int fatMargin) {
+        setBroadphase(new DynamicAabbTree(0), new DynamicAabbTree(fatMargin));
+    }
+
+    /**
+     * Goes back to testing every box on every query
+     */
+    public void disableBroadphase() {
+        setBroadphase(null, null);
+    }
+
+    public boolean isBroadphaseEnabled() {
+        return this.isBroadphaseEnabled;
+    }
+
+    private void setBroadphase(Broadphase staticPhase, Broadphase dynamicPhase) {
+        this.staticBoxes.setBroadphase(staticPhase);
+        this.dynamicBoxes.setBroadphase(dynamicPhase);
+        this.isBroadphaseEnabled = staticPhase != null;
+    }
+
+    /**
+     * Adds a box that moves (the player, anything that walks around)
      * @param box The bounding box to add
-     * @return The index of the added bounding box
+     * @return A handle for the box. It stays valid until the box is removed, no matter what else is added or removed.
      */
     public int addBoundingBox(BoundingBox box) {
-        this.boundingBoxes.add(box);
-        return this.boundingBoxes.size() - 1;
+        return register(box, this.dynamicBoxes);
     }
-    
+
     /**
-     * @param index The index of the bounding box to remove
+     * Adds a box that stays put (walls, screen edges, props). Static boxes are never tested against each other,
+     * and can still be moved with updatePosition if they really have to.
+     * @param box The bounding box to add
+     * @return A handle for the box, same as addBoundingBox
      */
-    public void removeBoundingBox(int index) {
-        if (index >= 0 && index < this.boundingBoxes.size()) {
-            this.boundingBoxes.remove(index);
+    public int addStaticBoundingBox(BoundingBox box) {
+        return register(box, this.staticBoxes);
+    }
+
+    private int register(BoundingBox box, Partition partition) {
+        if (box.owner != null) {
+            throw new IllegalArgumentException("Bounding box " + box.getId() + " is already in a CollisionManager");
         }
+        box.owner = this;
+        box.handle = allocateHandle(box);
+        partition.add(box);
+        BoundingBox sameId = this.idIndex.put(box.getId(), box);
+        if (sameId != null) {
+            // Keep the first one, like the old linear search did
+            this.idIndex.put(box.getId(), sameId);
+            this.hasDuplicateIds = true;
+        }
+        return box.handle;
     }
-    
+
+    /**
+     * O(1), the last box in the same partition takes its place. Does nothing if the handle is stale.
+     * @param handle The handle addBoundingBox returned
+     */
+    public void removeBoundingBox(int handle) {
+        BoundingBox box = getBoundingBox(handle);
+        if (box != null) {
+            removeBoundingBox(box);
+        }
+    }
+
+    /**
+     * @param box The bounding box to remove, does nothing if it isn't in this manager
+     */
+    public void removeBoundingBox(BoundingBox box) {
+        if (box.owner != this) {
+            return;
+        }
+        partitionOf(box).remove(box);
+        if (box.inMoveBuffer) {
+            this.movedBoxes.remove(box);
+            box.inMoveBuffer = false;
+        }
+        releaseHandle(box);
+        box.owner = null;
+        if (this.idIndex.get(box.getId()) == box) {
+            this.idIndex.remove(box.getId());
+            if (this.hasDuplicateIds) {
+                reindexId(box.getId());
+            }
+        }
+    }
+
     /**
      * @param id The ID of the bounding box to remove
      */
     public void removeBoundingBoxById(String id) {
-        for (int i = 0; i < this.boundingBoxes.size(); i++) {
-            if (this.boundingBoxes.get(i).getId().equals(id)) {
-                this.boundingBoxes.remove(i);
-                return;
-            }
+        BoundingBox box = this.idIndex.get(id);
+        if (box != null) {
+            removeBoundingBox(box);
         }
     }
 
     /**
-     * @param index of box
-     * @return bounding box at index
+     * @param handle The handle addBoundingBox returned
+     * @return The box, or null if it has been removed since
      */
-    public BoundingBox getBoundingBox(int index) {
-        if (index >= 0 && index < this.boundingBoxes.size()) {
-            return this.boundingBoxes.get(index);
+    public BoundingBox getBoundingBox(int handle) {
+        if (handle < 0) {
+            return null;
         }
-        return null;
+        int index = handle & HANDLE_INDEX_MASK;
+        if (index >= this.handleCount || this.handleGenerations[index] != (handle >>> HANDLE_INDEX_BITS)) {
+            return null;
+        }
+        return this.handleBoxes[index];
     }
 
     /**
@@ -57,71 +181,525 @@ public class CollisionManager {
      * @return bounding box with id
      */
     public BoundingBox getBoundingBoxById(String id) {
-        for (BoundingBox box : this.boundingBoxes) {
-            if (box.getId().equals(id)) {
-                return box;
+        return this.idIndex.get(id);
+    }
+
+    /**
+     * Called by BoundingBox.updatePosition so the broadphase can re-bucket the box
+     * @param box The box that moved
+     * @param oldX Its x before the move
+     * @param oldY Its y before the move
+     */
+    void boxMoved(BoundingBox box, int oldX, int oldY) {
+        Partition partition = partitionOf(box);
+        if (partition.broadphase != null) {
+            partition.broadphase.moved(box, oldX, oldY);
+        }
+        if (!box.inMoveBuffer) {
+            box.inMoveBuffer = true;
+            this.movedBoxes.add(box);
+        }
+    }
+
+    /**
+     * Calls the visitor once for every overlapping pair that involves at least one box that moved since the
+     * last call, then forgets which boxes moved. With a broadphase each moved box costs one O(log n) query
+     * (tree) or a few cells (grid), instead of testing every pair.
+     * @param visitor Gets (moved box, box it overlaps)
+     */
+    public void forEachMovingPair(CollisionPairVisitor visitor) {
+        ArrayList<BoundingBox> found = beginQuery();
+        try {
+            for (int m = 0; m < this.movedBoxes.size(); m++) {
+                BoundingBox box = this.movedBoxes.get(m);
+                for (Partition partition = firstPartitionFor(box); partition != null; partition = nextPartition(partition)) {
+                    ArrayList<BoundingBox> boxes = partition.candidates(box, found, true);
+                    for (int i = 0; i < boxes.size(); i++) {
+                        visitIfNewPair(box, boxes.get(i), visitor);
+                    }
+                }
             }
+        } finally {
+            endQuery();
         }
-        return null;
+        for (int i = 0; i < this.movedBoxes.size(); i++) {
+            this.movedBoxes.get(i).inMoveBuffer = false;
+        }
+        this.movedBoxes.clear();
     }
-    
+
     /**
+     * @return How many boxes have moved since the last forEachMovingPair call
+     */
+    public int getMovedCount() {
+        return this.movedBoxes.size();
+    }
+
+    private static void visitIfNewPair(BoundingBox box, BoundingBox other, CollisionPairVisitor visitor) {
+        if (box == other || !box.canCollideWith(other) || !box.collidesWith(other)) {
+            return;
+        }
+        // Both moved: only report it from the one that comes first
+        if (other.inMoveBuffer && comesBefore(other, box)) {
+            return;
+        }
+        visitor.visit(box, other);
+    }
+
+    /**
+     * Calls the visitor once for every overlapping pair of registered boxes. Only dynamic boxes are queried,
+     * so static pairs are never even looked at.
+     * @param visitor Gets (dynamic box, box it overlaps)
+     */
+    public void forEachOverlappingPair(CollisionPairVisitor visitor) {
+        ArrayList<BoundingBox> found = beginQuery();
+        try {
+            ArrayList<BoundingBox> dynamics = this.dynamicBoxes.boxes;
+            for (int d = 0; d < dynamics.size(); d++) {
+                BoundingBox box = dynamics.get(d);
+                ArrayList<BoundingBox> boxes = this.staticBoxes.candidates(box, found, true);
+                for (int i = 0; i < boxes.size(); i++) {
+                    BoundingBox other = boxes.get(i);
+                    if (box.canCollideWith(other) && box.collidesWith(other)) {
+                        visitor.visit(box, other);
+                    }
+                }
+                boxes = this.dynamicBoxes.candidates(box, found, true);
+                for (int i = 0; i < boxes.size(); i++) {
+                    BoundingBox other = boxes.get(i);
+                    if (other.slot > box.slot && box.canCollideWith(other) && box.collidesWith(other)) {
+                        visitor.visit(box, other);
+                    }
+                }
+            }
+        } finally {
+            endQuery();
+        }
+    }
+
+    /**
+     * Calls the visitor for every box that overlaps the given one and whose layer/mask lets them touch.
+     * Static boxes come first, then dynamic ones, each in slot order. Doesn't allocate.
+     * Don't add or remove boxes from inside the visitor.
      * @param box The bounding box to check
-     * @return The first bounding box that collides with the given box, or null if none
+     * @param visitor Gets each overlapping box, returns false to stop early
+     * @return How many boxes the visitor was called with
      */
-    public BoundingBox checkCollision(BoundingBox box) {
-        for (BoundingBox other : this.boundingBoxes) {
-            if (box != other && box.collidesWith(other)) {
-                return other;
+    public int forEachCollision(BoundingBox box, CollisionVisitor visitor) {
+        int visited = 0;
+        ArrayList<BoundingBox> found = beginQuery();
+        try {
+            for (Partition partition = firstPartitionFor(box); partition != null; partition = nextPartition(partition)) {
+                ArrayList<BoundingBox> boxes = partition.candidates(box, found, true);
+                for (int i = 0; i < boxes.size(); i++) {
+                    BoundingBox other = boxes.get(i);
+                    if (box != other && box.canCollideWith(other) && box.collidesWith(other)) {
+                        visited++;
+                        if (!visitor.visit(other)) {
+                            return visited;
+                        }
+                    }
+                }
             }
+        } finally {
+            endQuery();
         }
-        return null;
+        return visited;
     }
-    
+
     /**
-     * @param index The index of the bounding box to check
+     * Cheapest check there is: stops at the first overlap and doesn't care which box it was
+     * @param box The bounding box to check
+     * @return true if any other box overlaps it
+     */
+    public boolean hasAnyCollision(BoundingBox box) {
+        ArrayList<BoundingBox> found = beginQuery();
+        try {
+            for (Partition partition = firstPartitionFor(box); partition != null; partition = nextPartition(partition)) {
+                ArrayList<BoundingBox> boxes = partition.candidates(box, found, false);
+                for (int i = 0; i < boxes.size(); i++) {
+                    BoundingBox other = boxes.get(i);
+                    if (box != other && box.canCollideWith(other) && box.collidesWith(other)) {
+                        return true;
+                    }
+                }
+            }
+        } finally {
+            endQuery();
+        }
+        return false;
+    }
+
+    /**
+     * @param box The bounding box to check
+     * @return The first bounding box that collides with the given box, or null if none
+     */
+    public BoundingBox checkCollision(BoundingBox box) {
+        this.firstHit.hit = null;
+        forEachCollision(box, this.firstHit);
+        BoundingBox hit = this.firstHit.hit;
+        this.firstHit.hit = null;
+        return hit;
+    }
+
+    /**
+     * @param handle The handle of the bounding box to check
      * @return The first bounding box that collides with the given box
      */
-    public BoundingBox checkCollision(int index) {
-        if (index >= 0 && index < this.boundingBoxes.size()) {
-            return checkCollision(this.boundingBoxes.get(index));
+    public BoundingBox checkCollision(int handle) {
+        BoundingBox box = getBoundingBox(handle);
+        if (box != null) {
+            return checkCollision(box);
         }
         return null;
     }
-    
+
     /**
+     * Allocates a new list every call, use the overload that takes a list in anything that runs every tick
      * @param box The bounding box to check
      * @return An ArrayList of all colliding
      */
     public ArrayList<BoundingBox> getAllCollisions(BoundingBox box) {
         ArrayList<BoundingBox> collisions = new ArrayList<>();
-        for (BoundingBox other : this.boundingBoxes) {
-            if (box != other && box.collidesWith(other)) {
-                collisions.add(other);
-            }
-        }
+        getAllCollisions(box, collisions);
         return collisions;
     }
-    
+
+    /**
+     * Same as getAllCollisions(box) but fills a list you keep around, so it doesn't allocate once the list is big enough
+     * @param box The bounding box to check
+     * @param out Cleared, then filled with every colliding box
+     * @return How many boxes were put in out
+     */
+    public int getAllCollisions(BoundingBox box, ArrayList<BoundingBox> out) {
+        out.clear();
+        Collector c = this.collector;
+        ArrayList<BoundingBox> outerOut = c.out; // Only non-null if a visitor is calling back into us
+        c.out = out;
+        try {
+            forEachCollision(box, c);
+        } finally {
+            c.out = outerOut;
+        }
+        return out.size();
+    }
+
     /**
      * @param x The x coordinate of the point
      * @param y The y coordinate of the point
      * @return The bounding box that contains the point
      */
     public BoundingBox checkPointCollision(int x, int y) {
-        for (BoundingBox box : this.boundingBoxes) {
-            if (box.containsPoint(x, y)) {
-                return box;
+        return checkPointCollision(x, y, BoundingBox.ALL_LAYERS);
+    }
+
+    /**
+     * @param x The x coordinate of the point
+     * @param y The y coordinate of the point
+     * @param mask Only boxes on one of these layers count
+     * @return The first bounding box on those layers that contains the point
+     */
+    public BoundingBox checkPointCollision(int x, int y, int mask) {
+        ArrayList<BoundingBox> found = beginQuery();
+        try {
+            for (Partition partition = this.staticBoxes; partition != null; partition = nextPartition(partition)) {
+                ArrayList<BoundingBox> boxes = partition.candidates(x, y, x, y, found, false);
+                BoundingBox first = null;
+                for (int i = 0; i < boxes.size(); i++) {
+                    BoundingBox box = boxes.get(i);
+                    if ((first == null || box.slot < first.slot) && (box.getLayer() & mask) != 0 && box.containsPoint(x, y)) {
+                        first = box;
+                    }
+                }
+                if (first != null) {
+                    return first;
+                }
             }
+        } finally {
+            endQuery();
         }
         return null;
     }
 
+    /**
+     * @param x1 Start of the ray
+     * @param y1 Start of the ray
+     * @param x2 End of the ray
+     * @param y2 End of the ray
+     * @return The closest box the segment hits (static before dynamic, then lowest slot if two are hit at the same spot), or null
+     */
+    public BoundingBox raycast(int x1, int y1, int x2, int y2) {
+        return raycast(x1, y1, x2, y2, BoundingBox.ALL_LAYERS);
+    }
+
+    /**
+     * @param mask Only boxes on one of these layers can be hit
+     * @return The closest box on those layers the segment hits, or null
+     */
+    public BoundingBox raycast(int x1, int y1, int x2, int y2, int mask) {
+        BoundingBox closest = null;
+        double closestT = Double.MAX_VALUE;
+        ArrayList<BoundingBox> found = beginQuery();
+        try {
+            for (Partition partition = this.staticBoxes; partition != null; partition = nextPartition(partition)) {
+                ArrayList<BoundingBox> boxes = partition.rayCandidates(x1, y1, x2, y2, found);
+                for (int i = 0; i < boxes.size(); i++) {
+                    BoundingBox box = boxes.get(i);
+                    if ((box.getLayer() & mask) == 0) {
+                        continue;
+                    }
+                    double t = box.intersectSegment(x1, y1, x2, y2);
+                    if (t >= 0 && (t < closestT || (t == closestT && comesBefore(box, closest)))) {
+                        closest = box;
+                        closestT = t;
+                    }
+                }
+            }
+        } finally {
+            endQuery();
+        }
+        return closest;
+    }
+
     public int getCount() {
-        return this.boundingBoxes.size();
+        return this.staticBoxes.boxes.size() + this.dynamicBoxes.boxes.size();
+    }
+
+    public int getStaticCount() {
+        return this.staticBoxes.boxes.size();
+    }
+
+    public int getDynamicCount() {
+        return this.dynamicBoxes.boxes.size();
     }
 
     public void clear() {
-        this.boundingBoxes.clear();
+        clearPartition(this.staticBoxes);
+        clearPartition(this.dynamicBoxes);
+        this.movedBoxes.clear();
+        this.idIndex.clear();
+        this.hasDuplicateIds = false;
+    }
+
+    private void clearPartition(Partition partition) {
+        ArrayList<BoundingBox> boxes = partition.boxes;
+        for (int i = 0; i < boxes.size(); i++) {
+            BoundingBox box = boxes.get(i);
+            releaseHandle(box);
+            box.owner = null;
+            box.inMoveBuffer = false;
+        }
+        partition.clear();
+    }
+
+    private Partition partitionOf(BoundingBox box) {
+        return box.isStatic ? this.staticBoxes : this.dynamicBoxes;
+    }
+
+    /**
+     * Static boxes skip the static partition, that's the whole point of having one
+     */
+    private Partition firstPartitionFor(BoundingBox box) {
+        return (box.owner == this && box.isStatic) ? this.dynamicBoxes : this.staticBoxes;
+    }
+
+    private Partition nextPartition(Partition partition) {
+        return partition == this.staticBoxes ? this.dynamicBoxes : null;
+    }
+
+    /**
+     * The order queries report boxes in: static partition first, then by slot
+     */
+    private static boolean comesBefore(BoundingBox a, BoundingBox b) {
+        if (a.isStatic != b.isStatic) {
+            return a.isStatic;
+        }
+        return a.slot < b.slot;
+    }
+
+    private int allocateHandle(BoundingBox box) {
+        int index;
+        if (this.freeHandleCount > 0) {
+            index = this.freeHandles[--this.freeHandleCount];
+        } else {
+            if (this.handleCount == MAX_HANDLES) {
+                throw new IllegalStateException("Too many bounding boxes (max " + MAX_HANDLES + ")");
+            }
+            if (this.handleCount == this.handleBoxes.length) {
+                int newLength = this.handleBoxes.length * 2;
+                BoundingBox[] boxes = new BoundingBox[newLength];
+                System.arraycopy(this.handleBoxes, 0, boxes, 0, this.handleCount);
+                this.handleBoxes = boxes;
+                int[] generations = new int[newLength];
+                System.arraycopy(this.handleGenerations, 0, generations, 0, this.handleCount);
+                this.handleGenerations = generations;
+            }
+            index = this.handleCount++;
+        }
+        this.handleBoxes[index] = box;
+        return (this.handleGenerations[index] << HANDLE_INDEX_BITS) | index;
+    }
+
+    private void releaseHandle(BoundingBox box) {
+        int index = box.handle & HANDLE_INDEX_MASK;
+        this.handleBoxes[index] = null;
+        this.handleGenerations[index] = (this.handleGenerations[index] + 1) & GENERATION_MASK;
+        if (this.freeHandleCount == this.freeHandles.length) {
+            int[] free = new int[this.freeHandles.length * 2];
+            System.arraycopy(this.freeHandles, 0, free, 0, this.freeHandleCount);
+            this.freeHandles = free;
+        }
+        this.freeHandles[this.freeHandleCount++] = index;
+        box.handle = NO_HANDLE;
+    }
+
+    /**
+     * The indexed box for this id was removed but another box had the same id. Only happens with duplicate ids.
+     */
+    private void reindexId(String id) {
+        for (Partition partition = this.staticBoxes; partition != null; partition = nextPartition(partition)) {
+            for (int i = 0; i < partition.boxes.size(); i++) {
+                BoundingBox box = partition.boxes.get(i);
+                String boxId = box.getId();
+                if (boxId == null ? id == null : boxId.equals(id)) {
+                    this.idIndex.put(id, box);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The candidate list for this nesting level, only allocates the first time a level is used
+     */
+    private ArrayList<BoundingBox> beginQuery() {
+        if (this.queryDepth == this.candidatePool.size()) {
+            this.candidatePool.add(new ArrayList<BoundingBox>());
+        }
+        return this.candidatePool.get(this.queryDepth++);
+    }
+
+    private void endQuery() {
+        this.queryDepth--;
+    }
+
+    /**
+     * Puts candidates back in slot order so results match the plain loop exactly.
+     * Candidate lists are short, so an insertion sort is plenty.
+     */
+    private static void sortBySlot(ArrayList<BoundingBox> boxes) {
+        for (int i = 1; i < boxes.size(); i++) {
+            BoundingBox box = boxes.get(i);
+            int j = i - 1;
+            while (j >= 0 && boxes.get(j).slot > box.slot) {
+                boxes.set(j + 1, boxes.get(j));
+                j--;
+            }
+            boxes.set(j + 1, box);
+        }
+    }
+
+    /**
+     * One densely packed list of boxes (box.slot is its index) plus an optional broadphase over just those boxes
+     */
+    private static final class Partition {
+        final ArrayList<BoundingBox> boxes = new ArrayList<>();
+        final boolean isStatic;
+        Broadphase broadphase;
+
+        Partition(boolean isStatic) {
+            this.isStatic = isStatic;
+        }
+
+        void setBroadphase(Broadphase newBroadphase) {
+            if (this.broadphase != null) {
+                this.broadphase.clear();
+            }
+            this.broadphase = newBroadphase;
+            if (newBroadphase != null) {
+                for (int i = 0; i < this.boxes.size(); i++) {
+                    newBroadphase.add(this.boxes.get(i));
+                }
+            }
+        }
+
+        void add(BoundingBox box) {
+            box.isStatic = this.isStatic;
+            box.slot = this.boxes.size();
+            this.boxes.add(box);
+            if (this.broadphase != null) {
+                this.broadphase.add(box);
+            }
+        }
+
+        /**
+         * Swap-remove: the last box moves into the hole, so nothing else changes slot
+         */
+        void remove(BoundingBox box) {
+            if (this.broadphase != null) {
+                this.broadphase.remove(box);
+            }
+            BoundingBox last = this.boxes.remove(this.boxes.size() - 1);
+            if (last != box) {
+                this.boxes.set(box.slot, last);
+                last.slot = box.slot;
+            }
+        }
+
+        /**
+         * @return Every box that could touch the given one: the partition's own list without a broadphase,
+         *         otherwise scratch filled by the broadphase (sorted by slot if asked)
+         */
+        ArrayList<BoundingBox> candidates(BoundingBox box, ArrayList<BoundingBox> scratch, boolean isSorted) {
+            return candidates(box.getX(), box.getY(), box.getX() + box.getWidth(), box.getY() + box.getHeight(),
+                    scratch, isSorted);
+        }
+
+        ArrayList<BoundingBox> candidates(int minX, int minY, int maxX, int maxY, ArrayList<BoundingBox> scratch,
+                boolean isSorted) {
+            if (this.broadphase == null) {
+                return this.boxes;
+            }
+            this.broadphase.query(minX, minY, maxX, maxY, scratch);
+            if (isSorted) {
+                sortBySlot(scratch);
+            }
+            return scratch;
+        }
+
+        ArrayList<BoundingBox> rayCandidates(int x1, int y1, int x2, int y2, ArrayList<BoundingBox> scratch) {
+            if (this.broadphase == null) {
+                return this.boxes;
+            }
+            this.broadphase.queryRay(x1, y1, x2, y2, scratch);
+            return scratch;
+        }
+
+        void clear() {
+            this.boxes.clear();
+            if (this.broadphase != null) {
+                this.broadphase.clear();
+            }
+        }
+    }
+
+    private static final class FirstHit implements CollisionVisitor {
+        BoundingBox hit;
+
+        @Override
+        public boolean visit(BoundingBox other) {
+            this.hit = other;
+            return false;
+        }
+    }
+
+    private static final class Collector implements CollisionVisitor {
+        ArrayList<BoundingBox> out;
+
+        @Override
+        public boolean visit(BoundingBox other) {
+            this.out.add(other);
+            return true;
+        }
     }
 }
@@ -0,0 +1,12 @@
+package Main;
+
+/**
+ * Gets called once for each pair of overlapping bounding boxes
+ */
+public interface CollisionPairVisitor {
+    /**
+     * @param a One of the boxes
+     * @param b The box it overlaps
+     */
+    void visit(BoundingBox a, BoundingBox b);
+}
@@ -0,0 +1,12 @@
+package Main;
+
+/**
+ * Gets called once for each box that overlaps the box being checked
+ */
+public interface CollisionVisitor {
+    /**
+     * @param other A box that overlaps the one being checked
+     * @return true to keep going, false to stop the query here
+     */
+    boolean visit(BoundingBox other);
+}
@@ -0,0 +1,483 @@
+package Main;
+
+import java.util.ArrayList;
+
+/**
+ * Dynamic bounding volume tree broadphase (the same idea as Box2D's b2DynamicTree).
+ * Each box gets a leaf holding a "fat" copy of its bounds, grown by a margin and by how far it last moved,
+ * so small moves don't touch the tree at all. Inserts pick the sibling that grows the tree's perimeter the
+ * least, and every insert/remove rotates unbalanced nodes on the way back up, so queries stay O(log n)
+ * even with huge size differences between boxes (screen boundaries next to keys).
+ * Nodes live in parallel int arrays with a free list.
+ */
+final class DynamicAabbTree implements Broadphase {
+    private static final int NULL = -1;
+    // Fat bounds are stretched this many times the last move in the direction of travel
+    private static final int DISPLACEMENT_MULTIPLIER = 2;
+
+    private final int margin;
+    private int root;
+    // Node data, interleaved so one node is one or two cache lines:
+    // bounds = minX, minY, maxX, maxY (inclusive) and links = parent, child1, child2, height, 4 ints per node
+    private int[] bounds;
+    private int[] links;
+    private BoundingBox[] boxes;
+    private int freeList;
+    private int nodeCount;
+    // Traversal stack, reused between queries
+    private int[] stack;
+
+    /**
+     * @param margin How many pixels to grow each box's stored bounds by on every side
+     */
+    DynamicAabbTree(int margin) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("Margin can't be negative");
+        }
+        this.margin = margin;
+        this.stack = new int[64];
+        allocateNodes(16);
+        this.root = NULL;
+    }
+
+    int getMargin() {
+        return margin;
+    }
+
+    /**
+     * @return Height of the tree (0 for a single leaf, -1 when empty)
+     */
+    int getHeight() {
+        return root == NULL ? -1 : height(root);
+    }
+
+    int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public void add(BoundingBox box) {
+        int leaf = allocateNode();
+        boxes[leaf] = box;
+        setHeight(leaf, 0);
+        setFatBounds(leaf, box, 0, 0);
+        box.proxy = leaf;
+        insertLeaf(leaf);
+    }
+
+    @Override
+    public void remove(BoundingBox box) {
+        int leaf = box.proxy;
+        if (leaf == NULL || boxes[leaf] != box) {
+            return;
+        }
+        removeLeaf(leaf);
+        freeNode(leaf);
+        box.proxy = NULL;
+    }
+
+    @Override
+    public void moved(BoundingBox box, int oldX, int oldY) {
+        int leaf = box.proxy;
+        if (leaf == NULL || boxes[leaf] != box) {
+            return;
+        }
+        // Still inside its fat bounds, nothing to do
+        if (minX(leaf) <= box.getX() && minY(leaf) <= box.getY()
+                && box.getX() + box.getWidth() <= maxX(leaf) && box.getY() + box.getHeight() <= maxY(leaf)) {
+            return;
+        }
+        removeLeaf(leaf);
+        setFatBounds(leaf, box, box.getX() - oldX, box.getY() - oldY);
+        insertLeaf(leaf);
+    }
+
+    @Override
+    public void query(int qMinX, int qMinY, int qMaxX, int qMaxY, ArrayList<BoundingBox> out) {
+        out.clear();
+        if (root == NULL) {
+            return;
+        }
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (maxX(node) < qMinX || qMaxX < minX(node) || maxY(node) < qMinY || qMaxY < minY(node)) {
+                continue;
+            }
+            if (child1(node) == NULL) {
+                out.add(boxes[node]);
+            } else {
+                top = push(top, child1(node));
+                top = push(top, child2(node));
+            }
+        }
+    }
+
+    @Override
+    public void queryRay(int x1, int y1, int x2, int y2, ArrayList<BoundingBox> out) {
+        out.clear();
+        if (root == NULL) {
+            return;
+        }
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (BoundingBox.segmentEntry(minX(node), minY(node), maxX(node), maxY(node), x1, y1, x2, y2) < 0) {
+                continue;
+            }
+            if (child1(node) == NULL) {
+                out.add(boxes[node]);
+            } else {
+                top = push(top, child1(node));
+                top = push(top, child2(node));
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < boxes.length; i++) {
+            if (boxes[i] != null) {
+                boxes[i].proxy = NULL;
+            }
+        }
+        allocateNodes(16);
+        root = NULL;
+    }
+
+    private int push(int top, int node) {
+        if (top == stack.length) {
+            int[] bigger = new int[stack.length * 2];
+            System.arraycopy(stack, 0, bigger, 0, stack.length);
+            stack = bigger;
+        }
+        stack[top] = node;
+        return top + 1;
+    }
+
+    /**
+     * Tight bounds plus the margin, stretched further in the direction the box is moving
+     */
+    private void setFatBounds(int leaf, BoundingBox box, int dx, int dy) {
+        int fatMinX = box.getX() - margin;
+        int fatMinY = box.getY() - margin;
+        int fatMaxX = box.getX() + box.getWidth() + margin;
+        int fatMaxY = box.getY() + box.getHeight() + margin;
+        if (dx < 0) {
+            fatMinX += dx * DISPLACEMENT_MULTIPLIER;
+        } else {
+            fatMaxX += dx * DISPLACEMENT_MULTIPLIER;
+        }
+        if (dy < 0) {
+            fatMinY += dy * DISPLACEMENT_MULTIPLIER;
+        } else {
+            fatMaxY += dy * DISPLACEMENT_MULTIPLIER;
+        }
+        setBounds(leaf, fatMinX, fatMinY, fatMaxX, fatMaxY);
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            setParent(leaf, NULL);
+            return;
+        }
+
+        // Walk down to the cheapest sibling (surface area heuristic, using perimeter in 2D)
+        int index = root;
+        while (child1(index) != NULL) {
+            int c1 = child1(index);
+            int c2 = child2(index);
+            long area = perimeter(index);
+            long combinedArea = unionPerimeter(index, leaf);
+            // Cost of making a new parent for this node and the leaf
+            long cost = 2 * combinedArea;
+            // Minimum cost of pushing the leaf further down
+            long inheritanceCost = 2 * (combinedArea - area);
+            long cost1 = descendCost(c1, leaf) + inheritanceCost;
+            long cost2 = descendCost(c2, leaf) + inheritanceCost;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? c1 : c2;
+        }
+        int sibling = index;
+
+        // New parent for the sibling and the leaf
+        int oldParent = parent(sibling);
+        int newParent = allocateNode();
+        setParent(newParent, oldParent);
+        boxes[newParent] = null;
+        setUnion(newParent, leaf, sibling);
+        setHeight(newParent, height(sibling) + 1);
+        if (oldParent != NULL) {
+            if (child1(oldParent) == sibling) {
+                setChild1(oldParent, newParent);
+            } else {
+                setChild2(oldParent, newParent);
+            }
+        } else {
+            root = newParent;
+        }
+        setChild1(newParent, sibling);
+        setChild2(newParent, leaf);
+        setParent(sibling, newParent);
+        setParent(leaf, newParent);
+
+        refit(parent(leaf));
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+        int p = parent(leaf);
+        int grandParent = parent(p);
+        int sibling = child1(p) == leaf ? child2(p) : child1(p);
+        if (grandParent != NULL) {
+            if (child1(grandParent) == p) {
+                setChild1(grandParent, sibling);
+            } else {
+                setChild2(grandParent, sibling);
+            }
+            setParent(sibling, grandParent);
+            freeNode(p);
+            refit(grandParent);
+        } else {
+            root = sibling;
+            setParent(sibling, NULL);
+            freeNode(p);
+        }
+    }
+
+    /**
+     * Rebalances and recomputes bounds/heights from index up to the root
+     */
+    private void refit(int index) {
+        while (index != NULL) {
+            index = balance(index);
+            int c1 = child1(index);
+            int c2 = child2(index);
+            setHeight(index, 1 + Math.max(height(c1), height(c2)));
+            setUnion(index, c1, c2);
+            index = parent(index);
+        }
+    }
+
+    /**
+     * Rotates a node's taller grandchild up if its children's heights differ by more than one
+     * @return The node now sitting where a was
+     */
+    private int balance(int a) {
+        if (child1(a) == NULL || height(a) < 2) {
+            return a;
+        }
+        int b = child1(a);
+        int c = child2(a);
+        int diff = height(c) - height(b);
+
+        if (diff > 1) {
+            // Rotate c up
+            int f = child1(c);
+            int g = child2(c);
+            setChild1(c, a);
+            setParent(c, parent(a));
+            setParent(a, c);
+            replaceChild(parent(c), a, c);
+            if (height(f) > height(g)) {
+                setChild2(c, f);
+                setChild2(a, g);
+                setParent(g, a);
+                setUnion(a, b, g);
+                setUnion(c, a, f);
+                setHeight(a, 1 + Math.max(height(b), height(g)));
+                setHeight(c, 1 + Math.max(height(a), height(f)));
+            } else {
+                setChild2(c, g);
+                setChild2(a, f);
+                setParent(f, a);
+                setUnion(a, b, f);
+                setUnion(c, a, g);
+                setHeight(a, 1 + Math.max(height(b), height(f)));
+                setHeight(c, 1 + Math.max(height(a), height(g)));
+            }
+            return c;
+        }
+
+        if (diff < -1) {
+            // Rotate b up
+            int d = child1(b);
+            int e = child2(b);
+            setChild1(b, a);
+            setParent(b, parent(a));
+            setParent(a, b);
+            replaceChild(parent(b), a, b);
+            if (height(d) > height(e)) {
+                setChild2(b, d);
+                setChild1(a, e);
+                setParent(e, a);
+                setUnion(a, c, e);
+                setUnion(b, a, d);
+                setHeight(a, 1 + Math.max(height(c), height(e)));
+                setHeight(b, 1 + Math.max(height(a), height(d)));
+            } else {
+                setChild2(b, e);
+                setChild1(a, d);
+                setParent(d, a);
+                setUnion(a, c, d);
+                setUnion(b, a, e);
+                setHeight(a, 1 + Math.max(height(c), height(d)));
+                setHeight(b, 1 + Math.max(height(a), height(e)));
+            }
+            return b;
+        }
+        return a;
+    }
+
+    private void replaceChild(int p, int oldChild, int newChild) {
+        if (p == NULL) {
+            root = newChild;
+        } else if (child1(p) == oldChild) {
+            setChild1(p, newChild);
+        } else {
+            setChild2(p, newChild);
+        }
+    }
+
+    private long descendCost(int child, int leaf) {
+        if (child1(child) == NULL) {
+            return unionPerimeter(child, leaf);
+        }
+        return unionPerimeter(child, leaf) - perimeter(child);
+    }
+
+    private long perimeter(int n) {
+        return 2L * ((long) maxX(n) - minX(n) + (long) maxY(n) - minY(n));
+    }
+
+    private long unionPerimeter(int a, int b) {
+        long w = (long) Math.max(maxX(a), maxX(b)) - Math.min(minX(a), minX(b));
+        long h = (long) Math.max(maxY(a), maxY(b)) - Math.min(minY(a), minY(b));
+        return 2L * (w + h);
+    }
+
+    private void setUnion(int target, int a, int b) {
+        setBounds(target, Math.min(minX(a), minX(b)), Math.min(minY(a), minY(b)),
+                Math.max(maxX(a), maxX(b)), Math.max(maxY(a), maxY(b)));
+    }
+
+    // Node field accessors (see bounds/links above)
+    private int minX(int n) {
+        return bounds[n * 4];
+    }
+
+    private int minY(int n) {
+        return bounds[n * 4 + 1];
+    }
+
+    private int maxX(int n) {
+        return bounds[n * 4 + 2];
+    }
+
+    private int maxY(int n) {
+        return bounds[n * 4 + 3];
+    }
+
+    private void setBounds(int n, int minX, int minY, int maxX, int maxY) {
+        bounds[n * 4] = minX;
+        bounds[n * 4 + 1] = minY;
+        bounds[n * 4 + 2] = maxX;
+        bounds[n * 4 + 3] = maxY;
+    }
+
+    private int parent(int n) {
+        return links[n * 4];
+    }
+
+    private int child1(int n) {
+        return links[n * 4 + 1];
+    }
+
+    private int child2(int n) {
+        return links[n * 4 + 2];
+    }
+
+    private int height(int n) {
+        return links[n * 4 + 3];
+    }
+
+    private void setParent(int n, int p) {
+        links[n * 4] = p;
+    }
+
+    private void setChild1(int n, int c) {
+        links[n * 4 + 1] = c;
+    }
+
+    private void setChild2(int n, int c) {
+        links[n * 4 + 2] = c;
+    }
+
+    private void setHeight(int n, int h) {
+        links[n * 4 + 3] = h;
+    }
+
+    private void allocateNodes(int capacity) {
+        bounds = new int[capacity * 4];
+        links = new int[capacity * 4];
+        boxes = new BoundingBox[capacity];
+        threadFreeList(0, capacity);
+        freeList = 0;
+        nodeCount = 0;
+    }
+
+    /**
+     * Puts nodes [from, to) on the free list (parent doubles as "next free")
+     */
+    private void threadFreeList(int from, int to) {
+        for (int i = from; i < to; i++) {
+            setParent(i, i + 1 < to ? i + 1 : NULL);
+            setHeight(i, -1);
+        }
+    }
+
+    private int allocateNode() {
+        if (freeList == NULL) {
+            int oldCapacity = boxes.length;
+            int newCapacity = oldCapacity * 2;
+            bounds = grow(bounds, newCapacity * 4);
+            links = grow(links, newCapacity * 4);
+            BoundingBox[] biggerBoxes = new BoundingBox[newCapacity];
+            System.arraycopy(boxes, 0, biggerBoxes, 0, oldCapacity);
+            boxes = biggerBoxes;
+            threadFreeList(oldCapacity, newCapacity);
+            freeList = oldCapacity;
+        }
+        int node = freeList;
+        freeList = parent(node);
+        setParent(node, NULL);
+        setChild1(node, NULL);
+        setChild2(node, NULL);
+        setHeight(node, 0);
+        boxes[node] = null;
+        nodeCount++;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        setParent(node, freeList);
+        setHeight(node, -1);
+        boxes[node] = null;
+        freeList = node;
+        nodeCount--;
+    }
+
+    private static int[] grow(int[] src, int newLength) {
+        int[] dst = new int[newLength];
+        System.arraycopy(src, 0, dst, 0, src.length);
+        return dst;
+    }
+}
@@ -0,0 +1,512 @@
+package Main;
+
+import java.util.Arrays;
+
+import Graphics.AnimationClips;
+import Graphics.DrawBuffer;
+import Graphics.Sprites;
+import timer.GameClock;
+
+/**
+ * Every entity's state in parallel primitive arrays instead of a little graph of objects per entity. Player and
+ * InteractibleObject are thin views that keep an entity ID into one of these.
+ * The arrays are kept packed: the live entities are slots 0 to size() - 1, and an ID is looked up to its slot
+ * (slotOf) by the accessors. So the systems (integrate, syncBounds, expireTimers, submitDraws) are plain loops
+ * straight down the arrays, with no gaps and no lookups (animate too). Destroying an entity moves the last one into its slot,
+ * so the order is creation order until something is destroyed. IDs of destroyed entities go on a free list and
+ * get reused.
+ * Timers work like stopWatchX (GameClock time, whole milliseconds), TIMER_COUNT of them per entity.
+ */
+public class EntityStore {
+    public static final int NO_ENTITY = -1;
+    // Flag bits
+    public static final int VISIBLE = 1;            // Drawn by submitDraws
+    public static final int MOVING = 1 << 1;        // Drawn interpolated from where it was at beginTick
+    private static final int BOUNDS_MOVED = 1 << 2; // Position changed since its box was last synced
+    public static final int FIRST_USER_FLAG = 1 << 8;   // Bits from here up are free for game code
+    public static final int TIMER_COUNT = 4;
+
+    // Components, by slot
+    private int[] xs, ys;
+    private int[] prevXs, prevYs;           // Position at the last beginTick
+    private int[] velocityXs, velocityYs;   // Added on by integrate every tick
+    private int[] boundsOffsetXs, boundsOffsetYs;   // Collision box corner relative to the position
+    private BoundingBox[] boxes;            // Collision box kept in step by integrate/syncBounds, null if none
+    private int[] drawOffsetXs, drawOffsetYs;       // Where the sprite is drawn relative to the position
+    private int[] spriteIds;
+    private int[] flags;
+    private int[] clipIds;                  // AnimationClips clip playing, NO_CLIP for none
+    private int[] clipStarts;               // When it started, GameClock.millis()
+    private long[] timerStarts;             // [slot * TIMER_COUNT + timer], GameClock nanos
+    private int[] timerMillis;
+    // Bookkeeping
+    private int[] idOf;                     // Slot -> ID
+    private int[] slotOf;                   // ID -> slot, -1 if the ID isn't live
+    private int count;                      // Live entities, which are slots 0 to count - 1
+    private int[] nextFree;                 // Free list through destroyed IDs
+    private int freeHead;
+    private int idCount;                    // IDs below this have been handed out at some point
+
+    public EntityStore() {
+        this(64);
+    }
+
+    /**
+     * @param capacity how many entities to make room for up front (it grows past that as needed)
+     */
+    public EntityStore(int capacity) {
+        if (capacity < 1) {
+            capacity = 1;
+        }
+        allocate(capacity);
+        slotOf = new int[capacity];
+        nextFree = new int[capacity];
+        freeHead = NO_ENTITY;
+    }
+
+    // Slot arrays; the ID arrays grow on their own in create() (there can be more IDs than slots, never fewer)
+    private void allocate(int capacity) {
+        xs = grow(xs, capacity);
+        ys = grow(ys, capacity);
+        prevXs = grow(prevXs, capacity);
+        prevYs = grow(prevYs, capacity);
+        velocityXs = grow(velocityXs, capacity);
+        velocityYs = grow(velocityYs, capacity);
+        boundsOffsetXs = grow(boundsOffsetXs, capacity);
+        boundsOffsetYs = grow(boundsOffsetYs, capacity);
+        boxes = boxes == null ? new BoundingBox[capacity] : Arrays.copyOf(boxes, capacity);
+        drawOffsetXs = grow(drawOffsetXs, capacity);
+        drawOffsetYs = grow(drawOffsetYs, capacity);
+        spriteIds = grow(spriteIds, capacity);
+        flags = grow(flags, capacity);
+        clipIds = grow(clipIds, capacity);
+        clipStarts = grow(clipStarts, capacity);
+        timerStarts = timerStarts == null ? new long[capacity * TIMER_COUNT] : Arrays.copyOf(timerStarts, capacity * TIMER_COUNT);
+        timerMillis = grow(timerMillis, capacity * TIMER_COUNT);
+        idOf = grow(idOf, capacity);
+    }
+
+    private static int[] grow(int[] a, int length) {
+        return a == null ? new int[length] : Arrays.copyOf(a, length);
+    }
+
+    /**
+     * @return the ID of a new visible entity at (x, y) with everything else zeroed and no sprite
+     */
+    public int create(int x, int y) {
+        int id;
+        if (freeHead != NO_ENTITY) {
+            id = freeHead;
+            freeHead = nextFree[id];
+        } else {
+            if (idCount == slotOf.length) {
+                slotOf = grow(slotOf, idCount * 2);
+                nextFree = grow(nextFree, idCount * 2);
+            }
+            id = idCount++;
+        }
+        if (count == xs.length) {
+            allocate(count * 2);
+        }
+        int slot = count++;
+        idOf[slot] = id;
+        slotOf[id] = slot;
+        xs[slot] = x;
+        ys[slot] = y;
+        prevXs[slot] = x;
+        prevYs[slot] = y;
+        velocityXs[slot] = 0;
+        velocityYs[slot] = 0;
+        boundsOffsetXs[slot] = 0;
+        boundsOffsetYs[slot] = 0;
+        boxes[slot] = null;
+        drawOffsetXs[slot] = 0;
+        drawOffsetYs[slot] = 0;
+        spriteIds[slot] = Sprites.NO_SPRITE;
+        flags[slot] = VISIBLE;
+        clipIds[slot] = AnimationClips.NO_CLIP;
+        clipStarts[slot] = 0;
+        long now = GameClock.nanoTime();
+        for (int t = 0; t < TIMER_COUNT; t++) {
+            timerStarts[slot * TIMER_COUNT + t] = now;
+            timerMillis[slot * TIMER_COUNT + t] = 0;
+        }
+        return id;
+    }
+
+    /**
+     * Frees id for reuse. Its collision box (if any) is left to whoever registered it.
+     */
+    public void destroy(int id) {
+        checkAlive(id);
+        int slot = slotOf[id];
+        int last = --count;
+        if (slot != last) {
+            moveSlot(last, slot);
+        }
+        boxes[last] = null;
+        slotOf[id] = -1;
+        nextFree[id] = freeHead;
+        freeHead = id;
+    }
+
+    private void moveSlot(int from, int to) {
+        xs[to] = xs[from];
+        ys[to] = ys[from];
+        prevXs[to] = prevXs[from];
+        prevYs[to] = prevYs[from];
+        velocityXs[to] = velocityXs[from];
+        velocityYs[to] = velocityYs[from];
+        boundsOffsetXs[to] = boundsOffsetXs[from];
+        boundsOffsetYs[to] = boundsOffsetYs[from];
+        boxes[to] = boxes[from];
+        drawOffsetXs[to] = drawOffsetXs[from];
+        drawOffsetYs[to] = drawOffsetYs[from];
+        spriteIds[to] = spriteIds[from];
+        flags[to] = flags[from];
+        clipIds[to] = clipIds[from];
+        clipStarts[to] = clipStarts[from];
+        System.arraycopy(timerStarts, from * TIMER_COUNT, timerStarts, to * TIMER_COUNT, TIMER_COUNT);
+        System.arraycopy(timerMillis, from * TIMER_COUNT, timerMillis, to * TIMER_COUNT, TIMER_COUNT);
+        int id = idOf[from];
+        idOf[to] = id;
+        slotOf[id] = to;
+    }
+
+    public boolean isAlive(int id) {
+        return id >= 0 && id < idCount && slotOf[id] >= 0;
+    }
+
+    private void checkAlive(int id) {
+        if (!isAlive(id)) {
+            throw new IllegalArgumentException("No entity " + id);
+        }
+    }
+
+    /**
+     * @return how many entities are alive
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param i 0 to size() - 1
+     * @return the i'th live entity's ID (for walking every entity)
+     */
+    public int getEntity(int i) {
+        return idOf[i];
+    }
+
+    // Position
+
+    public int getX(int id) {
+        return xs[slotOf[id]];
+    }
+
+    public int getY(int id) {
+        return ys[slotOf[id]];
+    }
+
+    public int getPrevX(int id) {
+        return prevXs[slotOf[id]];
+    }
+
+    public int getPrevY(int id) {
+        return prevYs[slotOf[id]];
+    }
+
+    public void setPosition(int id, int x, int y) {
+        int slot = slotOf[id];
+        if (xs[slot] != x || ys[slot] != y) {
+            xs[slot] = x;
+            ys[slot] = y;
+            flags[slot] |= BOUNDS_MOVED;
+        }
+    }
+
+    public void move(int id, int dx, int dy) {
+        int slot = slotOf[id];
+        setPosition(id, xs[slot] + dx, ys[slot] + dy);
+    }
+
+    public int getVelocityX(int id) {
+        return velocityXs[slotOf[id]];
+    }
+
+    public int getVelocityY(int id) {
+        return velocityYs[slotOf[id]];
+    }
+
+    public void setVelocity(int id, int vx, int vy) {
+        int slot = slotOf[id];
+        velocityXs[slot] = vx;
+        velocityYs[slot] = vy;
+    }
+
+    // Collision box
+
+    /**
+     * Keeps box at (x + offsetX, y + offsetY) from now on (see syncBounds)
+     */
+    public void setBounds(int id, BoundingBox box, int offsetX, int offsetY) {
+        int slot = slotOf[id];
+        boxes[slot] = box;
+        boundsOffsetXs[slot] = offsetX;
+        boundsOffsetYs[slot] = offsetY;
+    }
+
+    public BoundingBox getBoundingBox(int id) {
+        return boxes[slotOf[id]];
+    }
+
+    public int getBoundsOffsetX(int id) {
+        return boundsOffsetXs[slotOf[id]];
+    }
+
+    public int getBoundsOffsetY(int id) {
+        return boundsOffsetYs[slotOf[id]];
+    }
+
+    // Drawing
+
+    public int getSpriteId(int id) {
+        return spriteIds[slotOf[id]];
+    }
+
+    public void setSpriteId(int id, int spriteId) {
+        spriteIds[slotOf[id]] = spriteId;
+    }
+
+    public void setDrawOffset(int id, int offsetX, int offsetY) {
+        int slot = slotOf[id];
+        drawOffsetXs[slot] = offsetX;
+        drawOffsetYs[slot] = offsetY;
+    }
+
+    // Flags
+
+    public boolean hasFlag(int id, int flag) {
+        return (flags[slotOf[id]] & flag) != 0;
+    }
+
+    public void setFlag(int id, int flag, boolean isOn) {
+        if (isOn) {
+            flags[slotOf[id]] |= flag;
+        } else {
+            flags[slotOf[id]] &= ~flag;
+        }
+    }
+
+    // Animation (which clip is playing and since when; animate works out the frame)
+
+    /**
+     * Plays clip (an AnimationClips ID, or NO_CLIP to stop animating and keep the sprite) as if it had started at
+     * startMillis (GameClock.millis())
+     */
+    public void playClip(int id, int clip, int startMillis) {
+        int slot = slotOf[id];
+        clipIds[slot] = clip;
+        clipStarts[slot] = startMillis;
+    }
+
+    public int getClip(int id) {
+        return clipIds[slotOf[id]];
+    }
+
+    public int getClipStart(int id) {
+        return clipStarts[slotOf[id]];
+    }
+
+    // Timers
+
+    /**
+     * Starts timer number timer (0 to TIMER_COUNT - 1) of id, running for millis from now
+     */
+    public void startTimer(int id, int timer, int millis) {
+        int i = slotOf[id] * TIMER_COUNT + timer;
+        timerMillis[i] = millis;
+        timerStarts[i] = GameClock.nanoTime();
+    }
+
+    public void resetTimer(int id, int timer) {
+        timerStarts[slotOf[id] * TIMER_COUNT + timer] = GameClock.nanoTime();
+    }
+
+    public boolean isTimeUp(int id, int timer) {
+        return isTimeUp(slotOf[id] * TIMER_COUNT + timer, GameClock.nanoTime());
+    }
+
+    // Same arithmetic as stopWatchX.isTimeUp, so a timer moved in here expires on exactly the same tick
+    private boolean isTimeUp(int i, long now) {
+        int currentMillis = (int) (now / 1000000);
+        int startMillis = (int) (timerStarts[i] / 1000000);
+        return currentMillis - startMillis >= timerMillis[i];
+    }
+
+    // Systems (each one a single pass down the slots)
+
+    /**
+     * Remembers every position as the previous one, for drawing MOVING entities in between ticks. Call at the
+     * start of each tick.
+     */
+    public void beginTick() {
+        System.arraycopy(xs, 0, prevXs, 0, count);
+        System.arraycopy(ys, 0, prevYs, 0, count);
+    }
+
+    /**
+     * Moves every entity by its velocity, and the collision box of everything that moved (by velocity or by
+     * setPosition) along with it, in the same pass rather than leaving it to syncBounds to find again
+     */
+    public void integrate() {
+        for (int slot = 0; slot < count; slot++) {
+            int vx = velocityXs[slot];
+            int vy = velocityYs[slot];
+            if ((vx | vy) != 0) {
+                xs[slot] += vx;
+                ys[slot] += vy;
+            } else if ((flags[slot] & BOUNDS_MOVED) == 0) {
+                continue;
+            }
+            syncSlot(slot);
+        }
+    }
+
+    /**
+     * integrate() and syncBounds() for slots from to to - 1 only, leaving the boxes alone: the slots whose box has
+     * to move are written to moved (which needs room for to - from) for syncSlots to do afterwards on one thread.
+     * Moving a box can re-bucket it in the collision manager, which isn't safe to do from several threads at once,
+     * but this is, as long as nothing else touches these slots meanwhile.
+     * @return how many slots were written to moved
+     */
+    public int integrate(int from, int to, int[] moved) {
+        int n = 0;
+        for (int slot = from; slot < to; slot++) {
+            int vx = velocityXs[slot];
+            int vy = velocityYs[slot];
+            if ((vx | vy) != 0) {
+                xs[slot] += vx;
+                ys[slot] += vy;
+            } else if ((flags[slot] & BOUNDS_MOVED) == 0) {
+                continue;
+            }
+            flags[slot] &= ~BOUNDS_MOVED;
+            if (boxes[slot] != null) {
+                moved[n++] = slot;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Moves the boxes of the first count slots in slots (from integrate(from, to, moved)) to match their entities
+     */
+    public void syncSlots(int[] slots, int count) {
+        for (int i = 0; i < count; i++) {
+            syncSlot(slots[i]);
+        }
+    }
+
+    /**
+     * Moves the collision box of every entity that was moved (setPosition, move) since the last sync to match its
+     * position
+     */
+    public void syncBounds() {
+        for (int slot = 0; slot < count; slot++) {
+            if ((flags[slot] & BOUNDS_MOVED) != 0) {
+                syncSlot(slot);
+            }
+        }
+    }
+
+    /**
+     * The same for one entity, whether it moved or not
+     */
+    public void syncBounds(int id) {
+        syncSlot(slotOf[id]);
+    }
+
+    private void syncSlot(int slot) {
+        flags[slot] &= ~BOUNDS_MOVED;
+        BoundingBox box = boxes[slot];
+        if (box != null) {
+            box.updatePosition(xs[slot] + boundsOffsetXs[slot], ys[slot] + boundsOffsetYs[slot]);
+        }
+    }
+
+    /**
+     * Clears flag on id if it has it and its timer has run out, as of now (GameClock nanos)
+     * @return whether id still has flag
+     */
+    public boolean expireTimer(int id, int timer, int flag, long now) {
+        int slot = slotOf[id];
+        if ((flags[slot] & flag) == 0) {
+            return false;
+        }
+        if (isTimeUp(slot * TIMER_COUNT + timer, now)) {
+            flags[slot] &= ~flag;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Clears flag on every entity that has it and whose timer has run out (e.g. text that's been shown long enough)
+     */
+    public void expireTimers(int timer, int flag) {
+        long now = GameClock.nanoTime();
+        for (int slot = 0; slot < count; slot++) {
+            if ((flags[slot] & flag) != 0 && isTimeUp(slot * TIMER_COUNT + timer, now)) {
+                flags[slot] &= ~flag;
+            }
+        }
+    }
+
+    /**
+     * Sets every animated entity's sprite to its clip's frame at nowMillis (GameClock.millis())
+     */
+    public void animate(AnimationClips clips, int nowMillis) {
+        animate(clips, nowMillis, 0, count);
+    }
+
+    /**
+     * The same for slots from to to - 1 only
+     */
+    public void animate(AnimationClips clips, int nowMillis, int from, int to) {
+        for (int slot = from; slot < to; slot++) {
+            int clip = clipIds[slot];
+            if (clip != AnimationClips.NO_CLIP) {
+                spriteIds[slot] = clips.spriteAt(clip, nowMillis - clipStarts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Adds a draw command for every visible entity that has a sprite, in slot order. MOVING entities get their
+     * previous position too, so frames between ticks are interpolated.
+     */
+    public void submitDraws(DrawBuffer draws) {
+        submitDraws(draws, 0, count);
+    }
+
+    /**
+     * The same for slots from to to - 1 only
+     */
+    public void submitDraws(DrawBuffer draws, int from, int to) {
+        for (int slot = from; slot < to; slot++) {
+            int f = flags[slot];
+            int spriteId = spriteIds[slot];
+            if ((f & VISIBLE) == 0 || spriteId < 0) {
+                continue;
+            }
+            int x = xs[slot] + drawOffsetXs[slot];
+            int y = ys[slot] + drawOffsetYs[slot];
+            if ((f & MOVING) != 0) {
+                draws.add(spriteId, x, y, prevXs[slot] + drawOffsetXs[slot], prevYs[slot] + drawOffsetYs[slot], 0);
+            } else {
+                draws.add(spriteId, x, y, x, y, 0);
+            }
+        }
+    }
+}
@@ -2,15 +2,24 @@ package Main;
 
 import Data.Vector2D;
 import Data.spriteInfo;
-import timer.stopWatchX;
+import Graphics.Sprites;
 import java.awt.Color;
 import logic.Control;
 
+/**
+ * A view of one entity in an EntityStore. The position, bounding box, sprite ID, text timer and the active and
+ * showing-text states live in the store (active is whether it's VISIBLE); this keeps the text and settings.
+ */
 public class InteractibleObject {
-    // Position using Vector2D
-    private Vector2D position;
+    // Store flag set while the text is showing, and the timer slot that times it
+    public static final int SHOWING_TEXT = EntityStore.FIRST_USER_FLAG;
+    public static final int TEXT_TIMER = 0;
+
+    // The entity this is a view of
+    private final EntityStore store;
+    private final int entity;
     
-    // Sprite information
+    // Sprite information (the tag; the ID and coordinates are copied in from the store)
     private spriteInfo sprite;
     
     // Collision detection
@@ -19,13 +28,6 @@ public class InteractibleObject {
     // Text to display when interacted with
     private String interactionText;
     
-    // Whether the object is still active
-    private boolean active;
-    
-    // Timer for displaying the text
-    private stopWatchX textDisplayTimer;
-    private boolean showingText;
-    
     // How long to show the text
     private static final int TEXT_DISPLAY_TIME = 3000;
 
@@ -53,7 +55,7 @@ public class InteractibleObject {
     }
     
     /**
-     * Creates a new interactible object with bounding box offsets
+     * Creates a new interactible object with bounding box offsets, in the game's entity store (Main.getEntities)
      * 
      * @param x The x position
      * @param y The y position
@@ -67,15 +69,38 @@ public class InteractibleObject {
      * @param offsetY The y offset for the bounding box relative to the sprite position
      */
     public InteractibleObject(int x, int y, int width, int height, String id, String text, String tag, boolean disappearOnInteract, int offsetX, int offsetY) {
-        this.position = new Vector2D(x, y);
-        this.sprite = new spriteInfo(position, tag);
+        this(Main.getEntities(), x, y, width, height, id, text, tag, disappearOnInteract, offsetX, offsetY);
+    }
+    
+    /**
+     * Creates a new interactible object with bounding box offsets in the given store
+     * 
+     * @param store The store to create the object's entity in
+     * @param x The x position
+     * @param y The y position
+     * @param width The width of the hitbox
+     * @param height The height of the hitbox
+     * @param id The unique identifier for this object
+     * @param text The text to display when interacted with
+     * @param tag The sprite tag to use for this object
+     * @param disappearOnInteract Whether this object should disappear after interaction
+     * @param offsetX The x offset for the bounding box relative to the sprite position
+     * @param offsetY The y offset for the bounding box relative to the sprite position
+     */
+    public InteractibleObject(EntityStore store, int x, int y, int width, int height, String id, String text, String tag, boolean disappearOnInteract, int offsetX, int offsetY) {
+        this.store = store;
+        this.entity = store.create(x, y);
+        this.sprite = new spriteInfo(new Vector2D(x, y), tag);
         this.offsetX = offsetX;
         this.offsetY = offsetY;
         this.boundingBox = new BoundingBox(x + offsetX, y + offsetY, width, height, "interactible_" + id);
+        this.boundingBox.setLayer(Main.LAYER_PICKUP);
+        this.boundingBox.setMask(Main.LAYER_PLAYER);
+        store.setBounds(entity, boundingBox, offsetX, offsetY);
+        // Drawn centered on the bounding box
+        store.setDrawOffset(entity, width / 2, height / 2);
         this.interactionText = text;
-        this.active = true;
-        this.showingText = false;
-        this.textDisplayTimer = new stopWatchX(TEXT_DISPLAY_TIME);
+        store.startTimer(entity, TEXT_TIMER, TEXT_DISPLAY_TIME);
         this.disappearOnInteract = disappearOnInteract;
     }
     
@@ -86,7 +111,7 @@ public class InteractibleObject {
      * @return true if the player can interact with this object
      */
     public boolean canInteract(Player player) {
-        if (!active) {
+        if (!isActive()) {
             return false; // Can't interact if the object is not active
         }
         
@@ -111,8 +136,8 @@ public class InteractibleObject {
         
         int playerX = player.getX();
         int playerY = player.getY();
-        int objectX = this.position.getX();
-        int objectY = this.position.getY();
+        int objectX = getX();
+        int objectY = getY();
         
         // Calculate distance between player and object
         int distanceX = Math.abs(playerX - objectX);
@@ -130,8 +155,8 @@ public class InteractibleObject {
     private boolean isPlayerFacing(Player player) {
         int playerX = player.getX();
         int playerY = player.getY();
-        int objectX = this.position.getX();
-        int objectY = this.position.getY();
+        int objectX = getX();
+        int objectY = getY();
         
         // Check player direction (0=down, 1=left, 2=right, 3=up)
         switch (player.dir) {
@@ -158,51 +183,85 @@ public class InteractibleObject {
      * @return The text to display
      */
     public String interact() {
-        if (!active) {
+        if (!isActive()) {
             return ""; // Can't interact if the object is not active
         }
         
         // Deactivate the object (make it disappear) only if it should disappear on interact
         if (disappearOnInteract) {
-            this.active = false;
+            store.setFlag(entity, EntityStore.VISIBLE, false);
             this.boundingBox.setActive(false);
         }
         
         // Start showing the text
-        this.showingText = true;
-        this.textDisplayTimer.resetWatch();
+        store.setFlag(entity, SHOWING_TEXT, true);
+        store.resetTimer(entity, TEXT_TIMER);
         
         return this.interactionText;
     }
     
     /**
-     * Updates the object's state and draws it if needed
+     * Looks up the sprite ID for this object's tag once so drawing doesn't need the tag string
+     * 
+     * @param ctrl The Control that owns the loaded sprites
+     */
+    public void resolveSprite(Control ctrl) {
+        store.setSpriteId(entity, ctrl.getSpriteId(sprite.getTag()));
+    }
+    
+    /**
+     * Updates the object's state and draws it if needed. (Main does the same for every object at once with the
+     * store's systems: expireTimers, drawText and submitDraws.)
      * 
      * @param ctrl The Control object for rendering
      * @return true if the text is still being displayed
      */
     public boolean update(Control ctrl) {
         // Check if text display timer is up
-        if (showingText && textDisplayTimer.isTimeUp()) {
-            showingText = false;
+        if (isShowingText() && store.isTimeUp(entity, TEXT_TIMER)) {
+            store.setFlag(entity, SHOWING_TEXT, false);
         }
         
         // Draw the object if it's active
-        if (active) {
+        if (isActive()) {
             // Calculate the center position of the bounding box
             int centerX = boundingBox.getX() + boundingBox.getWidth() / 2 - offsetX;
             int centerY = boundingBox.getY() + boundingBox.getHeight() / 2 - offsetY;
             
             // Draw the sprite centered on the bounding box
-            ctrl.addSpriteToFrontBuffer(centerX, centerY, sprite.getTag());
+            if (store.getSpriteId(entity) == Sprites.NO_SPRITE) {
+                resolveSprite(ctrl);
+            }
+            ctrl.addSpriteToFrontBuffer(centerX, centerY, store.getSpriteId(entity));
         }
         
-        // Draw the text if we're showing it
-        if (showingText) {
-            ctrl.drawString(position.getX(), position.getY() - 20, interactionText, Color.yellow);
+        return drawText(ctrl);
+    }
+    
+    /**
+     * Draws the text above the object if it's showing
+     * 
+     * @param ctrl The Control object for rendering
+     * @return true if the text is being displayed
+     */
+    public boolean drawText(Control ctrl) {
+        return drawText(ctrl, getX(), getY());
+    }
+    
+    /**
+     * Draws the text above (x, y) if it's showing, e.g. where the object was before it moved this tick
+     * 
+     * @param ctrl The Control object for rendering
+     * @param x
+     * @param y
+     * @return true if the text is being displayed
+     */
+    public boolean drawText(Control ctrl, int x, int y) {
+        if (!isShowingText()) {
+            return false;
         }
-        
-        return showingText;
+        ctrl.drawString(x, y - 20, interactionText, Color.yellow);
+        return true;
     }
     
     /**
@@ -224,23 +283,33 @@ public class InteractibleObject {
      * Getters and Setters
      */
     public int getX() {
-        return position.getX();
+        return store.getX(entity);
     }
     
     public int getY() {
-        return position.getY();
+        return store.getY(entity);
     }
     
     public spriteInfo getSpriteInfo() {
+        sprite.setCoords(getX(), getY());
+        sprite.setSpriteId(store.getSpriteId(entity));
         return sprite;
     }
     
+    public EntityStore getStore() {
+        return store;
+    }
+    
+    public int getEntity() {
+        return entity;
+    }
+    
     public boolean isActive() {
-        return active;
+        return store.hasFlag(entity, EntityStore.VISIBLE);
     }
     
     public boolean isShowingText() {
-        return showingText;
+        return store.hasFlag(entity, SHOWING_TEXT);
     }
     
     public String getInteractionText() {
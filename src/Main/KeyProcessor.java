@@ -2,15 +2,12 @@
 
 package Main;
 
-import logic.Control;
-import timer.stopWatchX;
+import java.awt.event.KeyEvent;
+
+import Input.Keyb;
 
 public class KeyProcessor{
-	// Static Fields
-	private static char last = ' ';			// For debouncing purposes
-	private static stopWatchX sw = new stopWatchX(250);
-	
-	// Key state tracking for movement
+	// Key state tracking for movement (any number of these can be down at once)
 	private static boolean wKeyDown = false;
 	private static boolean aKeyDown = false;
 	private static boolean sKeyDown = false;
@@ -18,69 +15,24 @@ public class KeyProcessor{
 	private static boolean spaceKeyDown = false;
 	
 	// Static Method(s)
-	public static void processKey(char key){
-		// Debounce routine below...
-		if(key == last)
-			if(sw.isTimeUp() == false) return;
-		last = key;
-		sw.resetWatch();
-		
+	/* Called once per tick, right after kb.poll(). No debounce needed: wasPressed is only true on the tick a key went down. */
+	public static void processInput(Keyb kb){
 		/* TODO: You can modify values below here! */
-		switch(key){
-			case '%':								// ESC key
-				System.exit(0);
-				break;
-
-			case '$':								// Space key
-				spaceKeyDown = true;
-				Main.trigger = "space is pressed";
-				break;
-
-			case 'a':
-				aKeyDown = true;
-				Main.trigger = "a is pressed";
-				break;
-				
-			case 'A': // Key released
-				aKeyDown = false;
-				break;
-
-			case 'w':
-				wKeyDown = true;
-				Main.trigger = "w is pressed";
-				break;
-				
-			case 'W': // Key released
-				wKeyDown = false;
-				break;
-
-			case 's':
-				sKeyDown = true;
-				Main.trigger = "s is pressed";
-				break;
-				
-			case 'S': // Key released
-				sKeyDown = false;
-				break;
-
-			case 'd':
-				dKeyDown = true;
-				Main.trigger = "d is pressed";
-				break;
-				
-			case 'D': // Key released
-				dKeyDown = false;
-				break;
-				
-			case ' ': // No key pressed - reset all key states
-				wKeyDown = false;
-				aKeyDown = false;
-				sKeyDown = false;
-				dKeyDown = false;
-				spaceKeyDown = false;
-				Main.trigger = "";
-				break;
-		}
+		if(kb.wasPressed(KeyEvent.VK_ESCAPE))
+			System.exit(0);
+
+		wKeyDown = kb.isHeld(KeyEvent.VK_W);
+		aKeyDown = kb.isHeld(KeyEvent.VK_A);
+		sKeyDown = kb.isHeld(KeyEvent.VK_S);
+		dKeyDown = kb.isHeld(KeyEvent.VK_D);
+		spaceKeyDown = kb.isHeld(KeyEvent.VK_SPACE);
+
+		if(kb.wasPressed(KeyEvent.VK_SPACE))		Main.trigger = "space is pressed";		// Even if it was let go again before this tick
+		else if(kb.wasPressed(KeyEvent.VK_A))		Main.trigger = "a is pressed";
+		else if(kb.wasPressed(KeyEvent.VK_W))		Main.trigger = "w is pressed";
+		else if(kb.wasPressed(KeyEvent.VK_S))		Main.trigger = "s is pressed";
+		else if(kb.wasPressed(KeyEvent.VK_D))		Main.trigger = "d is pressed";
+		else if(!kb.isAnyHeld())					Main.trigger = "";
 	}
 	
 	// Getter methods for key states
@@ -2,7 +2,11 @@ package Main;
 
 import java.awt.*;
 import java.util.ArrayList;
+import Graphics.Sprites;
+import gameloop.SceneLayers;
 import logic.Control;
+import timer.FrameProfiler;
+import timer.GameClock;
 
 /**
  * Bounding boxes class is called BoundingBoxes
@@ -10,7 +14,8 @@ import logic.Control;
  * Collisions are handled by CollisionManager
  * Interactables (I know I spelled it wrong in the program, but I was too deep into it already) have their own class
  * Interactables are held in an ArrayList in Main
- * Player class handles synchronisation between movement and animation (this is where you can find the ArrayList for the animation sprites)
+ * The player's and the interactables' state lives in Main's EntityStore; those classes are views into it
+ * Player class handles synchronisation between movement and animation (it picks which clip from Anim.txt to play)
  * I enjoyed your class thanks for the great semester! :)
  */
 public class Main{
@@ -23,18 +28,33 @@ public class Main{
 	public static final int PLAYER_SPEED = 5;
 	// Collision system
 	public static CollisionManager collisionManager;
+	// Collision layers (bits for BoundingBox.setLayer/setMask). Walls and pickups never test against each other.
+	public static final int LAYER_WALL = 1;
+	public static final int LAYER_PLAYER = 2;
+	public static final int LAYER_PICKUP = 4;
 	// Interactible objects
 	public static ArrayList<InteractibleObject> interactibleObjects;
+	// Every entity's position, box, sprite and timers (Player and InteractibleObject are views into it)
+	private static EntityStore entities;
+	// Spreads the entity updates over several threads (-Dgame.updateThreads), null to do them here
+	private static final ParallelUpdate parallelUpdate = ParallelUpdate.fromSystemProperties();
+	// Sprite IDs resolved once from their tags (see resolveSprites)
+	private static int backgroundSpriteId = Sprites.NO_SPRITE;
+	private static int defaultPlayerSpriteId = Sprites.NO_SPRITE;
 	// End Static fields...
 
 	public static void main(String[] args) {
 		Control ctrl = new Control();			// Do NOT remove!
 		start();							// Initialize game objects
+		resolveSprites(ctrl);				// Turn sprite tags into IDs before the first frame
 		ctrl.gameLoop();					// Do NOT remove!
 	}
 
 	/* This is your access to things BEFORE the game loop starts */
 	public static void start(){
+		// A fresh store for this game's entities
+		entities = new EntityStore();
+
 		// Initialize the player in the middle of the screen
 		player = new Player(SCREEN_WIDTH/2, SCREEN_HEIGHT/2, PLAYER_SPEED);
 		
@@ -51,6 +71,25 @@ public class Main{
 		createInteractibleObjects();
 	}
 
+	/* The store entities are created in by default (made on first use if start() hasn't run) */
+	public static EntityStore getEntities(){
+		if(entities == null)		entities = new EntityStore();
+		return entities;
+	}
+
+	/* Look up every sprite tag the game draws once, so update() only ever draws by ID */
+	public static void resolveSprites(Control ctrl) {
+		backgroundSpriteId = ctrl.getSpriteId("BG");
+		// The background never changes, so it goes on the static layer once and is only blitted after that
+		ctrl.clearSceneLayer(SceneLayers.BACKGROUND);
+		ctrl.addSpriteToSceneLayer(SceneLayers.BACKGROUND, 0, 0, backgroundSpriteId);
+		defaultPlayerSpriteId = ctrl.getSpriteId("f1");
+		player.resolveSprites(ctrl);
+		for (InteractibleObject obj : interactibleObjects) {
+			obj.resolveSprite(ctrl);
+		}
+	}
+
 	/* Methods used for start */
 
 	private static void createBoxes() {
@@ -64,16 +103,22 @@ public class Main{
 		// Right boundary
 		BoundingBox rightBoundary = new BoundingBox(SCREEN_WIDTH - 140, -100, 20, SCREEN_HEIGHT + 200, "boundary_right");
 
-		// Add boxes to the collision manager
-		collisionManager.addBoundingBox(topBoundary);
-		collisionManager.addBoundingBox(bottomBoundary);
-		collisionManager.addBoundingBox(leftBoundary);
-		collisionManager.addBoundingBox(rightBoundary);
+		// Add boxes to the collision manager (they never move, so they go in as static walls)
+		addWall(topBoundary);
+		addWall(bottomBoundary);
+		addWall(leftBoundary);
+		addWall(rightBoundary);
 
 		// Add the player's bounding box to the collision manager
 		collisionManager.addBoundingBox(player.boundingBox);
 	}
 	
+	private static void addWall(BoundingBox wall) {
+		wall.setLayer(LAYER_WALL);
+		wall.setMask(LAYER_PLAYER);
+		collisionManager.addStaticBoundingBox(wall);
+	}
+	
 	private static void createInteractibleObjects() {
 		// Create some example interactible objects
 		// Parameters: x, y, width, height, id, text, tag, disappearOnInteract, offsetX, offsetY
@@ -82,9 +127,9 @@ public class Main{
 		// Create door with offset bounding box (10 pixels to the right, 5 pixels down)
 		InteractibleObject door = new InteractibleObject(600, 500, 70, 70, "door", "The key doesn't work", "IN2", false, 15, -5);
 
-		// Add their bounding boxes to the collision manager
-		collisionManager.addBoundingBox(key.boundingBox);
-		collisionManager.addBoundingBox(door.boundingBox);
+		// Add their bounding boxes to the collision manager (they don't move either)
+		collisionManager.addStaticBoundingBox(key.boundingBox);
+		collisionManager.addStaticBoundingBox(door.boundingBox);
 		
 		// Add them to our list
 		interactibleObjects.add(key);
@@ -93,14 +138,22 @@ public class Main{
 
 	/* This is your access to the "game loop" (It is a "callback" method from the Control class (do NOT modify that class!))*/
 	public static void update(Control ctrl) {
-		// Draw the background first
-		ctrl.addSpriteToFrontBuffer(0, 0, "BG");
+		// Sprites haven't been resolved yet (e.g. update called without going through main)
+		if (backgroundSpriteId == Sprites.NO_SPRITE) {
+			resolveSprites(ctrl);
+		}
 
 		// Print Message
 		ctrl.drawString(30, 40, "Oh No! You have found yourself trapped in a cell!", Color.white);
 		ctrl.drawString(30, 60, "How will you escape?", Color.white);
 
+		FrameProfiler profiler = ctrl.getProfiler();	// Times the parts of this method (F2 shows them)
+
+		// Where everything is now is where it was last tick, for drawing in between
+		entities.beginTick();
+
 		// Handle player movement with WASD keys
+		profiler.begin(FrameProfiler.MOVEMENT);
 		boolean moved = false;
 		int dx = 0, dy = 0;
 
@@ -138,17 +191,18 @@ public class Main{
 
 		// Update the player's bounding box position
 		player.updateBoundingBox();
+		profiler.end(FrameProfiler.MOVEMENT);
 
-		// Check for collisions with obstacles
-		ArrayList<BoundingBox> collisions = collisionManager.getAllCollisions(player.boundingBox);
-
+		// Check for collisions with obstacles (we only need to know if there is one, not which)
 		// If there's a collision, revert to the old position
-		if (!collisions.isEmpty()) {
+		profiler.begin(FrameProfiler.COLLISION);
+		if (collisionManager.hasAnyCollision(player.boundingBox)) {
 			// Revert position
 			player.setX(oldX);
 			player.setY(oldY);
 			player.updateBoundingBox();
 		}
+		profiler.end(FrameProfiler.COLLISION);
 		
 		// Check for spacebar interaction
 		boolean spacePressed = trigger.equals("space is pressed");
@@ -159,20 +213,33 @@ public class Main{
 		// Update player animation based on movement
 		player.updateAnimation(moved);
 
-		// Draw the player with the current sprite
-		try {
-			ctrl.addSpriteToFrontBuffer(player.getX(), player.getY(), player.getSpriteInfo().getTag());
-		} catch (Exception e) {
+		// The player is drawn with its current sprite below (with everything else in the store)
+		if (player.getSpriteId() == Sprites.NO_SPRITE) {
 			// If there's an error with the sprite, use the default one
-			ctrl.addSpriteToFrontBuffer(player.getX(), player.getY(), "f1");
+			player.setSpriteId(defaultPlayerSpriteId);
 		}
 		
-		// Update and handle interactions with all interactible objects
-		for (InteractibleObject obj : interactibleObjects) {
-			// Handle interaction if space was pressed
-			obj.handleInteraction(player, spacePressed);
-			// Update and draw the object
-			obj.update(ctrl);
+		// Handle interactions with all interactible objects, move and draw everything
+		profiler.begin(FrameProfiler.INTERACTIONS);
+		if (parallelUpdate != null) {
+			// The same as below, on several threads
+			parallelUpdate.run(ctrl, entities, interactibleObjects, player, spacePressed);
+		} else {
+			for (InteractibleObject obj : interactibleObjects) {
+				// Handle interaction if space was pressed
+				obj.handleInteraction(player, spacePressed);
+			}
+			// Stop showing text that's been up long enough, then draw what's left
+			entities.expireTimers(InteractibleObject.TEXT_TIMER, InteractibleObject.SHOWING_TEXT);
+			for (InteractibleObject obj : interactibleObjects) {
+				obj.drawText(ctrl);
+			}
+			// Move whatever has a velocity (and its box), and put every animated entity on its clip's current frame
+			entities.integrate();
+			entities.animate(ctrl.getAnimationClips(), GameClock.millis());
+			// Draw every visible entity (the player and the active objects) in one pass over the store
+			ctrl.addEntitiesToFrontBuffer(entities);
 		}
+		profiler.end(FrameProfiler.INTERACTIONS);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,217 @@
+package Main;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import Graphics.AnimationClips;
+import Graphics.DrawBuffer;
+import logic.Control;
+import timer.GameClock;
+
+/**
+ * The entity part of Main.update (interactions, text timers, movement, draw submission) spread over a fork/join
+ * pool, giving the same result as doing it on one thread.
+ * It runs in two rounds, each split into chunks of consecutive entities, one task per chunk:
+ * - interactions: each interactible object handles the space bar and times out its own text. It only reads the
+ *   player and writes its own state.
+ * - systems: each chunk of store slots is moved by velocity, put on its animation frame and has its draw commands
+ *   collected.
+ * Anything that touches shared structures is kept per chunk instead and merged on the calling thread afterwards,
+ * chunk by chunk in order: collision boxes to move (moving one can re-bucket it in the CollisionManager), text to
+ * show and draw commands. So everything ends up in the same order as the serial loop would put it in.
+ * -Dgame.updateThreads=n turns it on (0 = one per core), -Dgame.updateChunk sets the smallest chunk.
+ */
+public class ParallelUpdate {
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+    private static final int CHUNKS_PER_THREAD = 4;     // A few each, so a slow chunk doesn't hold everyone up
+
+    private final ForkJoinPool pool;
+    private final int threads;
+    private final int chunkSize;
+    private Chunk[] chunks;
+    private int chunkCount;
+    private final RecursiveAction runChunks;
+
+    // This tick's input, for the workers (written before the pool is started, so they see it)
+    private EntityStore store;
+    private List<InteractibleObject> objects;
+    private Player player;
+    private boolean spacePressed;
+    private long now;
+    private AnimationClips clips;
+    private int nowMillis;
+    private boolean isSystemsRound;
+
+    /**
+     * @param threads How many worker threads
+     * @param chunkSize The fewest entities in a chunk (smaller scenes are done in fewer chunks, or one)
+     */
+    public ParallelUpdate(int threads, int chunkSize) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least 1 thread");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunks need at least 1 entity");
+        }
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        pool = new ForkJoinPool(threads);
+        chunks = new Chunk[0];
+        runChunks = new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(chunks);
+            }
+        };
+    }
+
+    /**
+     * @return null (update on one thread) unless -Dgame.updateThreads is 0 or more than 1
+     */
+    public static ParallelUpdate fromSystemProperties() {
+        int threads = Integer.getInteger("game.updateThreads", 1);
+        if (threads == 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        if (threads <= 1) {
+            return null;
+        }
+        return new ParallelUpdate(threads, Integer.getInteger("game.updateChunk", DEFAULT_CHUNK_SIZE));
+    }
+
+    /**
+     * Handles the space bar for every object in objects, times out their text, moves and animates everything in
+     * store and draws it, like the serial loop in Main.update
+     */
+    public void run(Control ctrl, EntityStore store, List<InteractibleObject> objects, Player player, boolean spacePressed) {
+        this.store = store;
+        this.objects = objects;
+        this.player = player;
+        this.spacePressed = spacePressed;
+        this.now = GameClock.nanoTime();
+        this.clips = ctrl.getAnimationClips();
+        this.nowMillis = GameClock.millis();
+        split(objects.size(), store.size());
+
+        isSystemsRound = false;
+        runRound();
+        isSystemsRound = true;
+        runRound();
+
+        // Merge, in chunk order
+        for (int c = 0; c < chunkCount; c++) {
+            store.syncSlots(chunks[c].moved, chunks[c].movedCount);
+        }
+        for (int c = 0; c < chunkCount; c++) {
+            Chunk chunk = chunks[c];
+            for (int i = 0; i < chunk.textCount; i++) {
+                objects.get(chunk.texts[i]).drawText(ctrl, chunk.textXs[i], chunk.textYs[i]);
+            }
+        }
+        for (int c = 0; c < chunkCount; c++) {
+            ctrl.addDrawsToFrontBuffer(chunks[c].draws);
+        }
+        this.objects = null;
+        this.player = null;
+    }
+
+    private void runRound() {
+        if (chunkCount == 1) {
+            chunks[0].compute();                // Not worth waking the pool for
+            return;
+        }
+        runChunks.reinitialize();
+        for (int c = 0; c < chunkCount; c++) {
+            chunks[c].reinitialize();
+        }
+        pool.invoke(runChunks);
+    }
+
+    // Cuts both the object list and the store's slots into the same number of chunks
+    private void split(int objectCount, int slotCount) {
+        int most = Math.max(objectCount, slotCount);
+        int count = Math.max(1, Math.min((most + chunkSize - 1) / chunkSize, threads * CHUNKS_PER_THREAD));
+        if (count != chunks.length) {
+            Chunk[] old = chunks;
+            chunks = new Chunk[count];
+            for (int c = 0; c < count; c++) {
+                chunks[c] = c < old.length ? old[c] : new Chunk();
+            }
+        }
+        chunkCount = count;
+        for (int c = 0; c < count; c++) {
+            Chunk chunk = chunks[c];
+            chunk.objectFrom = (int) ((long) objectCount * c / count);
+            chunk.objectTo = (int) ((long) objectCount * (c + 1) / count);
+            chunk.slotFrom = (int) ((long) slotCount * c / count);
+            chunk.slotTo = (int) ((long) slotCount * (c + 1) / count);
+        }
+    }
+
+    public int getThreadCount() {
+        return threads;
+    }
+
+    /**
+     * @return How many chunks the last tick was split into
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * One range of objects and one range of slots, and what came out of them that still has to be merged
+     */
+    @SuppressWarnings("serial")
+    private final class Chunk extends RecursiveAction {
+        int objectFrom, objectTo;
+        int slotFrom, slotTo;
+        final DrawBuffer draws = new DrawBuffer();
+        int[] texts = new int[16];              // Indexes into objects of the ones showing text
+        int[] textXs = new int[16];             // Where each was before the systems round moved it (the serial
+        int[] textYs = new int[16];             // loop draws text before integrating too)
+        int textCount;
+        int[] moved = new int[16];              // Slots whose collision box has to move
+        int movedCount;
+
+        @Override
+        protected void compute() {
+            if (isSystemsRound) {
+                updateSystems();
+            } else {
+                updateObjects();
+            }
+        }
+
+        private void updateObjects() {
+            if (texts.length < objectTo - objectFrom) {
+                texts = new int[objectTo - objectFrom];
+                textXs = new int[texts.length];
+                textYs = new int[texts.length];
+            }
+            textCount = 0;
+            for (int i = objectFrom; i < objectTo; i++) {
+                InteractibleObject obj = objects.get(i);
+                obj.handleInteraction(player, spacePressed);
+                if (obj.getStore().expireTimer(obj.getEntity(), InteractibleObject.TEXT_TIMER, InteractibleObject.SHOWING_TEXT, now)) {
+                    texts[textCount] = i;
+                    textXs[textCount] = obj.getX();
+                    textYs[textCount] = obj.getY();
+                    textCount++;
+                }
+            }
+        }
+
+        private void updateSystems() {
+            if (moved.length < slotTo - slotFrom) {
+                moved = new int[slotTo - slotFrom];
+            }
+            movedCount = store.integrate(slotFrom, slotTo, moved);
+            store.animate(clips, nowMillis, slotFrom, slotTo);
+            draws.clear();
+            store.submitDraws(draws, slotFrom, slotTo);
+        }
+    }
+}
@@ -2,99 +2,105 @@ package Main;
 
 import Data.Vector2D;
 import Data.spriteInfo;
-import timer.stopWatchX;
-import java.util.ArrayList;
+import Graphics.AnimationClips;
+import Graphics.Sprites;
+import logic.Control;
+import timer.GameClock;
 
+/**
+ * A view of one entity in an EntityStore: position, bounding box, sprite ID, the animation clip playing and timers
+ * all live in the store's arrays, this only keeps the player-specific parts (speed, direction, which clips to play)
+ */
 public class Player {
-    // Position and movement using Vector2D
-    private Vector2D position;
-    public int speed, dir;
+    // Timer slot in the store
+    private static final int MOVE_TIMER = 0;
+
+    // Clips from Anim.txt: standing still, and walking in each direction (indexed by dir)
+    private static final String STAND_CLIP = "stand";
+    private static final String[] WALK_CLIPS = {"walkDown", "walkLeft", "walkRight", "walkUp"};
 
-    // Animation state
-    public int animFrame;
-    private int animDirection; // 1 for forward, -1 for backward
+    // The entity this is a view of
+    private final EntityStore store;
+    private final int entity;
 
-    private stopWatchX animTimer; // Timer for animation updates
+    public int speed, dir;
 
-    // Sprite information
+    // Sprite information (the ID and coordinates are copied in from the store, the tag from the clip playing)
     private spriteInfo sprite;
 
     // Collision detection
     public BoundingBox boundingBox;
 
-    // Movement timer
-    private stopWatchX moveTimer;
     private boolean canMove;
 
-    // Animation sprite lists for each direction
-    private ArrayList<String> rightSprites;
-    private ArrayList<String> leftSprites;
-    private ArrayList<String> frontSprites;
-    private ArrayList<String> backSprites;
     private String standingSprite;
+    private int standingSpriteId;
+
+    // Clip IDs resolved from the names above, null until resolveSprites
+    private AnimationClips clips;
+    private int standClip;
+    private int[] walkClips;
     
     /**
+     * Creates the player in the game's entity store (Main.getEntities)
      * @param x
      * @param y
      * @param speed The movement speed
      */
     public Player(int x, int y, int speed) {
-        this.position = new Vector2D(x, y);
+        this(Main.getEntities(), x, y, speed);
+    }
+
+    /**
+     * @param store The store to create the player's entity in
+     * @param x
+     * @param y
+     * @param speed The movement speed
+     */
+    public Player(EntityStore store, int x, int y, int speed) {
+        this.store = store;
+        this.entity = store.create(x, y);
+        store.setFlag(entity, EntityStore.MOVING, true);    // Drawn smoothed between ticks
         this.speed = speed;
         this.dir = 0; // Default direction (down)
-        this.animFrame = 0;
-        this.animDirection = 1; // Start with forward animation
         
         // Initialize sprite info with default sprite tag
         this.standingSprite = "f1";
-        this.sprite = new spriteInfo(position, standingSprite);
+        this.sprite = new spriteInfo(new Vector2D(x, y), standingSprite);
+        this.standingSpriteId = Sprites.NO_SPRITE;
         
         // Create a bounding box for the player with size 64x64
         this.boundingBox = new BoundingBox(x, y, 64, 64, "player");
+        this.boundingBox.setLayer(Main.LAYER_PLAYER);
+        this.boundingBox.setMask(Main.LAYER_WALL | Main.LAYER_PICKUP);
+        store.setBounds(entity, boundingBox, 0, 0);
         
         // Initialize movement timer - higher speed means lower delay
         updateMoveTimer();
-        
-        // Initialize animation timer (75ms between animation updates)
-        this.animTimer = new stopWatchX(75);
-        
-        // Initialize animation sprite lists
-        initializeSpriteLists();
     }
     
     /**
-     * Initialize the sprite lists for each direction
+     * Looks up the animation clips (and so every frame's sprite) once, so animating and drawing never touch tag strings
+     * @param ctrl The Control that owns the loaded sprites and clips
      */
-    private void initializeSpriteLists() {
-        // Right-facing sprites
-        rightSprites = new ArrayList<>();
-        rightSprites.add("1R");
-        rightSprites.add("2R");
-        rightSprites.add("3R");
-        rightSprites.add("4R");
-        
-        // Left-facing sprites
-        leftSprites = new ArrayList<>();
-        leftSprites.add("1L");
-        leftSprites.add("2L");
-        leftSprites.add("3L");
-        leftSprites.add("4L");
-        
-        // Front-facing sprites
-        frontSprites = new ArrayList<>();
-        frontSprites.add("1F");
-        frontSprites.add("2F");
-        frontSprites.add("3F");
-        frontSprites.add("4F");
-        
-        // Back-facing sprites
-        backSprites = new ArrayList<>();
-        backSprites.add("1B");
-        backSprites.add("2B");
-        backSprites.add("3B");
-        backSprites.add("4B");
+    public void resolveSprites(Control ctrl) {
+        clips = ctrl.getAnimationClips();
+        standClip = clips.getClipId(STAND_CLIP);
+        walkClips = new int[WALK_CLIPS.length];
+        for (int d = 0; d < WALK_CLIPS.length; d++) {
+            walkClips[d] = clips.getClipId(WALK_CLIPS[d]);
+        }
+        standingSpriteId = ctrl.getSpriteId(standingSprite);
+        store.setSpriteId(entity, standingSpriteId);
     }
-    
+
+    /**
+     * @return The sprite ID for the standing sprite, or Sprites.NO_SPRITE if sprites haven't been resolved
+     */
+    public int getStandingSpriteId() {
+        return standingSpriteId;
+    }
+
     /**
      * Updates the movement timer based on the current speed
      */
@@ -102,7 +108,7 @@ public class Player {
         // Convert speed to movement delay (higher speed = lower delay)
         // Base delay of 100ms divided by speed
         int moveDelay = Math.max(1, 100 / speed);
-        this.moveTimer = new stopWatchX(moveDelay);
+        store.startTimer(entity, MOVE_TIMER, moveDelay);
         this.canMove = true;
     }
     
@@ -110,28 +116,54 @@ public class Player {
      * Updates the player's bounding box position to match the player's position
      */
     public void updateBoundingBox() {
-        this.boundingBox.updatePosition(position.getX(), position.getY());
+        store.syncBounds(entity);
     }
 
     /**
      * Getters and Setters
      */
     public int getX() {
-        return position.getX();
+        return store.getX(entity);
     }
 
     public int getY() {
-        return position.getY();
+        return store.getY(entity);
     }
 
     public void setX(int x) {
-        position.setX(x);
-        sprite.setCoords(position);
+        store.setPosition(entity, x, store.getY(entity));
     }
 
     public void setY(int y) {
-        position.setY(y);
-        sprite.setCoords(position);
+        store.setPosition(entity, store.getX(entity), y);
+    }
+
+    /**
+     * @return The store this is a view of
+     */
+    public EntityStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return This player's entity ID in the store
+     */
+    public int getEntity() {
+        return entity;
+    }
+
+    /**
+     * @return The sprite ID drawn for the player, or Sprites.NO_SPRITE if there's none yet
+     */
+    public int getSpriteId() {
+        return store.getSpriteId(entity);
+    }
+
+    /**
+     * Draws the player as spriteId until the animation changes it (e.g. a fallback when there's no sprite)
+     */
+    public void setSpriteId(int spriteId) {
+        store.setSpriteId(entity, spriteId);
     }
     
     /**
@@ -148,8 +180,8 @@ public class Player {
      * @return true if the player can move, false otherwise
      */
     public boolean checkMovement() {
-        if (moveTimer.isTimeUp()) {
-            moveTimer.resetWatch();
+        if (store.isTimeUp(entity, MOVE_TIMER)) {
+            store.resetTimer(entity, MOVE_TIMER);
             return true;
         }
         return false;
@@ -168,9 +200,7 @@ public class Player {
         
         // Check if we can move based on the timer
         if (checkMovement()) {
-            position.adjustX(dx);
-            position.adjustY(dy);
-            sprite.setCoords(position);
+            store.move(entity, dx, dy);
             return true;
         }
         
@@ -181,75 +211,38 @@ public class Player {
     }
     
     /**
-     * @return The spriteInfo object
+     * @return The spriteInfo object, with the current position and sprite ID copied in from the store, and the tag
+     * of the clip's frame right now
      */
     public spriteInfo getSpriteInfo() {
+        sprite.setCoords(getX(), getY());
+        int clip = store.getClip(entity);
+        String tag = clip == AnimationClips.NO_CLIP ? standingSprite
+                : clips.getTag(clips.frameAt(clip, GameClock.millis() - store.getClipStart(entity)));
+        sprite.setTag(tag, getSpriteId());
         return sprite;
     }
     
     /**
-     * Updates the sprite animation based on character movement
+     * Picks the animation clip for how the player is moving. EntityStore.animate sets the sprite from how long the
+     * clip has been playing, so there's nothing to step here.
      * @param moved Whether the player moved this frame
      */
     public void updateAnimation(boolean moved) {
-        // Default to standing sprite if not moving
-        if (!moved) {
-            this.sprite.setTag(standingSprite);
-            return;
+        if (clips == null) {
+            return;     // resolveSprites hasn't run, so Main draws the default sprite
         }
-        
-        // Only update animation frame if the timer is up
-        if (!animTimer.isTimeUp()) {
+        // Any direction other than 0-3 walks facing front
+        int clip = !moved ? standClip : walkClips[dir >= 0 && dir < walkClips.length ? dir : 0];
+        int current = store.getClip(entity);
+        if (clip == current) {
             return;
         }
-        
-        // Reset timer
-        animTimer.resetWatch();
-        
-        // Get the appropriate sprite list based on direction
-        ArrayList<String> sprites;
-        switch (dir) {
-            case 0: // Down/Front
-                sprites = frontSprites;
-                updateBackAndForthAnimation(sprites);
-                break;
-            case 1: // Left
-                sprites = leftSprites;
-                updateBackAndForthAnimation(sprites);
-                break;
-            case 2: // Right
-                sprites = rightSprites;
-                updateBackAndForthAnimation(sprites);
-                break;
-            case 3: // Up/Back
-                sprites = backSprites;
-                updateBackAndForthAnimation(sprites);
-                break;
-            default:
-                sprites = frontSprites;
-                animFrame = (animFrame + 1) % sprites.size();
-                break;
-        }
-        
-        // Update the sprite tag
-        this.sprite.setTag(sprites.get(animFrame));
-    }
-    
-    /**
-     * Helper method to make the animation loop correctly
-     * @param sprites The list of sprites for the current direction
-     */
-    private void updateBackAndForthAnimation(ArrayList<String> sprites) {
-        // Update frame with direction
-        animFrame += animDirection;
-        
-        // Reverse direction at endpoints
-        if (animFrame >= sprites.size() - 1) {
-            animFrame = sprites.size() - 1;
-            animDirection = -1;
-        } else if (animFrame <= 0) {
-            animFrame = 0;
-            animDirection = 1;
+        // Turning while walking carries on from the same point in the stride, otherwise start from the top
+        boolean isTurning = moved && current != standClip && current != AnimationClips.NO_CLIP;
+        store.playClip(entity, clip, isTurning ? store.getClipStart(entity) : GameClock.millis());
+        if (clip == AnimationClips.NO_CLIP) {
+            store.setSpriteId(entity, standingSpriteId);      // No such clip in Anim.txt, so stand still
         }
     }
 }
@@ -0,0 +1,227 @@
+package Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Uniform grid broadphase. Every box is put in each cell it overlaps, so a query only has to look at the
+ * boxes in the cells it touches. Cells live in a small open addressing hash map keyed by packed cell
+ * coordinates, so the grid is unbounded and nothing gets boxed on lookups.
+ */
+final class SpatialHashGrid implements Broadphase {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final int cellSize;
+    // Open addressing map: cell key -> index into cells
+    private long[] keys;
+    private int[] cellIndex;
+    private int used;
+    private final ArrayList<ArrayList<BoundingBox>> cells;
+    // Every query of every grid takes the next stamp, so a box sitting in several cells is only reported once.
+    // Shared by all grids so a stamp a box got in another grid (or an old one) can't match a query in this one
+    private static int lastStamp;
+    private int stamp;
+
+    /**
+     * @param cellSize width and height of each cell in pixels
+     */
+    SpatialHashGrid(int cellSize) {
+        if (cellSize < 1) {
+            throw new IllegalArgumentException("Cell size must be at least 1");
+        }
+        this.cellSize = cellSize;
+        this.keys = new long[64];
+        this.cellIndex = new int[64];
+        Arrays.fill(this.keys, EMPTY);
+        this.cells = new ArrayList<>();
+    }
+
+    int getCellSize() {
+        return cellSize;
+    }
+
+    @Override
+    public void add(BoundingBox box) {
+        insertInto(box, cellOf(box.getX()), cellOf(box.getY()),
+                cellOf(box.getX() + box.getWidth()), cellOf(box.getY() + box.getHeight()));
+    }
+
+    @Override
+    public void remove(BoundingBox box) {
+        removeFrom(box, cellOf(box.getX()), cellOf(box.getY()),
+                cellOf(box.getX() + box.getWidth()), cellOf(box.getY() + box.getHeight()));
+    }
+
+    @Override
+    public void moved(BoundingBox box, int oldX, int oldY) {
+        int oldMinX = cellOf(oldX);
+        int oldMinY = cellOf(oldY);
+        int oldMaxX = cellOf(oldX + box.getWidth());
+        int oldMaxY = cellOf(oldY + box.getHeight());
+        int minX = cellOf(box.getX());
+        int minY = cellOf(box.getY());
+        int maxX = cellOf(box.getX() + box.getWidth());
+        int maxY = cellOf(box.getY() + box.getHeight());
+        // Most moves stay inside the same cells
+        if (oldMinX == minX && oldMinY == minY && oldMaxX == maxX && oldMaxY == maxY) {
+            return;
+        }
+        removeFrom(box, oldMinX, oldMinY, oldMaxX, oldMaxY);
+        insertInto(box, minX, minY, maxX, maxY);
+    }
+
+    @Override
+    public void query(int minX, int minY, int maxX, int maxY, ArrayList<BoundingBox> out) {
+        out.clear();
+        stamp = ++lastStamp;
+        int cx1 = cellOf(minX);
+        int cy1 = cellOf(minY);
+        int cx2 = cellOf(maxX);
+        int cy2 = cellOf(maxY);
+        for (int cy = cy1; cy <= cy2; cy++) {
+            for (int cx = cx1; cx <= cx2; cx++) {
+                collectCell(cx, cy, out);
+            }
+        }
+    }
+
+    @Override
+    public void queryRay(int x1, int y1, int x2, int y2, ArrayList<BoundingBox> out) {
+        out.clear();
+        stamp = ++lastStamp;
+        if (y1 == y2) {
+            int cy = cellOf(y1);
+            for (int cx = cellOf(Math.min(x1, x2)); cx <= cellOf(Math.max(x1, x2)); cx++) {
+                collectCell(cx, cy, out);
+            }
+            return;
+        }
+        // Go row by row and only visit the cells the segment crosses within that row
+        double slope = (double) (x2 - x1) / (y2 - y1);
+        int minY = Math.min(y1, y2);
+        int maxY = Math.max(y1, y2);
+        for (int cy = cellOf(minY); cy <= cellOf(maxY); cy++) {
+            double top = Math.max(minY, (long) cy * cellSize);
+            double bottom = Math.min(maxY, (long) (cy + 1) * cellSize);
+            double xa = x1 + (top - y1) * slope;
+            double xb = x1 + (bottom - y1) * slope;
+            int cxa = cellOf((int) Math.floor(Math.min(xa, xb)));
+            int cxb = cellOf((int) Math.floor(Math.max(xa, xb)));
+            for (int cx = cxa; cx <= cxb; cx++) {
+                collectCell(cx, cy, out);
+            }
+        }
+    }
+
+    /**
+     * Adds the boxes in one cell that haven't already been added by this query
+     */
+    private void collectCell(int cx, int cy, ArrayList<BoundingBox> out) {
+        int index = find(key(cx, cy));
+        if (index < 0) {
+            return;
+        }
+        ArrayList<BoundingBox> cell = cells.get(index);
+        for (int i = 0; i < cell.size(); i++) {
+            BoundingBox box = cell.get(i);
+            if (box.queryStamp != stamp) {
+                box.queryStamp = stamp;
+                out.add(box);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        used = 0;
+        cells.clear();
+    }
+
+    private void insertInto(BoundingBox box, int cx1, int cy1, int cx2, int cy2) {
+        for (int cy = cy1; cy <= cy2; cy++) {
+            for (int cx = cx1; cx <= cx2; cx++) {
+                getOrCreateCell(cx, cy).add(box);
+            }
+        }
+    }
+
+    private void removeFrom(BoundingBox box, int cx1, int cy1, int cx2, int cy2) {
+        for (int cy = cy1; cy <= cy2; cy++) {
+            for (int cx = cx1; cx <= cx2; cx++) {
+                int index = find(key(cx, cy));
+                if (index >= 0) {
+                    // Empty cells are kept around, boxes tend to come back to the same places
+                    cells.get(index).remove(box);
+                }
+            }
+        }
+    }
+
+    private int cellOf(int coord) {
+        return Math.floorDiv(coord, cellSize);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    /**
+     * @return index into cells, or -1 if the cell has never been used
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        for (int i = hash(key, mask); ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return cellIndex[i];
+            }
+            if (keys[i] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private ArrayList<BoundingBox> getOrCreateCell(int cx, int cy) {
+        long key = key(cx, cy);
+        int index = find(key);
+        if (index >= 0) {
+            return cells.get(index);
+        }
+        if ((used + 1) * 2 > keys.length) {
+            grow();
+        }
+        ArrayList<BoundingBox> cell = new ArrayList<>(4);
+        cells.add(cell);
+        put(key, cells.size() - 1);
+        used++;
+        return cell;
+    }
+
+    private void put(long key, int index) {
+        int mask = keys.length - 1;
+        int i = hash(key, mask);
+        while (keys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        cellIndex[i] = index;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldIndex = cellIndex;
+        keys = new long[oldKeys.length * 2];
+        cellIndex = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldIndex[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package gameloop;
+
+import java.awt.BufferCapabilities;
+import java.awt.Font;
+import java.awt.Rectangle;
+import java.util.List;
+
+import Data.Sprite;
+import Data.gameString;
+import Graphics.DrawBuffer;
+import Graphics.Sprites;
+
+/* Dirty rectangle tracking for gameLoop. Every frame the sprites and strings are compared with last frame's, in
+ * draw order, and the screen area of anything that moved, changed, showed up or went away is marked dirty. Only
+ * that area gets cleared and redrawn; the rest of the back buffer is left as it was.
+ * With a BufferStrategy the buffer being drawn into isn't always the one drawn last frame. With page flipping and two
+ * buffers it holds the frame from two frames ago, so it also needs whatever changed last frame. That's what the
+ * buffer age is for: the dirty areas of the last few frames are kept, and a buffer that is N frames old gets the
+ * union of the last N. If the age can't be known (the flip leaves the buffer undefined) every frame is drawn in full.
+ * Transitions cover the whole screen, so while one is on (and the frame after) everything is redrawn too. */
+
+public class DirtyRegions{
+	public static final int MAX_BUFFER_AGE = 4;
+	private static final int MAX_RECTS = 16;				// Past this many the rects are merged into their bounding box
+	private static final float FULL_FRAME_AREA = 0.5f;		// Once this much of the screen is dirty just redraw all of it
+	private static final int TEXT = Integer.MIN_VALUE;		// Item ID for strings (sprites use their sprite ID)
+
+	private final int width, height;
+	private int bufferAge;							// 0 = unknown, always redraw everything
+	private Frame previous, current;				// What was drawn last frame, and this frame
+	private final RectList[] history;				// What changed in each of the last MAX_BUFFER_AGE frames, newest at historyPos
+	private int historyPos;
+	private boolean wasForcedFull;					// Last frame had a transition over it
+	private boolean isInvalid;						// Buffers can't be trusted, next frame counts as a full change
+	private final RectList repaint;					// What gets redrawn this frame
+	private final Rectangle bounds;					// Scratch for text bounds
+	private long lastPixels, totalPixels;
+	private long frameCount, fullFrameCount;
+
+	public DirtyRegions(int width, int height, int bufferAge){
+		this.width = width;
+		this.height = height;
+		setBufferAge(bufferAge);
+		previous = new Frame();
+		current = new Frame();
+		history = new RectList[MAX_BUFFER_AGE];
+		for(int i = 0; i < history.length; i++)
+			history[i] = new RectList();
+		repaint = new RectList();
+		bounds = new Rectangle();
+		invalidate();
+	}
+
+	/* How stale the back buffer is for a strategy with these capabilities, 0 if there's no telling */
+	public static int getBufferAge(BufferCapabilities caps){
+		if(!caps.isPageFlipping())		return 1;		// Back buffer is copied to the screen and kept as it was
+		BufferCapabilities.FlipContents contents = caps.getFlipContents();
+		if(contents == BufferCapabilities.FlipContents.COPIED)		return 1;
+		if(contents == BufferCapabilities.FlipContents.PRIOR)		return 2;		// Graphic makes two buffers
+		return 0;
+	}
+
+	public void setBufferAge(int age){
+		if(age < 0 || age > MAX_BUFFER_AGE)		throw new IllegalArgumentException("Buffer age must be 0 to " + MAX_BUFFER_AGE);
+		bufferAge = age;
+	}
+
+	public int getBufferAge(){
+		return bufferAge;
+	}
+
+	/* Buffer contents were lost (or restored), so nothing in any buffer can be trusted */
+	public void invalidate(){
+		for(int i = 0; i < history.length; i++)
+			history[i].setFull();
+		repaint.setFull();
+		previous.clear();
+		isInvalid = true;
+	}
+
+	/* Works out what this frame has to redraw. isForcedFull = something covers the whole screen this frame. */
+	public void update(SceneLayers scene, Sprites sprites, float interpolation, boolean isForcedFull){
+		current.clear();
+		for(int l = 0; l < scene.size(); l++){
+			SceneLayer layer = scene.get(l);
+			float t = layer.isComposited() ? 1.0f : interpolation;		// Cached layers are drawn at the latest positions
+			addCommands(sprites, layer.getDraws(), t);
+			List<gameString> gs = layer.getStrings();
+			for(int i = 0; i < gs.size(); i++)
+				addString(gs.get(i));
+		}
+
+		historyPos = (historyPos + 1) % history.length;
+		RectList damage = history[historyPos];
+		damage.clear();
+		if(isForcedFull || wasForcedFull || isInvalid)
+			damage.setFull();
+		else
+			diff(damage);
+		wasForcedFull = isForcedFull;
+		isInvalid = false;
+
+		repaint.clear();
+		if(bufferAge == 0)
+			repaint.setFull();
+		for(int age = 0; age < bufferAge && !repaint.isFull; age++)
+			repaint.addAll(history[(historyPos - age + history.length) % history.length]);
+		repaint.merge(width, height);
+
+		lastPixels = repaint.isFull ? (long) width * height : repaint.area();
+		totalPixels += lastPixels;
+		frameCount++;
+		if(repaint.isFull)		fullFrameCount++;
+
+		Frame tmp = previous;
+		previous = current;
+		current = tmp;
+	}
+
+	/* Everything drawn at the same spot in the same order is unchanged; for the rest both where it was and where it is now are dirty */
+	private void diff(RectList damage){
+		int count = Math.max(previous.count, current.count);
+		for(int i = 0; i < count && !damage.isFull; i++){
+			if(i < previous.count && i < current.count && previous.isSame(i, current))
+				continue;
+			if(i < previous.count)		damage.add(previous.xs[i], previous.ys[i], previous.ws[i], previous.hs[i]);
+			if(i < current.count)		damage.add(current.xs[i], current.ys[i], current.ws[i], current.hs[i]);
+		}
+	}
+
+	private void addCommands(Sprites sprites, DrawBuffer draws, float interpolation){
+		draws.sortByLayer();
+		for(int n = 0; n < draws.size(); n++){
+			int i = draws.getDrawIndex(n);
+			Sprite tmp = sprites.getSpriteById(draws.getSpriteId(i));
+			if(tmp == null)		continue;
+			current.add(draws.getSpriteId(i), draws.getX(i, interpolation), draws.getY(i, interpolation),
+					tmp.getSprite().getWidth(), tmp.getSprite().getHeight());
+		}
+	}
+
+	private void addString(gameString s){
+		String text = s.toString();
+		if(text == null || text.isEmpty())		return;
+		int i = current.count;
+		if(i < previous.count && previous.ids[i] == TEXT && previous.isSameText(i, text, s.getFont(), s.getColor().getRGB(), s.getX(), s.getY())){
+			// Same as last frame, no need to measure it again
+			current.add(TEXT, previous.xs[i], previous.ys[i], previous.ws[i], previous.hs[i]);
+		}else{
+			Renderer.getTextCache().getPixelBounds(text, s.getFont(), Font.BOLD, s.getX(), s.getY(), bounds);
+			current.add(TEXT, bounds.x, bounds.y, bounds.width, bounds.height);
+		}
+		current.setText(i, text, s.getFont(), s.getColor().getRGB(), s.getX(), s.getY());
+	}
+
+	/* True = redraw the whole screen this frame */
+	public boolean isFullFrame(){
+		return repaint.isFull;
+	}
+
+	public int getRectCount(){
+		return repaint.isFull ? 0 : repaint.count;
+	}
+
+	/* Don't hold on to it, it gets reused next frame */
+	public Rectangle getRect(int i){
+		return repaint.rects[i];
+	}
+
+	public long getLastPixels(){
+		return lastPixels;
+	}
+
+	public long getTotalPixels(){
+		return totalPixels;
+	}
+
+	public long getFrameCount(){
+		return frameCount;
+	}
+
+	public long getFullFrameCount(){
+		return fullFrameCount;
+	}
+
+	/* Average share of the screen redrawn per frame, 0 to 1 */
+	public double getAverageCoverage(){
+		return frameCount == 0 ? 0.0 : (double) totalPixels / frameCount / ((double) width * height);
+	}
+
+	public void resetStats(){
+		totalPixels = 0;
+		frameCount = 0;
+		fullFrameCount = 0;
+	}
+
+	public String toString(){
+		return String.format("dirty rects: %d frames, %.1f%% of the screen redrawn on average, %d full frames, buffer age %d",
+				frameCount, getAverageCoverage() * 100.0, fullFrameCount, bufferAge);
+	}
+
+	/* One frame's drawn items (sprites and strings) in draw order, with their screen bounds */
+	private static final class Frame{
+		int count;
+		int[] ids = new int[64];
+		int[] xs = new int[64], ys = new int[64], ws = new int[64], hs = new int[64];
+		String[] texts = new String[64];
+		Font[] fonts = new Font[64];
+		int[] rgbs = new int[64], textXs = new int[64], textYs = new int[64];
+
+		void add(int id, int x, int y, int w, int h){
+			if(count == ids.length)		grow();
+			ids[count] = id;
+			xs[count] = x;
+			ys[count] = y;
+			ws[count] = w;
+			hs[count] = h;
+			texts[count] = null;
+			fonts[count] = null;
+			count++;
+		}
+
+		void setText(int i, String text, Font font, int rgb, int x, int y){
+			texts[i] = text;
+			fonts[i] = font;
+			rgbs[i] = rgb;
+			textXs[i] = x;
+			textYs[i] = y;
+		}
+
+		boolean isSame(int i, Frame other){
+			if(ids[i] != other.ids[i] || xs[i] != other.xs[i] || ys[i] != other.ys[i] || ws[i] != other.ws[i] || hs[i] != other.hs[i])
+				return false;
+			return ids[i] != TEXT || isSameText(i, other.texts[i], other.fonts[i], other.rgbs[i], other.textXs[i], other.textYs[i]);
+		}
+
+		boolean isSameText(int i, String text, Font font, int rgb, int x, int y){
+			return rgbs[i] == rgb && textXs[i] == x && textYs[i] == y && texts[i].equals(text) && fonts[i].equals(font);
+		}
+
+		void clear(){
+			for(int i = 0; i < count; i++){
+				texts[i] = null;
+				fonts[i] = null;
+			}
+			count = 0;
+		}
+
+		private void grow(){
+			int n = ids.length * 2;
+			ids = copyOf(ids, n);
+			xs = copyOf(xs, n);
+			ys = copyOf(ys, n);
+			ws = copyOf(ws, n);
+			hs = copyOf(hs, n);
+			rgbs = copyOf(rgbs, n);
+			textXs = copyOf(textXs, n);
+			textYs = copyOf(textYs, n);
+			String[] newTexts = new String[n];
+			System.arraycopy(texts, 0, newTexts, 0, count);
+			texts = newTexts;
+			Font[] newFonts = new Font[n];
+			System.arraycopy(fonts, 0, newFonts, 0, count);
+			fonts = newFonts;
+		}
+
+		private static int[] copyOf(int[] src, int newLength){
+			int[] dst = new int[newLength];
+			System.arraycopy(src, 0, dst, 0, src.length);
+			return dst;
+		}
+	}
+
+	/* A few screen rectangles, or "all of it". The Rectangles are pooled and reused. */
+	private static final class RectList{
+		Rectangle[] rects = new Rectangle[MAX_RECTS * MAX_BUFFER_AGE];
+		int count;
+		boolean isFull;
+
+		RectList(){
+			for(int i = 0; i < rects.length; i++)
+				rects[i] = new Rectangle();
+		}
+
+		void clear(){
+			count = 0;
+			isFull = false;
+		}
+
+		void setFull(){
+			count = 0;
+			isFull = true;
+		}
+
+		void add(int x, int y, int w, int h){
+			if(isFull || w <= 0 || h <= 0)		return;
+			if(count == rects.length)			collapse();
+			rects[count++].setBounds(x, y, w, h);
+			if(count > MAX_RECTS)				collapse();
+		}
+
+		void addAll(RectList other){
+			if(other.isFull){
+				setFull();
+				return;
+			}
+			for(int i = 0; i < other.count && !isFull; i++){
+				Rectangle r = other.rects[i];
+				add(r.x, r.y, r.width, r.height);
+			}
+		}
+
+		/* Clips to the screen, joins overlapping rects, and gives up (full) when they cover too much */
+		void merge(int width, int height){
+			if(isFull)		return;
+			int n = 0;
+			for(int i = 0; i < count; i++){
+				Rectangle r = rects[i];
+				int x1 = Math.max(r.x, 0), y1 = Math.max(r.y, 0);
+				int x2 = Math.min(r.x + r.width, width), y2 = Math.min(r.y + r.height, height);
+				if(x2 <= x1 || y2 <= y1)		continue;
+				r.setBounds(x1, y1, x2 - x1, y2 - y1);
+				swap(i, n++);
+			}
+			count = n;
+			boolean isMerged = true;
+			while(isMerged){
+				isMerged = false;
+				for(int i = 0; i < count; i++){
+					for(int j = i + 1; j < count; j++){
+						if(rects[i].intersects(rects[j])){
+							rects[i].add(rects[j]);
+							swap(j, --count);
+							isMerged = true;
+							j = i;			// rects[i] grew, check the rest against it again
+						}
+					}
+				}
+			}
+			if(area() > (long) (width * (long) height * FULL_FRAME_AREA))
+				setFull();
+		}
+
+		/* Only right after merge (rects don't overlap) */
+		long area(){
+			long a = 0;
+			for(int i = 0; i < count; i++)
+				a += (long) rects[i].width * rects[i].height;
+			return a;
+		}
+
+		private void collapse(){
+			for(int i = 1; i < count; i++)
+				rects[0].add(rects[i]);
+			count = Math.min(count, 1);
+		}
+
+		private void swap(int i, int j){
+			Rectangle tmp = rects[i];
+			rects[i] = rects[j];
+			rects[j] = tmp;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package gameloop;
+
+import java.util.ArrayList;
+
+import Data.gameString;
+import Graphics.DrawBuffer;
+
+/* Everything the render thread needs to draw one simulation tick, copied out at the end of the tick so the
+ * simulation can go straight on to the next one (see Control's two-thread mode and TripleBuffer):
+ *	- every scene layer's draw commands and strings
+ *	- the fade/transition settings and a capture request, as gameLoop had them at that tick
+ *	- when the tick was due, for interpolating between it and the tick before
+ *	- things the render thread has to do once on the simulation's behalf: presses to time up to the screen
+ *	  (InputLatency) and sprites to prefetch (the SpriteCache is only touched from the render thread)
+ * Once published, nothing but the render thread touches it until it comes back round to the simulation. */
+
+public class RenderSnapshot{
+	private static final int MAX_PENDING = 256;
+
+	private final SceneLayers scene;
+	private long tick;
+	private long tickNanos;
+	private boolean isFade;
+	private float fadeAmount;
+	private int transitionType;
+	private boolean isCaptureRequested;
+	private final long[] pressNanos = new long[MAX_PENDING];
+	private int pressCount;
+	private final int[] prefetchIds = new int[MAX_PENDING];
+	private int prefetchCount;
+
+	public RenderSnapshot(int width, int height){
+		scene = new SceneLayers(width, height, new DrawBuffer(), new ArrayList<gameString>(), new DrawBuffer());
+	}
+
+	/* Copies the scene and gl's settings as they are at the end of tick number tick, due at tickNanos (System.nanoTime) */
+	public void capture(SceneLayers from, gameLoop gl, long tick, long tickNanos){
+		scene.copyFrom(from);
+		isFade = gl.hasFadeStarted();
+		fadeAmount = gl.getAlphaFade();
+		transitionType = gl.getTransitionType();
+		isCaptureRequested = gl.takeCaptureRequest() || isCaptureRequested;		// Keep a skipped snapshot's request
+		this.tick = tick;
+		this.tickNanos = tickNanos;
+	}
+
+	/* Drops what the render thread has already done. Something it never got to (this snapshot was skipped) is kept,
+	 * so it goes out with the next one instead. */
+	public void recycle(boolean wasSkipped){
+		if(wasSkipped)		return;
+		pressCount = 0;
+		prefetchCount = 0;
+		isCaptureRequested = false;
+	}
+
+	/* A key press from eventNanos that this tick handled; false if too many are waiting already */
+	public boolean addPress(long eventNanos){
+		if(pressCount == MAX_PENDING)		return false;
+		pressNanos[pressCount++] = eventNanos;
+		return true;
+	}
+
+	public void addPrefetch(int spriteId){
+		if(prefetchCount < MAX_PENDING)
+			prefetchIds[prefetchCount++] = spriteId;
+	}
+
+	public SceneLayers getScene(){
+		return scene;
+	}
+
+	public long getTick(){
+		return tick;
+	}
+
+	public long getTickNanos(){
+		return tickNanos;
+	}
+
+	boolean isFade(){
+		return isFade;
+	}
+
+	float getFadeAmount(){
+		return fadeAmount;
+	}
+
+	int getTransitionType(){
+		return transitionType;
+	}
+
+	/* Render thread: the capture request, once */
+	boolean takeCaptureRequest(){
+		boolean was = isCaptureRequested;
+		isCaptureRequested = false;
+		return was;
+	}
+
+	public int getPressCount(){
+		return pressCount;
+	}
+
+	public long getPressNanos(int i){
+		return pressNanos[i];
+	}
+
+	public int getPrefetchCount(){
+		return prefetchCount;
+	}
+
+	public int getPrefetchId(int i){
+		return prefetchIds[i];
+	}
+
+	/* Render thread, after handling the presses and prefetches: they're done, don't do them again if this snapshot
+	 * is drawn again */
+	public void clearPending(){
+		pressCount = 0;
+		prefetchCount = 0;
+	}
+}
@@ -1,65 +1,147 @@
 package gameloop;
 
+import Graphics.DrawBuffer;
 import Graphics.Sprites;
+import Graphics.TextCache;
 
-import java.awt.AlphaComposite;
 import java.awt.Color;
+import java.awt.Composite;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.util.Iterator;
 import java.util.List;
 
 import Data.Sprite;
 import Data.gameString;
 
 public class Renderer{
+	private static final TextCache textCache = TextCache.fromSystemProperties();
 	
-	public static void render(Graphics g, List<gameString> gs, Sprites sps, Sprites overlays, float alpha, boolean isFade){
+	public static TextCache getTextCache(){
+		return textCache;
+	}
+	
+	public static void render(Graphics g, List<gameString> gs, Sprites sprites, DrawBuffer draws, DrawBuffer overlays, float alpha, boolean isFade){
+		render(g, gs, sprites, draws, overlays, alpha, isFade, 1.0f);
+	}
+	
+	/* interpolation is how far we are between the last two simulation ticks (0 = previous tick, 1 = latest) */
+	public static void render(Graphics g, List<gameString> gs, Sprites sprites, DrawBuffer draws, DrawBuffer overlays, float alpha, boolean isFade, float interpolation){
+		renderScene(g, gs, sprites, draws, overlays, interpolation);
+		
+		// No screen size here, so blend black over as much as the surface has (the fill gets clipped to it).
+		// gameLoop uses the overload below, which knows the size and goes through a cached Transition.
+		if(isFade){
+			Graphics2D g2d = (Graphics2D) g;
+			Composite old = g2d.getComposite();
+			g2d.setComposite(Transition.getComposite(alpha));
+			g2d.setColor(Color.BLACK);
+			g2d.fillRect(0, 0, Short.MAX_VALUE, Short.MAX_VALUE);
+			g2d.setComposite(old);
+		}
+	}
+	
+	/* transition is drawn over everything with the given amount (null = no transition). width/height is the size of the target. */
+	public static void render(Graphics g, int width, int height, List<gameString> gs, Sprites sprites, DrawBuffer draws, DrawBuffer overlays,
+			Transition transition, float amount, float interpolation){
+		renderScene(g, gs, sprites, draws, overlays, interpolation);
+		
+		// Transitions go on top of everything (this used to build a new 1280x720 image every frame)
+		if(transition != null)
+			transition.draw(g, width, height, amount);
+	}
+	
+	/* Just the frame itself, no transition. Also used to capture the old scene for cross-fades and wipes. */
+	public static void renderScene(Graphics g, List<gameString> gs, Sprites sprites, DrawBuffer draws, DrawBuffer overlays, float interpolation){
+		renderScene(g, gs, sprites, draws, overlays, interpolation, null);
+	}
+	
+	/* Same, but sprites that don't touch area are skipped (null = draw everything). Used for dirty rectangles, with g clipped to area. */
+	public static void renderScene(Graphics g, List<gameString> gs, Sprites sprites, DrawBuffer draws, DrawBuffer overlays, float interpolation, Rectangle area){
 		/* This is a generic function that can start fresh for any new gaming project.
 		 * All one has to do is wipe the contents and start new and it should work fine
 		 * with the rest of the game engine. */
 		
 		// First sprites...
-		Iterator<Sprite> it = sps.getIterator();
-		while(it.hasNext()){
-			Sprite tmp = it.next();
-			g.drawImage(tmp.getSprite(), tmp.getX(), tmp.getY(), null);
-		}
+		drawCommands(g, sprites, draws, interpolation, area);
 		
 		// ... then text
-		for(gameString a: gs){
-			Font temp = a.getFont().deriveFont(Font.BOLD);
-			g.setFont(temp);
-			g.setColor(a.getColor());
-			g.drawString(a.toString(), a.getX(), a.getY());
-		}
+		drawStrings(g, gs);
 		
 		// For all overlays (above text even; e.g. custom mouse cursors)
-		Iterator<Sprite> oit = overlays.getIterator();
-		while(oit.hasNext()){
-			Sprite tmp2 = oit.next();
-			g.drawImage(tmp2.getSprite(), tmp2.getX(), tmp2.getY(), null);
+		drawCommands(g, sprites, overlays, interpolation, area);
+	}
+	
+	/* The scene as layers, with a transition drawn over everything (null = no transition) */
+	public static void render(Graphics g, SceneLayers scene, Sprites sprites, Transition transition, float amount, float interpolation){
+		renderScene(g, scene, sprites, interpolation, null);
+		if(transition != null)
+			transition.draw(g, scene.getWidth(), scene.getHeight(), amount);
+	}
+	
+	/* Every layer bottom to top. Cached and static layers are a single blit unless their contents changed.
+	 * area works like it does above (null = everything). */
+	public static void renderScene(Graphics g, SceneLayers scene, Sprites sprites, float interpolation, Rectangle area){
+		for(int i = 0; i < scene.size(); i++){
+			SceneLayer layer = scene.get(i);
+			if(layer.isComposited())
+				layer.draw(g, sprites, scene.getWidth(), scene.getHeight());
+			else
+				drawLayer(g, layer, sprites, interpolation, area);
 		}
-		
-		// This is for the alpha?
-		if(isFade){
-			BufferedImage bi = new BufferedImage(1280, 720, BufferedImage.TYPE_INT_ARGB);
-			Graphics g2d = (Graphics2D) g;														// Access graphics handle
-			AlphaComposite ac = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha);		// Create the alpha composite
-			Graphics2D gbi = bi.createGraphics();												// Prepare image for java2d drawing/modifying
-			gbi.setComposite(ac); 																// Set the alpha composite
-			gbi.setColor(Color.BLACK);															// Set fade overlay to black
-			gbi.fillRect(0, 0, 1280, 720);
-			g2d.drawImage(bi, 0, 0, null);														// Draw the image
+	}
+	
+	/* A layer's sprites and then its strings, straight onto g */
+	static void drawLayer(Graphics g, SceneLayer layer, Sprites sprites, float interpolation, Rectangle area){
+		drawCommands(g, sprites, layer.getDraws(), interpolation, area);
+		drawStrings(g, layer.getStrings());
+	}
+	
+	/* Each string is rendered once and blitted after that (see TextCache); dynamic ones use the glyph atlas */
+	private static void drawStrings(Graphics g, List<gameString> gs){
+		for(int i = 0; i < gs.size(); i++){
+			gameString a = gs.get(i);
+			if(a.isDynamic())
+				textCache.drawDynamicString(g, a.toString(), a.getFont(), Font.BOLD, a.getColor(), a.getX(), a.getY());
+			else
+				textCache.drawString(g, a.toString(), a.getFont(), Font.BOLD, a.getColor(), a.getX(), a.getY());
+		}
+	}
+	
+	/* Draw every command in the buffer, lowest layer first. The sprites themselves are only read, never moved. */
+	private static void drawCommands(Graphics g, Sprites sprites, DrawBuffer draws, float interpolation, Rectangle area){
+		draws.sortByLayer();
+		for(int n = 0; n < draws.size(); n++){
+			int i = draws.getDrawIndex(n);
+			Sprite tmp = sprites.getSpriteById(draws.getSpriteId(i));
+			if(tmp == null)		continue;
+			BufferedImage image = tmp.getSprite();
+			int x = draws.getX(i, interpolation);
+			int y = draws.getY(i, interpolation);
+			if(area != null && (x >= area.x + area.width || y >= area.y + area.height
+					|| x + image.getWidth() <= area.x || y + image.getHeight() <= area.y))
+				continue;
+			BufferedImage page = tmp.getAtlasPage();
+			if(page != null){				// Sub-rectangle of a shared atlas page (see SpriteAtlas)
+				int sx = tmp.getAtlasX(), sy = tmp.getAtlasY();
+				int w = image.getWidth(), h = image.getHeight();
+				g.drawImage(page, x, y, x + w, y + h, sx, sy, sx + w, sy + h, null);
+			}else{
+				g.drawImage(image, x, y, null);
+			}
 		}
 	}
 	
 	public static BufferedImage toCompatibleImage(BufferedImage image)
 	{
+	    // No screen to be compatible with when running headless
+	    if (GraphicsEnvironment.isHeadless())
+	        return image;
+
 	    // obtain the current system graphical settings
 	    GraphicsConfiguration gfxConfig = GraphicsEnvironment.
 	        getLocalGraphicsEnvironment().getDefaultScreenDevice().
@@ -0,0 +1,223 @@
+package gameloop;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import Data.gameString;
+import Graphics.DrawBuffer;
+import Graphics.Sprites;
+
+/* One layer of the scene (see SceneLayers): sprite commands, then strings drawn over them. How it gets to the screen
+ * depends on its mode:
+ * DYNAMIC	- drawn straight onto the frame every time, like before layers existed
+ * CACHED	- resubmitted every frame, but drawn into a screen sized image and only redrawn into it when what was
+ *			  submitted differs from what the image holds. Otherwise the frame just gets the image blitted on.
+ * STATIC	- same as CACHED, but the contents are kept between frames instead of being resubmitted (the background)
+ * invalidate() forces the image to be redrawn, for when the sprites themselves changed and the commands didn't.
+ * Cached layers use final positions (no interpolation between ticks), so things that move belong in dynamic layers. */
+
+public class SceneLayer{
+	public static final int DYNAMIC = 0;
+	public static final int CACHED = 1;
+	public static final int STATIC = 2;
+
+	private final String name;
+	private int mode;
+	private final DrawBuffer draws;
+	private final List<gameString> strings;
+	private boolean isBottom;				// Nothing under it but the black screen, so its image can be opaque
+	private BufferedImage image;
+	private boolean isImageValid;
+	private final DrawBuffer imageDraws;	// What the image was drawn from
+	private final ArrayList<String> imageTexts;
+	private final ArrayList<Font> imageFonts;
+	private int[] imageStringInfo;			// rgb, x, y per string
+	private long rebuilds, reuses;
+	private int invalidations;				// invalidate() calls, so copies (see copyFrame) can follow them
+	private int copiedInvalidations;
+
+	public SceneLayer(String name, int mode){
+		this(name, mode, new DrawBuffer(), new ArrayList<gameString>());
+	}
+
+	/* Layer over existing buffers (Control's front buffer, strings and overlay buffer become layers this way) */
+	public SceneLayer(String name, int mode, DrawBuffer draws, List<gameString> strings){
+		if(draws == null || strings == null)		throw new NullPointerException();
+		this.name = name;
+		this.draws = draws;
+		this.strings = strings;
+		imageDraws = new DrawBuffer();
+		imageTexts = new ArrayList<String>();
+		imageFonts = new ArrayList<Font>();
+		imageStringInfo = new int[3 * 8];
+		setMode(mode);
+	}
+
+	public void setMode(int mode){
+		if(mode < DYNAMIC || mode > STATIC)		throw new IllegalArgumentException("Unknown layer mode " + mode);
+		this.mode = mode;
+		if(mode == DYNAMIC)		image = null;		// Don't hang on to a screen sized image nobody uses
+		isImageValid = false;
+	}
+
+	public int getMode(){
+		return mode;
+	}
+
+	public String getName(){
+		return name;
+	}
+
+	public DrawBuffer getDraws(){
+		return draws;
+	}
+
+	public List<gameString> getStrings(){
+		return strings;
+	}
+
+	void setBottom(boolean isBottom){
+		this.isBottom = isBottom;
+		image = null;
+		isImageValid = false;
+	}
+
+	public boolean isEmpty(){
+		return draws.size() == 0 && strings.isEmpty();
+	}
+
+	/* Everything but static layers is resubmitted every frame */
+	public void clearFrame(){
+		if(mode == STATIC)		return;
+		draws.clear();
+		strings.clear();
+	}
+
+	/* Empties the layer whatever its mode (e.g. to replace a static background) */
+	public void clear(){
+		draws.clear();
+		strings.clear();
+	}
+
+	/* Redraw the cached image next frame even if the contents look the same */
+	public void invalidate(){
+		isImageValid = false;
+		invalidations++;
+	}
+	
+	/* Makes this layer hold what from holds right now: same mode, commands and strings (the gameStrings themselves
+	 * are shared, they don't change once drawn), and a redraw of the image if from was invalidated since the last copy.
+	 * The image isn't copied, each layer keeps its own. */
+	void copyFrame(SceneLayer from){
+		if(mode != from.mode)
+			setMode(from.mode);
+		draws.copyFrom(from.draws);
+		strings.clear();
+		strings.addAll(from.strings);
+		if(copiedInvalidations != from.invalidations){
+			copiedInvalidations = from.invalidations;
+			isImageValid = false;
+		}
+	}
+
+	public boolean isComposited(){
+		return mode != DYNAMIC;
+	}
+
+	/* Times the cached image had to be redrawn, and times it could just be blitted */
+	public long getRebuildCount(){
+		return rebuilds;
+	}
+
+	public long getReuseCount(){
+		return reuses;
+	}
+
+	/* The layer as a width x height image, redrawn first if the contents changed since last time */
+	BufferedImage getImage(Sprites sprites, int width, int height){
+		if(image == null || image.getWidth() != width || image.getHeight() != height){
+			image = createImage(width, height, isBottom ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+			isImageValid = false;
+		}
+		if(isImageValid && isImageCurrent()){
+			reuses++;
+			return image;
+		}
+		Graphics2D g2d = image.createGraphics();
+		try {
+			if(isBottom){
+				g2d.setColor(Color.black);
+			}else{
+				g2d.setComposite(AlphaComposite.Src);
+				g2d.setColor(new Color(0, 0, 0, 0));
+			}
+			g2d.fillRect(0, 0, width, height);
+			g2d.setComposite(AlphaComposite.SrcOver);
+			Renderer.drawLayer(g2d, this, sprites, 1.0f, null);
+		} finally {
+			g2d.dispose();
+		}
+		remember();
+		isImageValid = true;
+		rebuilds++;
+		return image;
+	}
+
+	/* Is what's been submitted the same as what the image was drawn from? */
+	private boolean isImageCurrent(){
+		if(!draws.isSameAs(imageDraws) || strings.size() != imageTexts.size())
+			return false;
+		for(int i = 0; i < strings.size(); i++){
+			gameString s = strings.get(i);
+			if(imageStringInfo[i * 3] != s.getColor().getRGB() || imageStringInfo[i * 3 + 1] != s.getX() || imageStringInfo[i * 3 + 2] != s.getY()
+					|| !imageTexts.get(i).equals(s.toString()) || !imageFonts.get(i).equals(s.getFont()))
+				return false;
+		}
+		return true;
+	}
+
+	private void remember(){
+		imageDraws.copyFrom(draws);
+		imageTexts.clear();
+		imageFonts.clear();
+		if(imageStringInfo.length < strings.size() * 3)
+			imageStringInfo = new int[strings.size() * 3 * 2];
+		for(int i = 0; i < strings.size(); i++){
+			gameString s = strings.get(i);
+			imageTexts.add(s.toString());
+			imageFonts.add(s.getFont());
+			imageStringInfo[i * 3] = s.getColor().getRGB();
+			imageStringInfo[i * 3 + 1] = s.getX();
+			imageStringInfo[i * 3 + 2] = s.getY();
+		}
+	}
+
+	void draw(Graphics g, Sprites sprites, int width, int height){
+		if(isEmpty())		return;		// The frame starts out black anyway
+		g.drawImage(getImage(sprites, width, height), 0, 0, null);
+	}
+
+	public String toString(){
+		String[] modes = { "dynamic", "cached", "static" };
+		if(mode == DYNAMIC)
+			return name + " (dynamic)";
+		return String.format("%s (%s): %d redraws, %d reuses", name, modes[mode], rebuilds, reuses);
+	}
+
+	private static BufferedImage createImage(int width, int height, int transparency){
+		if(GraphicsEnvironment.isHeadless()){
+			int type = transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE;
+			return new BufferedImage(width, height, type);
+		}
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+				.getDefaultConfiguration().createCompatibleImage(width, height, transparency);
+	}
+}
@@ -0,0 +1,79 @@
+package gameloop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import Data.gameString;
+import Graphics.DrawBuffer;
+
+/* The scene as a stack of layers, drawn bottom to top:
+ * BACKGROUND	- static by default: submitted once, drawn into an image once, then just blitted every frame
+ * WORLD		- cached by default: things that hardly ever change (tiles, props) are resubmitted every frame, but
+ *				  only redrawn into the layer image when they do change
+ * ACTORS		- dynamic: Control's front buffer (the player, pickups, anything that moves)
+ * UI			- dynamic: Control's strings
+ * OVERLAY		- dynamic: Control's overlay buffer (mouse cursors and the like)
+ * Any layer's mode can be changed with get(layer).setMode(...). The bottom layer's image is opaque, so blitting
+ * it is a straight copy. */
+
+public class SceneLayers{
+	public static final int BACKGROUND = 0;
+	public static final int WORLD = 1;
+	public static final int ACTORS = 2;
+	public static final int UI = 3;
+	public static final int OVERLAY = 4;
+	public static final int COUNT = 5;
+
+	private final int width, height;
+	private final SceneLayer[] layers;
+
+	/* actors, strings and overlays become the ACTORS, UI and OVERLAY layers */
+	public SceneLayers(int width, int height, DrawBuffer actors, List<gameString> strings, DrawBuffer overlays){
+		this.width = width;
+		this.height = height;
+		layers = new SceneLayer[COUNT];
+		layers[BACKGROUND] = new SceneLayer("background", SceneLayer.STATIC);
+		layers[WORLD] = new SceneLayer("world", SceneLayer.CACHED);
+		layers[ACTORS] = new SceneLayer("actors", SceneLayer.DYNAMIC, actors, new ArrayList<gameString>());
+		layers[UI] = new SceneLayer("ui", SceneLayer.DYNAMIC, new DrawBuffer(), strings);
+		layers[OVERLAY] = new SceneLayer("overlay", SceneLayer.DYNAMIC, overlays, new ArrayList<gameString>());
+		layers[BACKGROUND].setBottom(true);
+	}
+
+	public SceneLayer get(int layer){
+		return layers[layer];
+	}
+
+	public int size(){
+		return layers.length;
+	}
+
+	public int getWidth(){
+		return width;
+	}
+
+	public int getHeight(){
+		return height;
+	}
+
+	/* A copy of every layer of other as it is right now (see RenderSnapshot); the sizes must match */
+	public void copyFrom(SceneLayers other){
+		if(other.width != width || other.height != height || other.layers.length != layers.length)
+			throw new IllegalArgumentException("Scenes aren't the same size");
+		for(int i = 0; i < layers.length; i++)
+			layers[i].copyFrame(other.layers[i]);
+	}
+
+	/* Clears everything that gets resubmitted every frame (static layers keep their contents) */
+	public void clearFrame(){
+		for(int i = 0; i < layers.length; i++)
+			layers[i].clearFrame();
+	}
+
+	public String toString(){
+		StringBuilder sb = new StringBuilder("layers:");
+		for(int i = 0; i < layers.length; i++)
+			sb.append(i == 0 ? " " : ", ").append(layers[i]);
+		return sb.toString();
+	}
+}
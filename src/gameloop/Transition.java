@@ -0,0 +1,146 @@
+package gameloop;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/* Draws a screen transition over the finished frame. "amount" is how much of the new frame is covered:
+ * 0 = not at all, 1 = completely. So a fade out goes 0 -> 1 and a fade in goes 1 -> 0.
+ * FADE			- blends a solid color over the frame
+ * CROSS_FADE	- blends a snapshot of the old scene over the new one (see captureScene)
+ * WIPE			- covers the left part of the frame with the snapshot if there is one, otherwise with the color
+ * Nothing here allocates per frame. A fade is one blended fill in the fade color at that alpha (each alpha level's
+ * Color is made once), the composites come from a table, and the snapshot is only made again when the screen size
+ * changes. */
+
+public class Transition{
+	public static final int FADE = 0;
+	public static final int CROSS_FADE = 1;
+	public static final int WIPE = 2;
+
+	private static final int ALPHA_LEVELS = 256;
+	private static final AlphaComposite[] composites = new AlphaComposite[ALPHA_LEVELS];
+
+	private int type;
+	private Color color;
+	private BufferedImage snapshot;
+	private boolean hasSnapshot;
+	private Color[] levelColors;			// The fade color at each alpha level, made as needed
+
+	public Transition(){
+		this(FADE);
+	}
+
+	public Transition(int type){
+		setType(type);
+		color = Color.BLACK;
+		levelColors = new Color[ALPHA_LEVELS];
+		hasSnapshot = false;
+	}
+
+	public void setType(int type){
+		if(type < FADE || type > WIPE)		throw new IllegalArgumentException("Unknown transition type " + type);
+		this.type = type;
+	}
+
+	public int getType(){
+		return type;
+	}
+
+	public void setColor(Color c){
+		if(c == null)		throw new NullPointerException();
+		if(c.equals(color))	return;
+		color = c;
+		levelColors = new Color[ALPHA_LEVELS];
+	}
+
+	/* Graphics to draw the old scene into (the caller disposes it). The image is kept and reused while the size stays the same. */
+	public Graphics2D beginCapture(int width, int height){
+		if(snapshot == null || snapshot.getWidth() != width || snapshot.getHeight() != height)
+			snapshot = createImage(width, height, Transparency.OPAQUE);
+		hasSnapshot = true;
+		return snapshot.createGraphics();
+	}
+
+	public boolean hasSnapshot(){
+		return hasSnapshot;
+	}
+
+	/* Forget the old scene (the image is kept for the next capture) */
+	public void clearSnapshot(){
+		hasSnapshot = false;
+	}
+
+	public void draw(Graphics g, int width, int height, float amount){
+		if(amount <= 0.0f)			return;
+		if(amount > 1.0f)			amount = 1.0f;
+		boolean isSnapshotReady = hasSnapshot && snapshot.getWidth() == width && snapshot.getHeight() == height;
+
+		if(type == WIPE){
+			int covered = Math.round(width * amount);
+			if(isSnapshotReady){
+				g.drawImage(snapshot, 0, 0, covered, height, 0, 0, covered, height, null);
+			}else{
+				g.setColor(color);
+				g.fillRect(0, 0, covered, height);
+			}
+			return;
+		}
+
+		if(type == CROSS_FADE && isSnapshotReady){
+			Graphics2D g2d = (Graphics2D) g;
+			Composite old = g2d.getComposite();
+			g2d.setComposite(getComposite(amount));
+			g2d.drawImage(snapshot, 0, 0, null);
+			g2d.setComposite(old);
+			return;
+		}
+
+		// One pass over the screen: the fill itself is blended (a translucent color draws SRC_OVER)
+		g.setColor(getLevelColor(toLevel(amount)));
+		g.fillRect(0, 0, width, height);
+	}
+
+	/* The fade color with its alpha scaled to level */
+	private Color getLevelColor(int level){
+		Color c = levelColors[level];
+		if(c == null){
+			c = new Color(color.getRed(), color.getGreen(), color.getBlue(), color.getAlpha() * level / (ALPHA_LEVELS - 1));
+			levelColors[level] = c;
+		}
+		return c;
+	}
+
+	private static int toLevel(float alpha){
+		int level = Math.round(alpha * (ALPHA_LEVELS - 1));
+		if(level < 0)						return 0;
+		if(level > ALPHA_LEVELS - 1)		return ALPHA_LEVELS - 1;
+		return level;
+	}
+
+	/* SRC_OVER at one of 256 alpha steps, made once each */
+	static AlphaComposite getComposite(float alpha){
+		int level = toLevel(alpha);
+		if(level == ALPHA_LEVELS - 1)			return AlphaComposite.SrcOver;
+		AlphaComposite ac = composites[level];
+		if(ac == null){
+			ac = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, level / (float) (ALPHA_LEVELS - 1));
+			composites[level] = ac;
+		}
+		return ac;
+	}
+
+	private static BufferedImage createImage(int width, int height, int transparency){
+		if(GraphicsEnvironment.isHeadless()){
+			int type = transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE;
+			return new BufferedImage(width, height, type);
+		}
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+				.getDefaultConfiguration().createCompatibleImage(width, height, transparency);
+	}
+}
@@ -0,0 +1,67 @@
+package gameloop;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Hands the newest of a stream of objects from exactly one producer thread to exactly one consumer thread, with no
+ * locks and no waiting on either side. There are three slots: the producer fills its back slot and publish() swaps
+ * it with the middle one; the consumer's acquire() swaps the middle one with its front slot if something new was
+ * published since. Each side only ever touches its own slot, so a slot is never read while it's being written.
+ * If the producer publishes twice before the consumer looks, the older one is simply never seen (publish() says
+ * so, so anything in it that mustn't be lost can be carried over). The swaps are one atomic exchange each. */
+
+public class TripleBuffer<T>{
+	private static final int FRESH = 4;		// Set in middle while it holds something the consumer hasn't taken
+
+	private final Object[] slots;
+	private final AtomicInteger middle;
+	private int back, front;				// Producer's and consumer's slots, each only touched by its own thread
+	private long published, skipped;		// Producer's counts
+
+	public TripleBuffer(T a, T b, T c){
+		if(a == null || b == null || c == null)		throw new NullPointerException();
+		slots = new Object[]{ a, b, c };
+		back = 0;
+		middle = new AtomicInteger(1);
+		front = 2;
+	}
+
+	/* Producer only: the slot to fill next */
+	@SuppressWarnings("unchecked")
+	public T getBack(){
+		return (T) slots[back];
+	}
+
+	/* Producer only. Makes the back slot the newest, and getBack() is a different slot afterwards. True if the slot
+	 * getBack() now returns was published earlier and never acquired (the consumer skipped it). */
+	public boolean publish(){
+		int old = middle.getAndSet(back | FRESH);
+		back = old & ~FRESH;
+		published++;
+		if((old & FRESH) == 0)		return false;
+		skipped++;
+		return true;
+	}
+
+	/* Consumer only. Takes the newest published slot as the front one; false (front unchanged) if nothing new was
+	 * published since last time. */
+	public boolean acquire(){
+		if((middle.get() & FRESH) == 0)		return false;
+		front = middle.getAndSet(front) & ~FRESH;
+		return true;
+	}
+
+	/* Consumer only: the slot last acquired (the third slot, unused, until acquire() first returns true) */
+	@SuppressWarnings("unchecked")
+	public T getFront(){
+		return (T) slots[front];
+	}
+
+	/* Producer only: slots published so far, and how many of them the consumer never saw */
+	public long getPublishedCount(){
+		return published;
+	}
+
+	public long getSkippedCount(){
+		return skipped;
+	}
+}
@@ -2,29 +2,49 @@ package gameloop;
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.image.BufferedImage;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.util.List;
 
 import Data.gameString;
-import Graphics.Graphic;
+import Graphics.DrawBuffer;
+import Graphics.Display;
 import Graphics.Sprites;
+import timer.FrameProfiler;
 
 public class gameLoop{
-	Graphic _gph;
-	List<gameString> _gs;
-	Sprites _sps, _overlays;
-	BufferedImage _fade;
+	Display _gph;
+	SceneLayers _scene;
+	Sprites _sprites;
+	Transition _transition;
+	int _transitionType;		// Applied to _transition by whichever thread draws (see run(RenderSnapshot))
+	int _appliedType;			// What was applied last, so a type set on getTransition() directly sticks
 	float _alpha;
 	boolean _isFade;
+	boolean _isCaptureRequested;
+	float _interpolation;
+	DirtyRegions _dirty;		// null = redraw the whole screen every frame
+	long _presentNanos;			// When show() last returned
+	FrameProfiler _profiler;
 	
-	public gameLoop(Graphic gph, List<gameString> gs, Sprites sps, Sprites overlays){
-		if(gph == null)		throw new NullPointerException();
+	/* draws, gs and overlays become the ACTORS, UI and OVERLAY layers of a new scene */
+	public gameLoop(Display gph, List<gameString> gs, Sprites sprites, DrawBuffer draws, DrawBuffer overlays){
+		this(gph, new SceneLayers(gph.getWidth(), gph.getHeight(), draws, gs, overlays), sprites);
+	}
+	
+	public gameLoop(Display gph, SceneLayers scene, Sprites sprites){
+		if(gph == null || scene == null)		throw new NullPointerException();
 		_gph = gph;
-		_gs = gs;
-		_sps = sps;
-		_overlays = overlays;
+		_scene = scene;
+		_sprites = sprites;
+		_transition = new Transition();
+		_transitionType = _transition.getType();
+		_appliedType = _transitionType;
 		_isFade = false;
+		_isCaptureRequested = false;
 		_alpha = 0.0f;
+		_interpolation = 1.0f;
+		_profiler = new FrameProfiler(1);		// Off until setProfiler
 	}
 	
 	public void setFade(boolean isFadeOn){
@@ -43,25 +63,147 @@ public class gameLoop{
 			_alpha = 0.0f;
 	}
 	
+	public float getAlphaFade(){
+		return _alpha;
+	}
+	
+	/* Transition.FADE, CROSS_FADE or WIPE. setFade turns it on, setAlphaFade drives it (0 = new scene, 1 = fully covered). */
+	public void setTransition(int type){
+		if(type < Transition.FADE || type > Transition.WIPE)		throw new IllegalArgumentException("Unknown transition type " + type);
+		_transitionType = type;
+	}
+	
+	public int getTransitionType(){
+		return _transitionType;
+	}
+	
+	public Transition getTransition(){
+		return _transition;
+	}
+	
+	/* Keep the next frame as the "old scene" for cross-fades and wipes. Grabbed once, not every frame. */
+	public void captureScene(){
+		_isCaptureRequested = true;
+	}
+	
+	/* The capture request, once (RenderSnapshot takes it to the render thread) */
+	boolean takeCaptureRequest(){
+		boolean was = _isCaptureRequested;
+		_isCaptureRequested = false;
+		return was;
+	}
+	
+	/* How far between the last two simulation ticks the next frame is (0 = previous tick, 1 = latest tick) */
+	public void setInterpolation(float t){
+		_interpolation = t;
+		if(_interpolation > 1.0f)		// Bounds checking!
+			_interpolation = 1.0f;
+		if(_interpolation < 0.0f)
+			_interpolation = 0.0f;
+	}
+	
+	/* Only redraw what changed since the buffer being drawn into was last shown (see DirtyRegions) */
+	public void setDirtyRects(boolean isOn){
+		if(!isOn)
+			_dirty = null;
+		else if(_dirty == null)
+			_dirty = new DirtyRegions(_gph.getWidth(), _gph.getHeight(),
+					DirtyRegions.getBufferAge(_gph.getBufferStrategy().getCapabilities()));
+	}
+	
+	public SceneLayers getScene(){
+		return _scene;
+	}
+	
+	/* null when dirty rectangles are off. Has the pixels-redrawn counts. */
+	public DirtyRegions getDirtyRegions(){
+		return _dirty;
+	}
+	
+	/* Times CLEAR, RENDER and SHOW into p */
+	public void setProfiler(FrameProfiler p){
+		if(p == null)		throw new NullPointerException();
+		_profiler = p;
+	}
+	
+	/* System.nanoTime() right after the last frame was shown (for measuring latency up to the screen) */
+	public long getLastPresentNanos(){
+		return _presentNanos;
+	}
+	
 	public void run(){
 		/* This will handle the game loop */
+		present(_scene, _isFade, _alpha, _transitionType, takeCaptureRequest());
+	}
+	
+	/* Two-thread mode: draws snap instead of the live scene, with the transition settings it was captured with. The
+	 * setters above are then only the simulation's side of things; this only reads snap and the render settings. */
+	public void run(RenderSnapshot snap){
+		present(snap.getScene(), snap.isFade(), snap.getFadeAmount(), snap.getTransitionType(), snap.takeCaptureRequest());
+	}
+	
+	private void present(SceneLayers scene, boolean isFade, float alpha, int transitionType, boolean isCapture){
+		if(transitionType != _appliedType){
+			_transition.setType(transitionType);
+			_appliedType = transitionType;
+		}
+		if(isCapture){
+			Graphics2D g = _transition.beginCapture(_gph.getWidth(), _gph.getHeight());
+			try {
+				g.setColor(Color.black);
+				g.fillRect(0, 0, _gph.getWidth(), _gph.getHeight());
+				Renderer.renderScene(g, scene, _sprites, _interpolation, null);
+			} finally {
+				g.dispose();
+			}
+		}
+		if(_dirty != null)
+			_dirty.update(scene, _sprites, _interpolation, isFade);
+		boolean isRestored, isLost;
 		do{
 			do{
 				Graphics g = null;
 	            try {
 	               g = _gph.getGraph();
-	               g.clearRect(0, 0, _gph.getWidth(), _gph.getHeight());
-	               g.setColor(Color.black);
-	               g.fillRect(0, 0, _gph.getWidth(), _gph.getHeight());
-	               Renderer.render(g, _gs, _sps, _overlays, _alpha, _isFade);
+	               if(_dirty == null || _dirty.isFullFrame()){
+	            	   _profiler.begin(FrameProfiler.CLEAR);
+	            	   g.clearRect(0, 0, _gph.getWidth(), _gph.getHeight());
+	            	   g.setColor(Color.black);
+	            	   g.fillRect(0, 0, _gph.getWidth(), _gph.getHeight());
+	            	   _profiler.end(FrameProfiler.CLEAR);
+	            	   _profiler.begin(FrameProfiler.RENDER);
+	            	   Renderer.render(g, scene, _sprites, isFade ? _transition : null, alpha, _interpolation);
+	            	   _profiler.end(FrameProfiler.RENDER);
+	               }else{
+	            	   // Same as above, one dirty rectangle at a time
+	            	   for(int i = 0; i < _dirty.getRectCount(); i++){
+	            		   Rectangle r = _dirty.getRect(i);
+	            		   g.setClip(r.x, r.y, r.width, r.height);
+	            		   _profiler.begin(FrameProfiler.CLEAR);
+	            		   g.setColor(Color.black);
+	            		   g.fillRect(r.x, r.y, r.width, r.height);
+	            		   _profiler.end(FrameProfiler.CLEAR);
+	            		   _profiler.begin(FrameProfiler.RENDER);
+	            		   Renderer.renderScene(g, scene, _sprites, _interpolation, r);
+	            		   _profiler.end(FrameProfiler.RENDER);
+	            	   }
+	               }
 	            } finally {
 	               if( g != null ) {
 	                  g.dispose();
 	               }
 	            }
-
-			}while(_gph.getBufferStrategy().contentsRestored());
+	            isRestored = _gph.getBufferStrategy().contentsRestored();
+	            if(isRestored && _dirty != null)
+	            	_dirty.invalidate();			// The buffer was wiped, draw all of it again
+			}while(isRestored);
+			_profiler.begin(FrameProfiler.SHOW);
 			_gph.getBufferStrategy().show();
-		}while(_gph.getBufferStrategy().contentsLost());
+			_presentNanos = System.nanoTime();
+			isLost = _gph.getBufferStrategy().contentsLost();
+			_profiler.end(FrameProfiler.SHOW);
+			if(isLost && _dirty != null)
+				_dirty.invalidate();
+		}while(isLost);
 	}
 }
\ No newline at end of file
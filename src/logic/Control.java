@@ -7,43 +7,116 @@ import java.awt.Font;
 import java.awt.GraphicsEnvironment;
 import java.awt.MouseInfo;
 import java.awt.Point;
+import java.awt.event.KeyEvent;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
-import java.util.StringTokenizer;
+import java.util.Locale;
 
 import Data.Sprite;
 import Data.gameString;
-import FileIO.EZFileRead;
+import Graphics.AnimationClips;
+import Graphics.AssetLoader;
+import Graphics.AssetPack;
+import Graphics.Display;
+import Graphics.DrawBuffer;
+import Graphics.GlyphAtlas;
 import Graphics.Graphic;
+import Graphics.HeadlessGraphic;
+import Graphics.SpriteAtlas;
+import Graphics.SpriteCache;
 import Graphics.Sprites;
+import Graphics.TextCache;
 import Input.Keyb;
+import Main.EntityStore;
 import Main.KeyProcessor;
 import Main.Main;
+import gameloop.DirtyRegions;
+import gameloop.RenderSnapshot;
+import gameloop.Renderer;
+import gameloop.SceneLayers;
+import gameloop.TripleBuffer;
 import gameloop.gameLoop;
+import timer.FramePacer;
+import timer.FrameProfiler;
+import timer.GameClock;
+import timer.Histogram;
+import timer.InputLatency;
+import timer.RateCounter;
 
 public class Control{
 	// Fields
-	private Graphic graphic;
+	private Display graphic;
 	private Sprites backbuffer;
-	private Sprites frontbuffer;
-	private Sprites overlaybuffer;
+	private AssetLoader loader;				// Decodes the art on worker threads
+	private SpriteCache spriteCache;		// Which of the art is in memory
+	private SpriteAtlas spriteAtlas;		// Pages the small art was copied onto, null if it wasn't
+	private AnimationClips animations;		// Every clip in "Anim.txt", shared by everything that animates
+	private DrawBuffer frontbuffer;
+	private DrawBuffer overlaybuffer;
 	private ArrayList<gameString> gs;
+	private SceneLayers scene;				// Background, world, actors (frontbuffer), UI (gs), overlay (overlaybuffer)
 	private Keyb kb;
 	private gameLoop gl;
 	private Font font;
+	private GlyphAtlas fontAtlas;			// The bold font as a glyph atlas, null if the font didn't load
 	public static boolean isMouseCoordsDisplayed;
+	private boolean isLatencyDisplayed;		// F3, or -Dgame.latencyOverlay=true to start with it on
+	private boolean isProfileDisplayed;		// F2 (turns the profiler on too)
+	private FrameProfiler profiler;
+	private FrameProfiler renderProfiler;	// Times CLEAR, RENDER and SHOW; the same as profiler unless there's a render thread
+	private String[][] profileCells;		// Readout text, [row][column]
+	private String profileRates;
+	private volatile RenderReadout renderReadout;	// The render thread's rows of the readout, with a render thread
+	private volatile LatencyReadout latencyReadout;	// The render thread's input to present times, with a render thread
+	private static final int PROFILE_REFRESH = 15;
+	private static final int[] PROFILE_COLUMNS = { 900, 1030, 1100, 1170 };
+	private InputLatency latency;
+	// Loop timing (can be set with -Dgame.tickRate=..., -Dgame.frameRate=..., -Dgame.maxCatchUp=..., -Dgame.fixedTimestep=false)
+	private boolean isFixedTimestep;
+	private int tickRate;					// Simulation updates per second
+	private int targetFrameRate;			// Rendered frames per second (0 = uncapped)
+	private int maxCatchUpSteps;			// Most updates to run back to back before drawing a frame
+	private boolean isRenderThreaded;		// -Dgame.renderThread=true: draw on a thread of its own (see twoThreadLoop)
+	private TripleBuffer<RenderSnapshot> snapshots;		// Ticks on their way to the render thread, null with one thread
+	private long tickCount, droppedFrameCount;
+	private volatile long frameCount;
+	private RateCounter tickRates, frameRates;
 	
 	// Constructor
 	public Control(){
-		graphic = new Graphic();				// Place screen into Graphics mode (1280 x 720) so we can use full screen exclusive graphic routines!
+		graphic = createDisplay();				// Place screen into Graphics mode (1280 x 720) so we can use full screen exclusive graphic routines!
 		backbuffer = new Sprites();				// Create place to store game ALL game sprites needed for project (images)
-		frontbuffer = new Sprites();			// This is the "front buffer" that goes to the renderer every frame
-		overlaybuffer = new Sprites();			// Allows things above the frontbuffer (overlays or draws on top of...things like custom mouse cursors, etc.)
+		frontbuffer = new DrawBuffer();			// This is the "front buffer" of draw commands (sprite ID, x, y, layer) that goes to the renderer every frame
+		overlaybuffer = new DrawBuffer();		// Allows things above the frontbuffer (overlays or draws on top of...things like custom mouse cursors, etc.)
 		gs = new ArrayList<>();					// Set up for our gamestrings (graphical text printing; System.out.println doesn't work in graphics mode!)
+		isFixedTimestep = !"false".equalsIgnoreCase(System.getProperty("game.fixedTimestep"));
+		setTickRate(Integer.getInteger("game.tickRate", 50));				// 50 Hz = one 20 ms player move step per tick
+		setTargetFrameRate(Integer.getInteger("game.frameRate", 60));
+		setMaxCatchUpSteps(Integer.getInteger("game.maxCatchUp", 5));
+		isRenderThreaded = Boolean.getBoolean("game.renderThread");
+		tickRates = new RateCounter();
+		frameRates = new RateCounter();
 		setupFont();							// Set up our program to use a font custom (stored in "Font" subfolder)
-		loadArtIntoBackBuffer();				// Lods the art referenced in "Art.txt" into the backbuffer of sprites
+		loader = AssetLoader.fromSystemProperties();
+		loadArtIntoBackBuffer();				// Lods the art referenced in "Art.txt" into the backbuffer of sprites (from Art.pack if it's up to date, in the background; the first frame waits for what it draws)
+		animations = AnimationClips.read("Anim.txt", backbuffer);		// The animation clips (frames are tags from "Art.txt")
+		setupFontAtlas();						// Rasterize the font once for text that changes every frame (while the art decodes)
+		placeSpriteAtlas();						// Give the small art spots on shared pages so frames draw from a couple of surfaces (copied over as it loads)
 		kb = new Keyb();						// Initialize the keyboard handler
-		gl = new gameLoop(graphic, gs, frontbuffer, overlaybuffer);		// Sets up our render loop
+		setupInputLatency();
+		scene = new SceneLayers(graphic.getWidth(), graphic.getHeight(), frontbuffer, gs, overlaybuffer);
+		gl = new gameLoop(graphic, scene, backbuffer);					// Sets up our render loop
+		if(isRenderThreaded)
+			snapshots = new TripleBuffer<RenderSnapshot>(new RenderSnapshot(graphic.getWidth(), graphic.getHeight()),
+					new RenderSnapshot(graphic.getWidth(), graphic.getHeight()), new RenderSnapshot(graphic.getWidth(), graphic.getHeight()));
+		setupProfiler();
+		setupDirtyRects();
+		setupRates();
 		graphic.setKeyListener(kb);										// Sets our graphics handler up to listen for keyboard input (Asynchronous!)
 		Main.start();
 	}
@@ -51,46 +124,569 @@ public class Control{
 	// Methods
 	// WARNING! DO NOT MODIFY THE CODE IN HERE! THIS IS HERE TO GET THE GAME LIBRARY TO WORK!
 	public void gameLoop(){
-		char key = kb.getInputCodeX();
+		if(isRenderThreaded)
+			twoThreadLoop();
+		else if(isFixedTimestep)
+			fixedTimestepLoop();
+		else
+			variableTimestepLoop();
+	}
+	
+	/* Original loop: one update per rendered frame, as fast as the machine can go */
+	private void variableTimestepLoop(){
 		/* "Infinite" loop here...*/
 		while(true){
-			KeyProcessor.processKey(key);										// Check for keyboard key press
-			Main.update(this);													// This is where the student codes inside of
+			runTick();															// Keyboard, then Main.update (where the student codes)
 			if(isMouseCoordsDisplayed)
-				drawString(1110, 20, getMouseCoords(), Color.white);
+				drawDynamicString(1110, 20, getMouseCoords(), Color.white);
 			gl.run(); 															// Render the graphical data for the frame!
-			frontbuffer.clearSprites(); 										// Clear the front sprite buffer for the next frame
-			overlaybuffer.clearSprites(); 										// Clears the overlay buffer for the next frame
-			gs.clear(); 														// Clears all of the gameStrings for that frame
-			key = kb.getInputCodeX(); 											// Get keyboard input for next pass
+			latency.presented(gl.getLastPresentNanos());
+			frameRates.mark(gl.getLastPresentNanos());
+			profiler.endFrame();
+			endArtFrame();														// Art that wasn't drawn can be dropped now if it's over budget, art that's loaded goes on the atlas
+			scene.clearFrame();													// Clears the draw commands and gameStrings for the next frame (static layers stay)
+			tickCount++;
+			frameCount++;
+		}
+	}
+	
+	/* Updates run at exactly tickRate per second of simulation time, and frames are drawn in between at up to
+	 * targetFrameRate with positions interpolated between the last two ticks. If we fall behind, up to
+	 * maxCatchUpSteps updates run back to back before the next frame is drawn (frames get dropped, simulation
+	 * time doesn't). */
+	private void fixedTimestepLoop(){
+		long tickNanos = 1000000000L / tickRate;
+		long maxBacklog = tickNanos * tickRate;				// Give up on catching up past 1 second behind
+		long previous = System.nanoTime();
+		long nextFrame = previous;
+		long accumulator = tickNanos;						// Run the first update right away
+		GameClock.startSimulation(previous);
+		while(true){
+			long now = System.nanoTime();
+			accumulator += now - previous;
+			previous = now;
+			if(accumulator > maxBacklog)
+				accumulator = maxBacklog;
+			
+			int steps = 0;
+			while(accumulator >= tickNanos && steps < maxCatchUpSteps){
+				tick();
+				GameClock.advance(tickNanos);
+				accumulator -= tickNanos;
+				steps++;
+			}
+			
+			long frameNanos = targetFrameRate > 0 ? 1000000000L / targetFrameRate : 0;
+			now = System.nanoTime();
+			if(frameNanos == 0){
+				if(steps > 1)
+					droppedFrameCount += steps - 1;
+				drawFrame(accumulator, tickNanos);
+			}else if(now >= nextFrame){
+				long late = now - nextFrame;
+				if(late >= frameNanos){								// Missed whole frames; skip them rather than draw a burst
+					droppedFrameCount += late / frameNanos;
+					nextFrame = now;
+				}
+				drawFrame(accumulator, tickNanos);
+				nextFrame += frameNanos;
+			}
+			
+			// Sleep until the next frame or the next update is due, whichever comes first
+			if(frameNanos > 0){
+				long nextTick = previous + (tickNanos - accumulator);	// accumulator is as of previous, not now
+				FramePacer.sleepUntil(Math.min(nextFrame, nextTick));
+			}
+		}
+	}
+	
+	private void drawFrame(long accumulator, long tickNanos){
+		gl.setInterpolation((float) accumulator / tickNanos);
+		gl.run();
+		latency.presented(gl.getLastPresentNanos());
+		frameRates.mark(gl.getLastPresentNanos());
+		profiler.endFrame();
+		endArtFrame();
+		frameCount++;
+	}
+	
+	/* Two threads: this one only runs ticks, at tickRate, and after each one copies what it drew into a RenderSnapshot
+	 * and publishes it; a render thread draws the newest published snapshot at up to targetFrameRate, interpolated
+	 * from when that tick was due. Neither ever waits for the other (see TripleBuffer), so a slow show() doesn't hold
+	 * up the simulation and a slow update doesn't hold up frames (the same tick just gets drawn again). Anything that
+	 * touches the sprite images (drawing, the SpriteCache, prefetching) happens on the render thread. */
+	private void twoThreadLoop(){
+		final long tickNanos = 1000000000L / tickRate;
+		long maxBacklog = tickNanos * tickRate;				// Give up on catching up past 1 second behind
+		Thread render = new Thread("render"){
+			public void run(){
+				renderLoop(tickNanos);
+			}
+		};
+		render.setDaemon(true);
+		long due = System.nanoTime();
+		GameClock.startSimulation(due);
+		render.start();
+		while(true){
+			tick();
+			GameClock.advance(tickNanos);
+			snapshots.getBack().capture(scene, gl, tickCount, due);
+			boolean isSkipped = snapshots.publish();
+			snapshots.getBack().recycle(isSkipped);					// A skipped snapshot's presses and prefetches go out with the next one
+			profiler.endFrame();									// On this thread a profiler "frame" is a tick
+			due += tickNanos;
+			long now = System.nanoTime();
+			if(now - due > maxBacklog)
+				due = now;
+			FramePacer.sleepUntil(due);
+		}
+	}
+	
+	/* The render thread: newest snapshot, drawn at up to targetFrameRate */
+	private void renderLoop(long tickNanos){
+		while(!snapshots.acquire())
+			FramePacer.sleepUntil(System.nanoTime() + 1000000);		// Nothing to draw before the first tick
+		long nextFrame = System.nanoTime();
+		while(true){
+			snapshots.acquire();
+			RenderSnapshot snap = snapshots.getFront();
+			for(int i = 0; i < snap.getPrefetchCount(); i++)
+				backbuffer.getSpriteById(snap.getPrefetchId(i)).prefetch();
+			if(renderProfiler.isEnabled() != profiler.isEnabled())	// F2 is handled on the simulation thread
+				renderProfiler.setEnabled(profiler.isEnabled());
+			gl.setInterpolation((float) (System.nanoTime() - snap.getTickNanos()) / tickNanos);
+			gl.run(snap);
+			long shown = gl.getLastPresentNanos();
+			for(int i = 0; i < snap.getPressCount(); i++)
+				latency.recordPresent(snap.getPressNanos(i), shown);
+			if(snap.getPressCount() > 0)
+				publishLatencyReadout();
+			snap.clearPending();
+			renderProfiler.endFrame();
+			endArtFrame();
+			frameRates.mark(shown);
+			frameCount++;
+			if(renderProfiler.isEnabled() && frameCount % PROFILE_REFRESH == 0)
+				publishRenderReadout();
+			
+			long frameNanos = targetFrameRate > 0 ? 1000000000L / targetFrameRate : 0;
+			if(frameNanos > 0){
+				nextFrame += frameNanos;
+				long late = System.nanoTime() - nextFrame;
+				if(late >= frameNanos){								// Missed whole frames; skip them rather than draw a burst
+					droppedFrameCount += late / frameNanos;
+					nextFrame += late / frameNanos * frameNanos;
+				}
+				FramePacer.sleepUntil(nextFrame);
+			}
+		}
+	}
+	
+	/* One simulation step: input, game logic, and this tick's draw commands (public so it can be benchmarked) */
+	public void tick(){
+		scene.clearFrame();
+		runTick();
+		if(isMouseCoordsDisplayed)
+			drawDynamicString(1110, 20, getMouseCoords(), Color.white);
+		tickCount++;
+	}
+	
+	/* Input and game logic for one tick, timed by the profiler */
+	private void runTick(){
+		profiler.begin(FrameProfiler.INPUT);
+		kb.poll();
+		profiler.end(FrameProfiler.INPUT);
+		profiler.begin(FrameProfiler.KEYS);
+		KeyProcessor.processInput(kb);
+		profiler.end(FrameProfiler.KEYS);
+		profiler.begin(FrameProfiler.UPDATE);
+		Main.update(this);
+		profiler.end(FrameProfiler.UPDATE);
+		traceInput();
+		tickRates.mark(System.nanoTime());
+		if(kb.wasPressed(KeyEvent.VK_F2)){
+			isProfileDisplayed = !isProfileDisplayed;
+			if(isProfileDisplayed)
+				profiler.setEnabled(true);
+		}
+		if(isProfileDisplayed)
+			drawProfile();
+	}
+	
+	/* Phase times, top right: average over the last second or so, and percentiles since the start. The text is only
+	 * remade every PROFILE_REFRESH ticks so the readout itself doesn't cost much. */
+	private void drawProfile(){
+		if(profileCells == null || tickCount % PROFILE_REFRESH == 0){
+			if(profileCells == null){
+				profileCells = new String[FrameProfiler.PHASE_COUNT + 1][];
+				profileCells[0] = new String[]{ "phase (ms)", "avg", "p50", "p99" };
+			}
+			boolean isRenderSeparate = renderProfiler != profiler;
+			RenderReadout render = renderReadout;
+			for(int p = 0; p < FrameProfiler.PHASE_COUNT; p++){
+				if(!isRenderSeparate || p < FrameProfiler.CLEAR)
+					profileCells[p + 1] = profileRow(profiler, p);
+				else if(render != null)
+					profileCells[p + 1] = render.rows[p - FrameProfiler.CLEAR];		// Drawing is timed on the render thread
+				else
+					profileCells[p + 1] = new String[]{ FrameProfiler.getName(p), "-", "-", "-" };
+			}
+			double fps = !isRenderSeparate ? frameRates.getRate() : render != null ? render.framesPerSecond : 0.0;
+			profileRates = String.format("%.0f fps, %.0f tps", fps, tickRates.getRate());
+		}
+		for(int row = 0; row < profileCells.length; row++){
+			for(int col = 0; col < PROFILE_COLUMNS.length; col++)
+				drawDynamicString(PROFILE_COLUMNS[col], 60 + row * 18, profileCells[row][col], Color.green);
+		}
+		drawDynamicString(PROFILE_COLUMNS[0], 60 + profileCells.length * 18, profileRates, Color.green);
+	}
+	
+	private static String[] profileRow(FrameProfiler fp, int phase){
+		Histogram h = fp.getHistogram(phase);
+		return new String[]{ FrameProfiler.getName(phase), String.format("%.2f", fp.getRollingAverage(phase, 60) / 1e6),
+				String.format("%.2f", h.getValueAtPercentile(50) / 1e6), String.format("%.2f", h.getValueAtPercentile(99) / 1e6) };
+	}
+	
+	/* On the render thread: its rows of the readout, made from its own profiler and handed over whole, so the
+	 * simulation thread never reads a profiler or counter the render thread is writing */
+	private void publishRenderReadout(){
+		String[][] rows = new String[FrameProfiler.PHASE_COUNT - FrameProfiler.CLEAR][];
+		for(int p = FrameProfiler.CLEAR; p < FrameProfiler.PHASE_COUNT; p++)
+			rows[p - FrameProfiler.CLEAR] = profileRow(renderProfiler, p);
+		renderReadout = new RenderReadout(rows, frameRates.getRate());
+	}
+	
+	/* One published copy of the render thread's readout; never changed after it's made */
+	private static final class RenderReadout{
+		final String[][] rows;					// CLEAR to the last phase
+		final double framesPerSecond;
+		
+		RenderReadout(String[][] rows, double framesPerSecond){
+			this.rows = rows;
+			this.framesPerSecond = framesPerSecond;
+		}
+	}
+	
+	// Per-phase frame times (off unless -Dgame.profiler=true or F2 turned it on); Main.update can time its own parts with it
+	public FrameProfiler getProfiler(){
+		return profiler;
+	}
+	
+	/* Marks this tick's key presses as handled (for InputLatency), and F3 toggles the latency readout */
+	private void traceInput(){
+		long now = System.nanoTime();
+		for(int i = 0; i < kb.getPressCount(); i++){
+			if(snapshots == null){
+				latency.updated(kb.getPressNanos(i), now);
+			}else{
+				latency.recordUpdate(kb.getPressNanos(i), now);		// The render thread times the rest (see renderLoop)
+				if(!snapshots.getBack().addPress(kb.getPressNanos(i)))
+					latency.recordSkipped();
+			}
+		}
+		if(kb.wasPressed(KeyEvent.VK_F3))
+			isLatencyDisplayed = !isLatencyDisplayed;
+		if(isLatencyDisplayed){
+			String line = snapshots == null ? latencyLine(latency.getToPresent()) : latencyReadout.line;
+			drawDynamicString(20, 700, line, Color.yellow);
+		}
+	}
+	
+	private static String latencyLine(Histogram h){
+		return String.format("input to screen: p50 %.1f ms  p99 %.1f ms  max %.1f ms  (%d presses)",
+				h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(99) / 1e6, h.getMax() / 1e6, h.getCount());
+	}
+	
+	/* On the render thread, after a frame that showed some presses: the input to present times as text, since only
+	 * the render thread records them and a Histogram can't be read while it's being written */
+	private void publishLatencyReadout(){
+		Histogram h = latency.getToPresent();
+		latencyReadout = new LatencyReadout(latencyLine(h), h.toMillisString(), h.getCount());
+	}
+	
+	/* One published copy of the input to present times; never changed after it's made */
+	private static final class LatencyReadout{
+		final String line;						// The F3 readout
+		final String summary;					// Histogram.toMillisString, printed on exit
+		final long count;
+		
+		LatencyReadout(String line, String summary, long count){
+			this.line = line;
+			this.summary = summary;
+			this.count = count;
 		}
 	}
 	
+	// Key press to frame on screen times (and to the end of the update that handled them), printed on exit
+	public InputLatency getInputLatency(){
+		return latency;
+	}
+	
+	public void setFixedTimestep(boolean isFixed){
+		isFixedTimestep = isFixed;
+	}
+	
+	public void setTickRate(int ticksPerSecond){
+		if(ticksPerSecond < 1)		throw new IllegalArgumentException("Tick rate must be at least 1");
+		tickRate = ticksPerSecond;
+	}
+	
+	public int getTickRate(){
+		return tickRate;
+	}
+	
+	/* 0 means draw as many frames as possible */
+	public void setTargetFrameRate(int framesPerSecond){
+		if(framesPerSecond < 0)		throw new IllegalArgumentException("Frame rate can't be negative");
+		targetFrameRate = framesPerSecond;
+	}
+	
+	public int getTargetFrameRate(){
+		return targetFrameRate;
+	}
+	
+	public void setMaxCatchUpSteps(int steps){
+		if(steps < 1)				throw new IllegalArgumentException("Need at least 1 catch up step");
+		maxCatchUpSteps = steps;
+	}
+	
+	public int getMaxCatchUpSteps(){
+		return maxCatchUpSteps;
+	}
+	
+	public long getTickCount(){
+		return tickCount;
+	}
+	
+	public long getFrameCount(){
+		return frameCount;
+	}
+	
+	public long getDroppedFrameCount(){
+		return droppedFrameCount;
+	}
+	
+	// Measured frames and ticks per second, over the last second (they differ with the fixed timestep or a render thread)
+	public double getFramesPerSecond(){
+		return frameRates.getRate();
+	}
+	
+	public double getTicksPerSecond(){
+		return tickRates.getRate();
+	}
+	
+	public boolean isRenderThreaded(){
+		return isRenderThreaded;
+	}
+	
 	// WARNING! DO NOT MODIFY THE CODE HERE! THIS IS HERE TO GET THE GAME LIBRARY TO WORK!
 	public void drawString(int x, int y, String text, Color c){
 		gs.add(new gameString(c, x, y, text, font, 1.0f));
 	}
 	
+	// For text that changes every frame (scores, timers, coordinates): drawn from the glyph atlas instead of being cached
+	public void drawDynamicString(int x, int y, String text, Color c){
+		gameString s = new gameString(c, x, y, text, font, 1.0f);
+		s.setDynamic(true);
+		gs.add(s);
+	}
+	
+	// Measure text without a Graphics (see gameString.getCenteredXPosition and wordWrapX). null if the font didn't load.
+	public GlyphAtlas getFontAtlas(){
+		return fontAtlas;
+	}
+	
 	// WARNING! DO NOT MODIFY THE CODE HERE! THIS IS HERE TO GET THE GAME LIBRARY TO WORK!
 	public void addSpriteToFrontBuffer(int x, int y, String spriteTag){
-		Sprite s = backbuffer.getSpriteByTag(spriteTag);
-		s.moveXAbsolute(x);
-		s.moveYAbsolute(y);
-		frontbuffer.addSprite(s);
+		addSpriteToFrontBuffer(x, y, backbuffer.getSpriteId(spriteTag));
+	}
+	
+	// Draw by an ID from getSpriteId(); resolve tags once up front so there is no string work per frame
+	public void addSpriteToFrontBuffer(int x, int y, int spriteId){
+		addSpriteToFrontBuffer(x, y, spriteId, 0);
+	}
+	
+	// Same as above, but lower layers are drawn first no matter what order things were added in
+	public void addSpriteToFrontBuffer(int x, int y, int spriteId, int layer){
+		if(backbuffer.getSpriteById(spriteId) == null)
+			throw new IllegalArgumentException("No sprite with ID " + spriteId);
+		frontbuffer.add(spriteId, x, y, layer);			// The backbuffer sprite is shared, so only the command holds the position
+	}
+	
+	// For things that move: (prevX, prevY) is where it was last tick, so frames between ticks can be smoothed out
+	public void addMovingSpriteToFrontBuffer(int prevX, int prevY, int x, int y, int spriteId){
+		if(backbuffer.getSpriteById(spriteId) == null)
+			throw new IllegalArgumentException("No sprite with ID " + spriteId);
+		frontbuffer.add(spriteId, x, y, prevX, prevY, 0);
+	}
+	
+	// Every visible entity in the store, in its order (see EntityStore.submitDraws)
+	public void addEntitiesToFrontBuffer(EntityStore entities){
+		entities.submitDraws(frontbuffer);
+	}
+
+	// Commands collected somewhere else (e.g. per worker thread), after everything added so far
+	public void addDrawsToFrontBuffer(DrawBuffer draws){
+		frontbuffer.addAll(draws);
+	}
+	
+	public void addSpriteToOverlayBuffer(int x, int y, int spriteId){
+		if(backbuffer.getSpriteById(spriteId) == null)
+			throw new IllegalArgumentException("No sprite with ID " + spriteId);
+		overlaybuffer.add(spriteId, x, y);
+	}
+	
+	// Draw on one of the SceneLayers (BACKGROUND, WORLD, ...). Static layers keep what's drawn on them until clearSceneLayer.
+	public void addSpriteToSceneLayer(int sceneLayer, int x, int y, int spriteId){
+		if(backbuffer.getSpriteById(spriteId) == null)
+			throw new IllegalArgumentException("No sprite with ID " + spriteId);
+		scene.get(sceneLayer).getDraws().add(spriteId, x, y);
+	}
+	
+	public void clearSceneLayer(int sceneLayer){
+		scene.get(sceneLayer).clear();
+	}
+	
+	// Each layer can be made static, cached or dynamic with getScene().get(layer).setMode(...)
+	public SceneLayers getScene(){
+		return scene;
+	}
+	
+	// How far along loading "Art.txt" is (getProgress() for a loading screen); Sprite.isLoaded() says if one sprite is ready
+	public AssetLoader getAssetLoader(){
+		return loader;
+	}
+	
+	// Pages the small art was packed onto, with occupancy and surface count; null with a sprite budget or -Dgame.atlas=false
+	public SpriteAtlas getSpriteAtlas(){
+		return spriteAtlas;
+	}
+	
+	// Memory use, hits and misses of the art; -Dgame.spriteBudget=bytes limits how much of it stays loaded
+	public SpriteCache getSpriteCache(){
+		return spriteCache;
+	}
+	
+	// Start loading a sprite that's about to be drawn (the next room's art, say) so its first frame doesn't wait
+	public void prefetchSprite(int spriteId){
+		Sprite s = backbuffer.getSpriteById(spriteId);
+		if(s == null)				return;
+		if(snapshots != null)
+			snapshots.getBack().addPrefetch(spriteId);		// The cache belongs to the render thread
+		else
+			s.prefetch();
+	}
+	
+	// The clips from "Anim.txt"; getClipId(name) once, then EntityStore.playClip and animate do the rest
+	public AnimationClips getAnimationClips(){
+		return animations;
+	}
+	
+	// Returns Sprites.NO_SPRITE if the tag was never loaded from "Art.txt"
+	public int getSpriteId(String spriteTag){
+		return backbuffer.getSpriteId(spriteTag);
 	}
 	
 	// WARNING! DO NOT MODIFY THE CODE HERE! THIS IS HERE TO GET THE GAME LIBRARY TO WORK!
 	private void loadArtIntoBackBuffer(){
-		EZFileRead ezr = new EZFileRead("Art.txt");
-		for(int i = 0; i < ezr.getNumLines(); i++){
-			String raw = ezr.getLine(i);
-			StringTokenizer st = new StringTokenizer(raw, "*");
-			String file = st.nextToken();
-			String tag = st.nextToken();
-			backbuffer.addSprite(new Sprite(0, 0, file, tag));
+		long start = System.nanoTime();
+		AssetPack pack = openArtPack();
+		spriteCache = new SpriteCache(loader, pack, SpriteCache.budgetFromSystemProperties());
+		int packed = 0;
+		for(String[] entry : AssetPack.readList("Art.txt")){
+			Sprite s = spriteCache.add(entry[0], entry[1], AssetPack.cropOf(entry));
+			if(pack != null && pack.indexOf(entry[0]) >= 0)		packed++;
+			if(spriteCache.isUnlimited())
+				s.prefetch();					// Everything fits, so start on all of it now; with a budget sprites load as they're drawn
+			backbuffer.addSprite(s);
+		}
+		backbuffer.buildIndex();				// Normalize the tags once so every lookup after this is a hash hit
+		if(Boolean.getBoolean("game.logStartup"))
+			logArtLoadTime(start, packed);
+		if(!spriteCache.isUnlimited()){
+			Runtime.getRuntime().addShutdownHook(new Thread(){
+				public void run(){
+					System.out.println(spriteCache);
+				}
+			});
 		}
 	}
 	
+	/* Only when all the art stays in memory anyway: with a sprite budget images come and go, and an atlas page would
+	 * pin every sprite on it (-Dgame.atlas=false turns it off, see SpriteAtlas for the rest). This only works out where
+	 * each sprite goes from the sizes in the pack or the image headers; the pixels are copied in endArtFrame once they've
+	 * loaded, so startup still only waits for what the first frame draws. */
+	private void placeSpriteAtlas(){
+		if(!spriteCache.isUnlimited())		return;
+		spriteAtlas = SpriteAtlas.fromSystemProperties();
+		if(spriteAtlas == null)				return;
+		long start = System.nanoTime();
+		spriteAtlas.place(backbuffer);
+		if(Boolean.getBoolean("game.logStartup"))
+			System.out.printf("%s, placed in %.1f ms%n", spriteAtlas, (System.nanoTime() - start) / 1e6);
+	}
+	
+	/* Between frames, on the thread that draws: the cache drops what it's over budget on, and sprites that finished
+	 * loading move onto their atlas page */
+	private void endArtFrame(){
+		spriteCache.endFrame();
+		if(spriteAtlas != null && spriteAtlas.getWaitingCount() > 0 && spriteAtlas.update() == 0 && Boolean.getBoolean("game.logStartup"))
+			System.out.println(spriteAtlas);
+	}
+	
+	/* Art.pack (-Dgame.artPack, "none" to always use the PNGs) if it's there and up to date, otherwise null */
+	private static AssetPack openArtPack(){
+		String path = System.getProperty("game.artPack", "Art.pack");
+		if(path.isEmpty() || path.equalsIgnoreCase("none"))		return null;
+		File file = new File(path);
+		if(!file.exists())					return null;
+		if(!AssetPack.isUpToDate(file, "Art.txt")){
+			System.out.println(path + " is older than the art, loading the PNGs instead (rebuild it with Graphics.AssetPack)");
+			return null;
+		}
+		try {
+			return AssetPack.open(file);
+		} catch (IOException e) {
+			System.out.println("Couldn't read " + path + ", loading the PNGs instead: " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/* Waits for all the art so the time to a fully loaded game can be compared between the pack and the PNGs */
+	private void logArtLoadTime(long start, int packed){
+		for(int i = 0; i < backbuffer.size(); i++)
+			backbuffer.getSprite(i).getSprite();
+		long now = System.nanoTime();
+		long sinceLaunch = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+		System.out.printf("art: %d images (%d from the pack) loaded in %.1f ms, %d ms after launch%n",
+				backbuffer.size(), packed, (now - start) / 1e6, sinceLaunch);
+	}
+	
+	/* Full screen normally; offscreen when there's no display or -Dgame.headless=true (see HeadlessGraphic) */
+	private static Display createDisplay(){
+		if(isHeadless())
+			return HeadlessGraphic.fromSystemProperties(Main.SCREEN_WIDTH, Main.SCREEN_HEIGHT);
+		return new Graphic();
+	}
+	
+	public static boolean isHeadless(){
+		return GraphicsEnvironment.isHeadless() || Boolean.getBoolean("game.headless");
+	}
+	
+	// Held keys and this tick's presses/releases (isHeld, wasPressed, wasReleased), for more than KeyProcessor covers
+	public Keyb getKeyboard(){
+		return kb;
+	}
+	
+	public Display getDisplay(){
+		return graphic;
+	}
+	
+	// For screen transitions: setTransition, captureScene, setFade and setAlphaFade
+	public gameLoop getGameLoop(){
+		return gl;
+	}
+	
 	// WARNING! DO NOT MODIFY THE CODE HERE! THIS IS HERE TO GET THE GAME LIBRARY TO WORK!
 	private void setupFont(){
 		String fontFile = "Font/Jipatha-Regular.ttf";
@@ -103,8 +699,107 @@ public class Control{
 	       }catch (Exception e) {e.printStackTrace();}
 	}
 	
+	/* -Dgame.profileOut=file.csv (or .json) writes the per-frame times there on exit. With a render thread each thread
+	 * has a profiler of its own, and the render thread's goes to file-render.csv. */
+	private void setupProfiler(){
+		profiler = FrameProfiler.fromSystemProperties();
+		renderProfiler = isRenderThreaded ? FrameProfiler.fromSystemProperties() : profiler;
+		gl.setProfiler(renderProfiler);
+		final String out = System.getProperty("game.profileOut");
+		Runtime.getRuntime().addShutdownHook(new Thread(){
+			public void run(){
+				if(renderProfiler == profiler){
+					writeProfile(profiler, "", out);
+				}else{
+					writeProfile(profiler, "simulation thread ", out);
+					if(out != null){
+						int dot = out.lastIndexOf('.');
+						writeProfile(renderProfiler, "render thread ", dot < 0 ? out + "-render" : out.substring(0, dot) + "-render" + out.substring(dot));
+					}else{
+						writeProfile(renderProfiler, "render thread ", null);
+					}
+				}
+			}
+		});
+	}
+	
+	private static void writeProfile(FrameProfiler fp, String label, String out){
+		if(fp.getFrameCount() == 0)		return;
+		System.out.println(label + fp);
+		if(out == null)					return;
+		try {
+			Writer w = new BufferedWriter(new FileWriter(out));
+			try {
+				if(out.toLowerCase(Locale.ROOT).endsWith(".json"))
+					fp.writeJson(w);
+				else
+					fp.writeCsv(w);
+			} finally {
+				w.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Couldn't write " + out + ": " + e.getMessage());
+		}
+	}
+	
+	/* Frames and ticks per second are printed on exit with a render thread, where they're expected to differ */
+	private void setupRates(){
+		if(!isRenderThreaded)		return;
+		Runtime.getRuntime().addShutdownHook(new Thread(){
+			public void run(){
+				System.out.printf("render thread: %d frames (%.1f fps), %d ticks (%.1f tps), %d snapshots never drawn%n",
+						frameRates.getTotal(), frameRates.getAverageRate(), tickRates.getTotal(), tickRates.getAverageRate(),
+						snapshots.getSkippedCount());
+			}
+		});
+	}
+	
+	private void setupInputLatency(){
+		latency = new InputLatency();
+		isLatencyDisplayed = Boolean.getBoolean("game.latencyOverlay");
+		publishLatencyReadout();				// Nothing recorded yet, so the readout has something to show
+		Runtime.getRuntime().addShutdownHook(new Thread(){
+			public void run(){
+				if(!isRenderThreaded){
+					if(latency.getToPresent().getCount() > 0)
+						System.out.println(latency);
+					return;
+				}
+				LatencyReadout shown = latencyReadout;
+				if(shown.count > 0)
+					System.out.println("input to update: " + latency.getToUpdate().toMillisString() + "\ninput to present: " + shown.summary);
+			}
+		});
+	}
+	
+	/* -Dgame.dirtyRects=true only redraws what changed each frame, -Dgame.bufferAge=N overrides how many frames
+	 * old the back buffer is assumed to be. The share of the screen redrawn is printed on exit. */
+	private void setupDirtyRects(){
+		if(!Boolean.getBoolean("game.dirtyRects"))		return;
+		gl.setDirtyRects(true);
+		final DirtyRegions dirty = gl.getDirtyRegions();
+		Integer age = Integer.getInteger("game.bufferAge");
+		if(age != null)
+			dirty.setBufferAge(age);
+		Runtime.getRuntime().addShutdownHook(new Thread(){
+			public void run(){
+				System.out.println(dirty);
+			}
+		});
+	}
+	
+	/* Text is drawn bold (see Renderer), so that's the style the atlas is made in */
+	private void setupFontAtlas(){
+		if(font == null)		return;
+		TextCache tc = Renderer.getTextCache();
+		fontAtlas = new GlyphAtlas(tc.getFont(font, Font.BOLD));
+		fontAtlas.setKerning(Boolean.getBoolean("game.textKerning"));
+		tc.setGlyphAtlas(font, Font.BOLD, fontAtlas);
+	}
+	
 	// WARNING! DO NOT MODIFY THE CODE HERE! THIS IS HERE TO GET THE GAME LIBRARY TO WORK!
 	private static String getMouseCoords(){
+		if(isHeadless())		return "X: - , Y: -";			// No mouse to ask
 		Point p = MouseInfo.getPointerInfo().getLocation();
 		int x1 = (int) p.getX();
 		int y1 = (int) p.getY();
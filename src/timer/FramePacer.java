@@ -0,0 +1,26 @@
+package timer;
+
+/* Waits until a System.nanoTime() deadline without burning a whole core. Thread.sleep is only good to a
+ * millisecond or two (worse on some OSes), so we sleep while there's plenty of time left and then yield-spin
+ * for the last little bit to land right on the deadline. */
+
+public class FramePacer{
+	// Fields
+	private static final long SPIN_THRESHOLD = 2000000;		// Spin for the last 2 ms
+	
+	// Methods
+	public static void sleepUntil(long deadlineNanos){
+		long remaining = deadlineNanos - System.nanoTime();
+		while(remaining > SPIN_THRESHOLD){
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			remaining = deadlineNanos - System.nanoTime();
+		}
+		while(deadlineNanos - System.nanoTime() > 0)
+			Thread.yield();
+	}
+}
@@ -0,0 +1,211 @@
+package timer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/* Where frame time goes, phase by phase. begin(phase)/end(phase) pairs (they can nest: UPDATE contains MOVEMENT,
+ * COLLISION and INTERACTIONS) add up time per phase for the current frame; endFrame() files the frame away:
+ *	- each phase that ran gets its frame total recorded into that phase's Histogram
+ *	- the totals go into a ring of the last N frames, for rolling averages and for CSV/JSON export
+ * FRAME is filled in by endFrame itself: the time since the previous endFrame. Ticks and frames don't line up one to
+ * one under the fixed timestep, so a frame's INPUT/UPDATE columns hold every tick that ran since the frame before
+ * (0 if none did). All memory is allocated up front; when the profiler is off begin/end return straight away. */
+
+public class FrameProfiler{
+	public static final int FRAME = 0;
+	public static final int INPUT = 1;			// Keyb.poll
+	public static final int KEYS = 2;			// KeyProcessor
+	public static final int UPDATE = 3;			// Main.update, all of it
+	public static final int MOVEMENT = 4;		// Parts of Main.update
+	public static final int COLLISION = 5;
+	public static final int INTERACTIONS = 6;
+	public static final int CLEAR = 7;			// Clearing the back buffer
+	public static final int RENDER = 8;			// Drawing the scene
+	public static final int SHOW = 9;			// BufferStrategy.show
+	public static final int PHASE_COUNT = 10;
+	private static final String[] NAMES = { "frame", "input", "keys", "update", "movement", "collision", "interactions",
+			"clear", "render", "show" };
+
+	private boolean isEnabled;
+	private final Histogram[] histograms;
+	private final long[] starts;			// When each phase was last begun
+	private final long[] current;			// This frame's total per phase
+	private int ranMask;					// Phases that ran this frame
+	private final long[] history;			// Ring of frames, PHASE_COUNT totals each
+	private final int capacity;
+	private long frames;					// Frames recorded so far (the ring holds the last capacity of them)
+	private long lastEndNanos;
+
+	public FrameProfiler(int historyFrames){
+		if(historyFrames < 1)		throw new IllegalArgumentException("Need room for at least 1 frame");
+		capacity = historyFrames;
+		histograms = new Histogram[PHASE_COUNT];
+		for(int i = 0; i < PHASE_COUNT; i++)
+			histograms[i] = new Histogram();
+		starts = new long[PHASE_COUNT];
+		current = new long[PHASE_COUNT];
+		history = new long[historyFrames * PHASE_COUNT];
+	}
+
+	/* -Dgame.profiler=true turns it on from the start, -Dgame.profileFrames=N frames of history (3600 by default) */
+	public static FrameProfiler fromSystemProperties(){
+		FrameProfiler fp = new FrameProfiler(Integer.getInteger("game.profileFrames", 3600));
+		fp.setEnabled(Boolean.getBoolean("game.profiler"));
+		return fp;
+	}
+
+	public void setEnabled(boolean isOn){
+		if(isOn && !isEnabled){
+			lastEndNanos = 0;			// Don't count the time it was off as one long frame
+			clearCurrent();
+			for(int i = 0; i < PHASE_COUNT; i++)
+				starts[i] = 0;			// A phase that was already running when this turned on isn't counted
+		}
+		isEnabled = isOn;
+	}
+
+	public boolean isEnabled(){
+		return isEnabled;
+	}
+
+	public void begin(int phase){
+		if(!isEnabled)		return;
+		starts[phase] = System.nanoTime();
+	}
+
+	public void end(int phase){
+		if(!isEnabled || starts[phase] == 0)		return;
+		current[phase] += System.nanoTime() - starts[phase];
+		starts[phase] = 0;			// So an end() without a begin() after this doesn't count the same start again
+		ranMask |= 1 << phase;
+	}
+
+	/* Called once per frame, after it has been shown */
+	public void endFrame(){
+		if(!isEnabled)		return;
+		long now = System.nanoTime();
+		if(lastEndNanos != 0){
+			current[FRAME] = now - lastEndNanos;
+			ranMask |= 1 << FRAME;
+		}
+		lastEndNanos = now;
+		int row = (int) (frames % capacity) * PHASE_COUNT;
+		for(int i = 0; i < PHASE_COUNT; i++){
+			if((ranMask & 1 << i) != 0)
+				histograms[i].record(current[i]);
+			history[row + i] = current[i];
+		}
+		frames++;
+		clearCurrent();
+	}
+
+	private void clearCurrent(){
+		for(int i = 0; i < PHASE_COUNT; i++)
+			current[i] = 0;
+		ranMask = 0;
+	}
+
+	public static String getName(int phase){
+		return NAMES[phase];
+	}
+
+	/* Every frame's total for phase since the start (or the last reset) */
+	public Histogram getHistogram(int phase){
+		return histograms[phase];
+	}
+
+	/* Frames recorded in total, and how many of the latest ones are still in the history */
+	public long getFrameCount(){
+		return frames;
+	}
+
+	public int getHistorySize(){
+		return (int) Math.min(frames, capacity);
+	}
+
+	/* Phase total of the i'th oldest frame still in the history, in nanoseconds */
+	public long getHistory(int i, int phase){
+		long first = frames - getHistorySize();
+		return history[(int) ((first + i) % capacity) * PHASE_COUNT + phase];
+	}
+
+	/* Average of phase over the last (up to) n frames, in nanoseconds */
+	public double getRollingAverage(int phase, int n){
+		int size = getHistorySize();
+		if(n > size)		n = size;
+		if(n <= 0)			return 0.0;
+		long sum = 0;
+		for(int i = size - n; i < size; i++)
+			sum += getHistory(i, phase);
+		return (double) sum / n;
+	}
+
+	public void reset(){
+		for(int i = 0; i < PHASE_COUNT; i++)
+			histograms[i].reset();
+		frames = 0;
+		lastEndNanos = 0;
+		clearCurrent();
+	}
+
+	/* The history, one frame per row, times in microseconds */
+	public void writeCsv(Writer out) throws IOException{
+		out.write("frame");
+		for(int p = 0; p < PHASE_COUNT; p++)
+			out.write("," + NAMES[p] + "_us");
+		out.write("\n");
+		long first = frames - getHistorySize();
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < getHistorySize(); i++){
+			sb.setLength(0);
+			sb.append(first + i);
+			for(int p = 0; p < PHASE_COUNT; p++)
+				sb.append(',').append(toMicros(getHistory(i, p)));
+			sb.append('\n');
+			out.write(sb.toString());
+		}
+	}
+
+	/* Same as writeCsv, plus each phase's percentiles over everything recorded */
+	public void writeJson(Writer out) throws IOException{
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n  \"unit\": \"us\",\n  \"firstFrame\": ").append(frames - getHistorySize()).append(",\n  \"phases\": [");
+		for(int p = 0; p < PHASE_COUNT; p++)
+			sb.append(p == 0 ? "" : ", ").append('"').append(NAMES[p]).append('"');
+		sb.append("],\n  \"summary\": {\n");
+		for(int p = 0; p < PHASE_COUNT; p++){
+			Histogram h = histograms[p];
+			sb.append("    \"").append(NAMES[p]).append("\": {\"count\": ").append(h.getCount())
+				.append(", \"mean\": ").append(toMicros(Math.round(h.getMean())))
+				.append(", \"p50\": ").append(toMicros(h.getValueAtPercentile(50)))
+				.append(", \"p99\": ").append(toMicros(h.getValueAtPercentile(99)))
+				.append(", \"max\": ").append(toMicros(h.getMax())).append(p == PHASE_COUNT - 1 ? "}\n" : "},\n");
+		}
+		sb.append("  },\n  \"frames\": [\n");
+		out.write(sb.toString());
+		for(int i = 0; i < getHistorySize(); i++){
+			sb.setLength(0);
+			sb.append("    [");
+			for(int p = 0; p < PHASE_COUNT; p++)
+				sb.append(p == 0 ? "" : ", ").append(toMicros(getHistory(i, p)));
+			sb.append(i == getHistorySize() - 1 ? "]\n" : "],\n");
+			out.write(sb.toString());
+		}
+		out.write("  ]\n}\n");
+	}
+
+	private static String toMicros(long nanos){
+		return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+	}
+
+	public String toString(){
+		StringBuilder sb = new StringBuilder("frame profile (").append(frames).append(" frames):");
+		for(int p = 0; p < PHASE_COUNT; p++){
+			Histogram h = histograms[p];
+			if(h.getCount() == 0)		continue;
+			sb.append(String.format("%n  %-12s %s", NAMES[p], h.toMillisString()));
+		}
+		return sb.toString();
+	}
+}
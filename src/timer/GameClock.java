@@ -0,0 +1,41 @@
+package timer;
+
+/* The time that game logic should see. When the fixed timestep loop is running this is simulation time: it only
+ * moves forward by exactly one tick per update, no matter how late or how bunched up the updates actually ran.
+ * Otherwise it's just System.nanoTime(). stopWatchX reads from here so timers stay in step with the simulation. */
+
+public class GameClock{
+	// Fields
+	private static volatile boolean isSimulated = false;
+	private static volatile long simNanos = 0;
+	
+	// Methods
+	public static long nanoTime(){
+		if(isSimulated)		return simNanos;
+		return System.nanoTime();
+	}
+	
+	/* nanoTime() in whole milliseconds, the way stopWatchX counts. It wraps around (every 24 days or so), so only
+	 * ever subtract two of these. */
+	public static int millis(){
+		return (int) (nanoTime() / 1000000);
+	}
+	
+	/* Start simulation time at the given (System.nanoTime based) value */
+	public static void startSimulation(long startNanos){
+		simNanos = startNanos;
+		isSimulated = true;
+	}
+	
+	public static void advance(long nanos){
+		simNanos += nanos;
+	}
+	
+	public static void stopSimulation(){
+		isSimulated = false;
+	}
+	
+	public static boolean isSimulated(){
+		return isSimulated;
+	}
+}
@@ -0,0 +1,103 @@
+package timer;
+
+/* Counts of long values (nanoseconds, usually) in log-linear buckets: every power of two is split into 32 equal
+ * buckets, so any value is known to within about 3% of itself, and values under 64 exactly. The buckets cover the
+ * whole positive long range in a fixed array made up front, so record() is a few shifts and an increment, with no
+ * allocation and nothing that grows. Percentiles come back as the top of the bucket they fall in (never more than
+ * the largest value recorded). Not thread safe; record from one thread. */
+
+public class Histogram{
+	private static final int SUB_BITS = 5;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int BUCKET_COUNT = (63 - SUB_BITS + 1) * SUB_COUNT;
+
+	private final long[] counts;
+	private long count;
+	private long sum;
+	private long min, max;
+
+	public Histogram(){
+		counts = new long[BUCKET_COUNT];
+		reset();
+	}
+
+	/* Negative values count as 0 */
+	public void record(long value){
+		if(value < 0)		value = 0;
+		counts[indexOf(value)]++;
+		count++;
+		sum += value;
+		if(value < min)		min = value;
+		if(value > max)		max = value;
+	}
+
+	/* Adds everything recorded in other to this one */
+	public void add(Histogram other){
+		for(int i = 0; i < BUCKET_COUNT; i++)
+			counts[i] += other.counts[i];
+		count += other.count;
+		sum += other.sum;
+		if(other.min < min)		min = other.min;
+		if(other.max > max)		max = other.max;
+	}
+
+	public void reset(){
+		for(int i = 0; i < BUCKET_COUNT; i++)
+			counts[i] = 0;
+		count = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	public long getCount(){
+		return count;
+	}
+
+	/* 0 if nothing has been recorded */
+	public long getMin(){
+		return count == 0 ? 0 : min;
+	}
+
+	public long getMax(){
+		return max;
+	}
+
+	public double getMean(){
+		return count == 0 ? 0.0 : (double) sum / count;
+	}
+
+	/* Smallest value that percentile percent (0 to 100) of the recorded values are at or under, 0 if empty */
+	public long getValueAtPercentile(double percentile){
+		if(count == 0)		return 0;
+		long target = (long) Math.ceil(Math.max(0.0, Math.min(100.0, percentile)) / 100.0 * count);
+		if(target < 1)		target = 1;
+		long seen = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++){
+			seen += counts[i];
+			if(seen >= target)
+				return Math.min(Math.max(highestValueIn(i), min), max);
+		}
+		return max;
+	}
+
+	private static int indexOf(long value){
+		if(value < SUB_COUNT)		return (int) value;
+		int exp = 63 - Long.numberOfLeadingZeros(value);		// value is in [2^exp, 2^(exp+1))
+		int top = (int) (value >>> (exp - SUB_BITS));			// Leading SUB_BITS + 1 bits, in [SUB_COUNT, 2 * SUB_COUNT)
+		return (exp - SUB_BITS + 1) * SUB_COUNT + top - SUB_COUNT;
+	}
+
+	private static long highestValueIn(int index){
+		if(index < SUB_COUNT)		return index;
+		int q = index / SUB_COUNT;
+		long lowest = (long) (index % SUB_COUNT + SUB_COUNT) << (q - 1);
+		return lowest + (1L << (q - 1)) - 1;
+	}
+
+	/* count, p50/p99/max and mean in milliseconds, for values in nanoseconds */
+	public String toMillisString(){
+		return String.format("%d samples, p50 %.2f ms, p99 %.2f ms, max %.2f ms, mean %.2f ms", count,
+				getValueAtPercentile(50) / 1e6, getValueAtPercentile(99) / 1e6, getMax() / 1e6, getMean() / 1e6);
+	}
+}
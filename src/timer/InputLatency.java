@@ -0,0 +1,76 @@
+package timer;
+
+/* How long key presses take to reach the screen. Each press keeps the System.nanoTime() it arrived at (Keyb stamps
+ * it in keyPressed); when the tick that handled it finishes (KeyProcessor and Main.update done) it's marked updated,
+ * and when the next frame after that has been shown every press in it is recorded twice:
+ *		toUpdate	- key event to the end of the update that saw it
+ *		toPresent	- key event to BufferStrategy.show() returning for the first frame drawn after that update
+ * "Present" is when show() hands the frame over; on a display with vsync the picture lands up to one refresh later.
+ * Presses that pile up over several ticks before a frame (catching up) all wait for that one frame. Fixed memory,
+ * no allocation: past MAX_WAITING waiting presses the extra ones just aren't measured. */
+
+public class InputLatency{
+	public static final int MAX_WAITING = 256;
+
+	private final Histogram toUpdate = new Histogram();
+	private final Histogram toPresent = new Histogram();
+	private final long[] waiting = new long[MAX_WAITING];		// Event times of presses that have been updated but not shown
+	private int waitingCount;
+	private long skipped;
+
+	/* A press that happened at eventNanos was just handled by an update that finished at updateNanos */
+	public void updated(long eventNanos, long updateNanos){
+		recordUpdate(eventNanos, updateNanos);
+		if(waitingCount == MAX_WAITING){
+			recordSkipped();
+			return;
+		}
+		waiting[waitingCount++] = eventNanos;
+	}
+
+	/* A frame was shown at presentNanos; everything updated before it is now on screen */
+	public void presented(long presentNanos){
+		for(int i = 0; i < waitingCount; i++)
+			recordPresent(waiting[i], presentNanos);
+		waitingCount = 0;
+	}
+	
+	/* The two measurements one at a time, for when the presses wait somewhere else: in Control's two-thread mode they
+	 * ride along in the RenderSnapshot, toUpdate is only written by the simulation thread and toPresent only by the
+	 * render thread. */
+	public void recordUpdate(long eventNanos, long updateNanos){
+		toUpdate.record(updateNanos - eventNanos);
+	}
+	
+	public void recordPresent(long eventNanos, long presentNanos){
+		toPresent.record(presentNanos - eventNanos);
+	}
+	
+	public void recordSkipped(){
+		skipped++;
+	}
+
+	public Histogram getToUpdate(){
+		return toUpdate;
+	}
+
+	public Histogram getToPresent(){
+		return toPresent;
+	}
+
+	/* Presses that couldn't be tracked to the screen because too many were waiting at once */
+	public long getSkippedCount(){
+		return skipped;
+	}
+
+	public void reset(){
+		toUpdate.reset();
+		toPresent.reset();
+		waitingCount = 0;
+		skipped = 0;
+	}
+
+	public String toString(){
+		return "input to update: " + toUpdate.toMillisString() + "\ninput to present: " + toPresent.toMillisString();
+	}
+}
@@ -0,0 +1,46 @@
+package timer;
+
+/* Events per second (frames, ticks), over windows of about a second: mark() once per event from one thread, and
+ * getRate() from any thread gives the rate over the last full window. Also keeps the total and the average since
+ * the first event. */
+
+public class RateCounter{
+	private static final long WINDOW_NANOS = 1000000000L;
+
+	private long windowStart;
+	private long windowCount;
+	private long firstNanos, lastNanos;
+	private volatile long total;
+	private volatile double rate;
+
+	public void mark(long nowNanos){
+		if(total == 0){
+			firstNanos = nowNanos;
+			windowStart = nowNanos;
+		}
+		lastNanos = nowNanos;
+		windowCount++;
+		total++;
+		long elapsed = nowNanos - windowStart;
+		if(elapsed >= WINDOW_NANOS){
+			rate = windowCount * 1e9 / elapsed;
+			windowCount = 0;
+			windowStart = nowNanos;
+		}
+	}
+
+	/* Per second over the last full window, 0 until the first one is over */
+	public double getRate(){
+		return rate;
+	}
+
+	public long getTotal(){
+		return total;
+	}
+
+	/* Per second from the first event to the last one (mark()'s thread, or after it's stopped) */
+	public double getAverageRate(){
+		long elapsed = lastNanos - firstNanos;
+		return elapsed <= 0 ? 0.0 : (total - 1) * 1e9 / elapsed;
+	}
+}
@@ -2,7 +2,8 @@ package timer;
 
 /* This is a "hopefully" new and improved stopWatch over the old one based on milliseconds. This one should be a much tighter resolution
  * since it seems to be accurate to no worse than 1.5 uSecs off. It should have the same API calls but have an X at the end of the class name.
- * This method is only needed for animation....NOT for timing game time or longer things like that. */
+ * This method is only needed for animation....NOT for timing game time or longer things like that.
+ * Time comes from GameClock, so under the fixed timestep loop timers count simulation time, not wall time. */
  
 public class stopWatchX{
 	// Fields
@@ -18,12 +19,12 @@ public class stopWatchX{
 	public stopWatchX(long duration, long elapsed){
 		this.duration = (duration * 1000000);
 		elapsed = (elapsed * 1000000);
-		start = System.nanoTime() - elapsed;
+		start = GameClock.nanoTime() - elapsed;
 	}
 	
 	// Methods
 	public long getElapsed(){
-		long current = System.nanoTime();
+		long current = GameClock.nanoTime();
 		long currentMillis = (current / 1000000);
 		long startMillis = (start / 1000000);
 		return (currentMillis - startMillis);
@@ -35,11 +36,11 @@ public class stopWatchX{
 	}
 	
 	public void resetWatch(){
-		start = System.nanoTime();
+		start = GameClock.nanoTime();
 	}
 	
 	public boolean isTimeUp(){
-		long current = System.nanoTime();
+		long current = GameClock.nanoTime();
 		int currentMillis = (int) (current / 1000000);
 		int startMillis = (int) (start / 1000000);
 		int durationMillis = (int) (duration / 1000000);